@@ -0,0 +1,14 @@
+package com.notes.web.app.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Spring caches (Caffeine, configured by spring.cache.* in application.properties).
+// Hibernate's second-level cache is separate: see the hibernate.cache.* properties.
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    // username -> password hash, so logins skip the users query (see CustomUserDetailsService)
+    public static final String USER_DETAILS = "userDetails";
+}
@@ -0,0 +1,47 @@
+package com.notes.web.app.config;
+
+import com.notes.web.app.embedding.EmbeddingProvider;
+import com.notes.web.app.embedding.HuggingFaceEmbeddingProvider;
+import com.notes.web.app.embedding.OnnxEmbeddingProvider;
+import com.notes.web.app.embedding.TextChunker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.file.Path;
+
+@Configuration
+public class EmbeddingConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingConfig.class);
+
+    // "huggingface" (remote inference API) or "onnx" (local CPU model, no network needed)
+    @Bean
+    public EmbeddingProvider embeddingProvider(@Value("${embedding.provider:huggingface}") String provider,
+                                               WebClient.Builder webClientBuilder,
+                                               @Value("${huggingface.api.url}") String hfApiUrl,
+                                               @Value("${huggingface.api.key}") String hfApiKey,
+                                               @Value("${embedding.onnx.model-path:models/all-MiniLM-L6-v2/model.onnx}") Path modelPath,
+                                               @Value("${embedding.onnx.vocab-path:models/all-MiniLM-L6-v2/vocab.txt}") Path vocabPath,
+                                               @Value("${embedding.onnx.threads:0}") int threads,
+                                               @Value("${embedding.onnx.batch-size:16}") int batchSize,
+                                               @Value("${embedding.onnx.max-tokens:256}") int maxTokens) throws Exception {
+        log.info("Embedding provider: {}", provider);
+        return switch (provider) {
+            case "huggingface" -> new HuggingFaceEmbeddingProvider(webClientBuilder, hfApiUrl, hfApiKey);
+            case "onnx" -> new OnnxEmbeddingProvider(modelPath, vocabPath,
+                    threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), batchSize, maxTokens);
+            default -> throw new IllegalArgumentException("Unknown embedding.provider: " + provider);
+        };
+    }
+
+    // Long notes are split into overlapping passages, each embedded separately
+    @Bean
+    public TextChunker textChunker(@Value("${embedding.chunking.max-words:150}") int maxWords,
+                                   @Value("${embedding.chunking.overlap-words:30}") int overlapWords) {
+        return new TextChunker(maxWords, overlapWords);
+    }
+}
@@ -0,0 +1,142 @@
+package com.notes.web.app.config;
+
+import com.notes.web.app.search.KeywordIndex;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.PassageIndex;
+import com.notes.web.app.search.SearchExecutor;
+import com.notes.web.app.service.BackfillJob;
+import com.notes.web.app.service.EmbeddingPipeline;
+import com.notes.web.app.service.IndexingWorker;
+import com.notes.web.app.service.QueryEmbeddingCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Gauges over the in-memory indexes and the background embedding work. Timers for search phases and
+// embedding calls live next to the code they time (AIService, NoteService); JVM, HTTP, Hikari,
+// Hibernate and cache metrics come from Actuator.
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder indexMetrics(PassageIndex passageIndex, KeywordIndex keywordIndex) {
+        return registry -> {
+            Gauge.builder("search.vector_index.notes", passageIndex, PassageIndex::size)
+                    .description("Notes with an embedding in the vector index")
+                    .register(registry);
+            Gauge.builder("search.vector_index.passages", passageIndex, PassageIndex::passageCount)
+                    .description("Passage vectors in the vector index (long notes have several)")
+                    .register(registry);
+            Gauge.builder("search.vector_index.memory", passageIndex, PassageIndex::memoryBytes)
+                    .description("Approximate heap used by the vector index")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("search.keyword_index.notes", keywordIndex, KeywordIndex::size)
+                    .description("Notes in the loaded keyword index partitions")
+                    .register(registry);
+            Gauge.builder("search.keyword_index.users", keywordIndex, KeywordIndex::loadedUsers)
+                    .description("Users whose keyword index partition is loaded")
+                    .register(registry);
+            FunctionCounter.builder("search.keyword_index.evictions", keywordIndex, KeywordIndex::evictions)
+                    .description("Keyword index partitions dropped to stay within search.keyword.max-notes")
+                    .register(registry);
+        };
+    }
+
+    // How searches were scored: fanned out over the search pool, sequentially because they were small,
+    // or sequentially because max-concurrent searches already held the pool (shed)
+    @Bean
+    public MeterBinder searchExecutorMetrics(SearchExecutor searchExecutor) {
+        return registry -> {
+            FunctionCounter.builder("search.executions", searchExecutor, e -> e.getStats().parallel())
+                    .tag("mode", "parallel").register(registry);
+            FunctionCounter.builder("search.executions", searchExecutor, e -> e.getStats().sequential())
+                    .tag("mode", "sequential").register(registry);
+            FunctionCounter.builder("search.executions", searchExecutor, e -> e.getStats().shed())
+                    .tag("mode", "shed").register(registry);
+            Gauge.builder("search.executor.active_workers", searchExecutor, e -> e.getStats().activeWorkers())
+                    .register(registry);
+        };
+    }
+
+    // Searches whose query embedding came from the cache (no provider call), and what it holds
+    @Bean
+    public MeterBinder queryEmbeddingCacheMetrics(QueryEmbeddingCache cache) {
+        return registry -> {
+            FunctionCounter.builder("search.query_cache.requests", cache, c -> c.getStats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("search.query_cache.requests", cache, c -> c.getStats().misses())
+                    .tag("result", "miss").register(registry);
+            FunctionCounter.builder("search.query_cache.evictions", cache, c -> c.getStats().evictions())
+                    .description("Entries dropped for size or age")
+                    .register(registry);
+            Gauge.builder("search.query_cache.size", cache, c -> c.getStats().size())
+                    .register(registry);
+        };
+    }
+
+    // Embedding backfill / re-embed progress (startup backfill and edits go through the same pipeline)
+    @Bean
+    public MeterBinder embeddingPipelineMetrics(EmbeddingPipeline pipeline) {
+        return registry -> {
+            FunctionCounter.builder("embedding.pipeline.notes", pipeline, p -> p.getProgress().submitted())
+                    .tag("state", "submitted").register(registry);
+            FunctionCounter.builder("embedding.pipeline.notes", pipeline, p -> p.getProgress().completed())
+                    .tag("state", "completed").register(registry);
+            FunctionCounter.builder("embedding.pipeline.notes", pipeline, p -> p.getProgress().failed())
+                    .tag("state", "failed").register(registry);
+            FunctionCounter.builder("embedding.pipeline.notes", pipeline, p -> p.getProgress().discarded())
+                    .tag("state", "discarded")
+                    .description("Completed, but dropped because the note was deleted or edited meanwhile")
+                    .register(registry);
+            FunctionCounter.builder("embedding.pipeline.passages", pipeline, p -> p.getProgress().embeddedPassages())
+                    .tag("state", "embedded").register(registry);
+            FunctionCounter.builder("embedding.pipeline.passages", pipeline, p -> p.getProgress().reusedPassages())
+                    .tag("state", "reused").register(registry);
+            FunctionCounter.builder("embedding.pipeline.throttled", pipeline, p -> p.getProgress().throttled())
+                    .description("429/503 responses that paused the pipeline")
+                    .register(registry);
+            Gauge.builder("embedding.pipeline.queued", pipeline, p -> p.getProgress().queued())
+                    .register(registry);
+            Gauge.builder("embedding.pipeline.in_flight", pipeline, p -> p.getProgress().inFlight())
+                    .register(registry);
+            Gauge.builder("embedding.pipeline.backoff", pipeline, p -> p.getProgress().backoffMs())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder backfillMetrics(BackfillJob backfillJob, IndexReadiness indexReadiness) {
+        return registry -> {
+            Gauge.builder("backfill.users_pending", indexReadiness, IndexReadiness::pendingUsers)
+                    .description("Users on keyword-only search until the backfill has loaded their vectors")
+                    .register(registry);
+            Gauge.builder("backfill.remaining_notes", backfillJob, job -> {
+                        // One snapshot, so the target and checkpoint come from the same moment
+                        BackfillJob.Status status = job.getStatus();
+                        return Math.max(0, status.targetNoteId() - status.lastNoteId());
+                    })
+                    .description("Note ids between the backfill checkpoint and its target")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder indexingMetrics(IndexingWorker indexingWorker) {
+        return registry -> {
+            Gauge.builder("indexing.lag", indexingWorker, w -> w.getStatus().lagMs())
+                    .description("Age of the oldest outbox change not yet handed to the embedding pipeline")
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            FunctionCounter.builder("indexing.changes", indexingWorker, w -> w.getStatus().processedChanges())
+                    .tag("result", "processed").register(registry);
+            FunctionCounter.builder("indexing.changes", indexingWorker, w -> w.getStatus().coalescedChanges())
+                    .tag("result", "coalesced").register(registry);
+            FunctionCounter.builder("indexing.changes", indexingWorker, w -> w.getStatus().deferredChanges())
+                    .tag("result", "deferred").register(registry);
+        };
+    }
+}
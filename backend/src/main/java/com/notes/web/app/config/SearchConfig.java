@@ -0,0 +1,144 @@
+package com.notes.web.app.config;
+
+import com.notes.web.app.entity.NoteEmbedding;
+import com.notes.web.app.repository.NoteEmbeddingRepository;
+import com.notes.web.app.search.FlatVectorIndex;
+import com.notes.web.app.search.HnswVectorIndex;
+import com.notes.web.app.search.HybridRanker;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.KeywordIndex;
+import com.notes.web.app.search.PassageIndex;
+import com.notes.web.app.search.Quantization;
+import com.notes.web.app.search.SearchExecutor;
+import com.notes.web.app.search.SegmentedVectorIndex;
+import com.notes.web.app.search.VectorIndex;
+import com.notes.web.app.search.VectorMath;
+import com.notes.web.app.service.AIService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Configuration
+public class SearchConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchConfig.class);
+
+    // "hnsw" (approximate, fast for large accounts) or "flat" (brute-force scan). The flat scan can
+    // keep int8/binary codes instead of floats (search.vector.quantization) and re-rank its best
+    // rerank-factor * k candidates with the full-precision vectors stored in note_embeddings.
+    // "segment" is a flat scan over memory-mapped files in search.segment.dir that survive restarts.
+    @Bean
+    public VectorIndex vectorIndex(SearchExecutor searchExecutor,
+                                   @Value("${search.vector.index:hnsw}") String type,
+                                   @Value("${search.vector.quantization:none}") String quantization,
+                                   @Value("${search.vector.rerank-factor:0}") int rerankFactor,
+                                   @Value("${search.hnsw.m:16}") int m,
+                                   @Value("${search.hnsw.ef-construction:200}") int efConstruction,
+                                   @Value("${search.hnsw.ef-search:64}") int efSearch,
+                                   @Value("${search.segment.dir:data/vector-index}") String segmentDir,
+                                   @Value("${search.segment.flush-rows:10000}") int flushRows,
+                                   @Value("${search.segment.max-segments:4}") int maxSegments,
+                                   @Value("${search.segment.merge-interval:1m}") Duration mergeInterval,
+                                   @Value("${search.segment.sync-writes:false}") boolean syncWrites,
+                                   NoteEmbeddingRepository noteEmbeddingRepository) {
+        log.info("Similarity kernel: {}", VectorMath.describe());
+        Quantization codes = Quantization.valueOf(quantization.toUpperCase());
+        return switch (type) {
+            case "flat" -> new FlatVectorIndex(AIService.EMBEDDING_DIM, codes,
+                    rerankFactor > 0 ? rerankFactor : codes.defaultRerankFactor(),
+                    passageKeys -> loadStoredVectors(noteEmbeddingRepository, passageKeys), searchExecutor);
+            case "hnsw" -> {
+                if (codes != Quantization.NONE) {
+                    throw new IllegalArgumentException("search.vector.quantization requires search.vector.index=flat");
+                }
+                yield new HnswVectorIndex(AIService.EMBEDDING_DIM, m, efConstruction, efSearch);
+            }
+            case "segment" -> {
+                if (codes != Quantization.NONE) {
+                    throw new IllegalArgumentException("search.vector.quantization requires search.vector.index=flat");
+                }
+                yield new SegmentedVectorIndex(Path.of(segmentDir), AIService.EMBEDDING_DIM, flushRows, maxSegments,
+                        mergeInterval, syncWrites, searchExecutor);
+            }
+            default -> throw new IllegalArgumentException("Unknown search.vector.index: " + type);
+        };
+    }
+
+    // Notes as sets of passage vectors: a note scores as its best passage (max) or as the mean
+    // of its best aggregation-k passages (top-k-mean)
+    @Bean
+    public PassageIndex passageIndex(VectorIndex vectorIndex,
+                                     @Value("${search.passages.aggregation:max}") String aggregation,
+                                     @Value("${search.passages.aggregation-k:2}") int aggregationK) {
+        return new PassageIndex(vectorIndex,
+                PassageIndex.Aggregation.valueOf(aggregation.toUpperCase().replace('-', '_')), aggregationK);
+    }
+
+    // Per-user "vectors loaded" flags, maintained by the startup BackfillJob
+    @Bean
+    public IndexReadiness indexReadiness() {
+        return new IndexReadiness();
+    }
+
+    // BM25 keyword index: k1 = term-frequency saturation, b = document-length normalisation;
+    // max-notes bounds the notes held in memory across users (least recently searched users go first)
+    @Bean
+    public KeywordIndex keywordIndex(@Value("${search.bm25.k1:1.2}") double k1,
+                                     @Value("${search.bm25.b:0.75}") double b,
+                                     @Value("${search.parallel.keyword-shards:8}") int shards,
+                                     @Value("${search.keyword.max-notes:200000}") long maxNotes,
+                                     SearchExecutor searchExecutor) {
+        return new KeywordIndex(k1, b, shards, searchExecutor, maxNotes);
+    }
+
+    // Parallel scoring of large accounts (flat/segment scans and BM25 shards) on a dedicated pool:
+    // threads (0 = one per core), searches that may fan out at once (the rest run on their request
+    // thread), and the fewest rows or postings worth handing to another thread
+    @Bean
+    public SearchExecutor searchExecutor(@Value("${search.parallel.threads:0}") int threads,
+                                         @Value("${search.parallel.max-concurrent:4}") int maxConcurrent,
+                                         @Value("${search.parallel.min-shard-size:4096}") int minShardSize) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        log.info("Search executor: {} threads, {} parallel searches at once", parallelism, maxConcurrent);
+        return new SearchExecutor(parallelism, maxConcurrent, minShardSize);
+    }
+
+    // Rank fusion: rrf-k damps the advantage of the very top ranks; weights scale each half;
+    // semantic hits below min-similarity are ignored
+    @Bean
+    public HybridRanker hybridRanker(@Value("${search.ranking.rrf-k:60}") int rrfK,
+                                     @Value("${search.ranking.keyword-weight:1.0}") double keywordWeight,
+                                     @Value("${search.ranking.semantic-weight:1.0}") double semanticWeight,
+                                     @Value("${search.ranking.min-similarity:0.2}") double minSimilarity) {
+        return new HybridRanker(rrfK, keywordWeight, semanticWeight, minSimilarity);
+    }
+
+    // --- Helper: full-precision passage vectors for re-ranking, read from the note_embeddings table ---
+    private static Map<Long, float[]> loadStoredVectors(NoteEmbeddingRepository repository, Collection<Long> passageKeys) {
+        Set<Long> noteIds = new HashSet<>();
+        for (long key : passageKeys) noteIds.add(PassageIndex.noteId(key));
+        Map<Long, List<float[]>> passagesByNote = new HashMap<>();
+        for (NoteEmbedding stored : repository.findAllById(noteIds)) {
+            passagesByNote.put(stored.getNoteId(), stored.getPassages(AIService.EMBEDDING_DIM));
+        }
+
+        Map<Long, float[]> vectors = new HashMap<>();
+        for (long key : passageKeys) {
+            List<float[]> passages = passagesByNote.get(PassageIndex.noteId(key));
+            int passage = PassageIndex.passage(key);
+            if (passages != null && passage < passages.size()) vectors.put(key, passages.get(passage));
+        }
+        return vectors;
+    }
+}
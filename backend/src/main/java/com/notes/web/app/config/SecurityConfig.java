@@ -1,5 +1,14 @@
 package com.notes.web.app.config;
 
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import com.notes.web.app.service.TokenService;
+import jakarta.servlet.http.Cookie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -7,31 +16,76 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.List;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
+    // Cookie the token is also sent in (auth.mode=token), so the browser app needs no changes
+    public static final String TOKEN_COOKIE = "AUTH_TOKEN";
+    private static final int MIN_SECRET_BYTES = 32; // HS256 key size
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   @Value("${auth.mode:session}") String authMode) throws Exception {
         http
-                .csrf(AbstractHttpConfigurer::disable) // Disable CSRF for simplicity in this assignment
+                // No CSRF tokens. Session mode: disabled for simplicity in this assignment. Token mode: the
+                // cookie is SameSite=Lax, so a cross-site page can only make it ride along on a top-level
+                // GET, and GETs are read-only here; bearer headers are never sent by the browser on its own.
+                .csrf(AbstractHttpConfigurer::disable)
                 .cors(cors -> cors.configurationSource(corsConfigurationSource())) // Enable CORS
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll() // Allow Login/Register without password
+                        // Probes + scraping; EndpointRequest only matches on management.server.port, so the app port never serves them
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll()
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN") // Indexing, cache and backfill controls
                         .anyRequest().authenticated() // Block everything else
                 );
 
+        if (isTokenMode(authMode)) {
+            // Stateless: no session is created or read; every request carries a signed token
+            http
+                    .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    .oauth2ResourceServer(oauth2 -> oauth2
+                            .bearerTokenResolver(bearerTokenResolver())
+                            .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter())));
+        }
+        log.info("Authentication mode: {}", authMode);
+
         return http.build();
     }
 
+    public static boolean isTokenMode(String authMode) {
+        return switch (authMode) {
+            case "session" -> false;
+            case "token" -> true;
+            default -> throw new IllegalArgumentException("Unknown auth.mode: " + authMode);
+        };
+    }
+
     // This beans handles password hashing (making passwords unreadable in DB)
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -44,6 +98,59 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
+    // HMAC key the tokens are signed with; all nodes behind a load balancer need the same one
+    @Bean
+    public SecretKey tokenSigningKey(@Value("${auth.token.secret:}") String secret,
+                                     @Value("${auth.mode:session}") String authMode) {
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        if (secret.isBlank()) {
+            if (isTokenMode(authMode)) {
+                log.warn("auth.token.secret is not set; using a random key (tokens will not survive a restart or work on other nodes)");
+            }
+            key = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(key);
+        } else if (key.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("auth.token.secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        return new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    @Bean
+    public JwtEncoder jwtEncoder(SecretKey tokenSigningKey) {
+        return new NimbusJwtEncoder(new ImmutableSecret<>(tokenSigningKey));
+    }
+
+    // Checks the signature and expiry locally: no session store or database lookup per request
+    @Bean
+    public JwtDecoder jwtDecoder(SecretKey tokenSigningKey) {
+        return NimbusJwtDecoder.withSecretKey(tokenSigningKey).macAlgorithm(MacAlgorithm.HS256).build();
+    }
+
+    // Roles come from the token's roles claim (see TokenService), not from the database
+    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+        JwtGrantedAuthoritiesConverter authorities = new JwtGrantedAuthoritiesConverter();
+        authorities.setAuthoritiesClaimName(TokenService.ROLES_CLAIM);
+        authorities.setAuthorityPrefix(TokenService.ROLE_PREFIX);
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(authorities);
+        return converter;
+    }
+
+    // Authorization: Bearer header first, then the cookie set at login. Login/register never look
+    // at a token, so an expired cookie cannot lock a user out of logging in again.
+    private BearerTokenResolver bearerTokenResolver() {
+        DefaultBearerTokenResolver header = new DefaultBearerTokenResolver();
+        return request -> {
+            if (request.getRequestURI().startsWith("/api/auth/")) return null;
+            String token = header.resolve(request);
+            if (token != null || request.getCookies() == null) return token;
+            for (Cookie cookie : request.getCookies()) {
+                if (TOKEN_COOKIE.equals(cookie.getName()) && !cookie.getValue().isBlank()) return cookie.getValue();
+            }
+            return null;
+        };
+    }
+
     // CORS Configuration (Crucial for React + Spring Session)
     @Bean
     public UrlBasedCorsConfigurationSource corsConfigurationSource() {
@@ -60,4 +167,4 @@ public class SecurityConfig {
         source.registerCorsConfiguration("/**", configuration);
         return source;
     }
-}
\ No newline at end of file
+}
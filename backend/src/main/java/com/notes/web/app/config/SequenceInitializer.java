@@ -0,0 +1,52 @@
+package com.notes.web.app.config;
+
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Moves the id sequences past the ids already in their tables.
+ *
+ * Notes and outbox rows used to get IDENTITY ids; ddl-auto creates their new sequences starting
+ * at 1, which would collide with existing rows. Runs as soon as the EntityManagerFactory has
+ * updated the schema, so before any repository, scheduled worker or request can insert a row,
+ * and only ever moves a sequence forward.
+ */
+@Component
+public class SequenceInitializer implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(SequenceInitializer.class);
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        // The factory bean, not the EntityManagerFactory it exposes (both pass through here)
+        if (bean instanceof AbstractEntityManagerFactoryBean factory && factory.getDataSource() != null) {
+            catchUp(factory.getDataSource());
+        }
+        return bean;
+    }
+
+    private static void catchUp(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        catchUp(jdbcTemplate, Note.ID_SEQUENCE, "notes");
+        catchUp(jdbcTemplate, NoteChange.ID_SEQUENCE, "note_changes");
+    }
+
+    private static void catchUp(JdbcTemplate jdbcTemplate, String sequence, String table) {
+        // With is_called = true the next pooled block starts right after max(id)
+        Long value = jdbcTemplate.query(
+                "SELECT setval('" + sequence + "', m) FROM (SELECT MAX(id) AS m FROM " + table + ") t "
+                        + "WHERE m >= (SELECT last_value FROM " + sequence + ")",
+                rs -> rs.next() ? rs.getLong(1) : null);
+        if (value != null) {
+            log.info("Advanced {} to {}", sequence, value);
+        }
+    }
+}
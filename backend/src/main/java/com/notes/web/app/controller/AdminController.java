@@ -0,0 +1,54 @@
+package com.notes.web.app.controller;
+
+import com.notes.web.app.service.BackfillJob;
+import com.notes.web.app.service.CacheStatistics;
+import com.notes.web.app.service.IndexingWorker;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final IndexingWorker indexingWorker;
+    private final CacheStatistics cacheStatistics;
+    private final BackfillJob backfillJob;
+
+    public AdminController(IndexingWorker indexingWorker, CacheStatistics cacheStatistics, BackfillJob backfillJob) {
+        this.indexingWorker = indexingWorker;
+        this.cacheStatistics = cacheStatistics;
+        this.backfillJob = backfillJob;
+    }
+
+    // Indexing lag + embedding pipeline progress
+    @GetMapping("/indexing")
+    public IndexingWorker.Status getIndexingStatus() {
+        return indexingWorker.getStatus();
+    }
+
+    // Hit ratios of the Hibernate entity and query caches (note lists included) and the login credentials cache
+    @GetMapping("/cache")
+    public List<CacheStatistics.CacheStats> getCacheStats() {
+        return cacheStatistics.getStats();
+    }
+
+    // Startup embedding backfill: checkpoint, counts, users still on keyword-only search
+    @GetMapping("/backfill")
+    public BackfillJob.Status getBackfillStatus() {
+        return backfillJob.getStatus();
+    }
+
+    @PostMapping("/backfill/pause")
+    public BackfillJob.Status pauseBackfill() {
+        return backfillJob.pause();
+    }
+
+    @PostMapping("/backfill/resume")
+    public BackfillJob.Status resumeBackfill() {
+        return backfillJob.resume();
+    }
+}
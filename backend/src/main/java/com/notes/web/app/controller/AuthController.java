@@ -1,10 +1,16 @@
 package com.notes.web.app.controller;
 
+import com.notes.web.app.config.SecurityConfig;
 import com.notes.web.app.entity.User;
 import com.notes.web.app.repository.UserRepository;
+import com.notes.web.app.service.KeywordIndexLoader;
+import com.notes.web.app.service.TokenService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -13,6 +19,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.Map;
 
 @RestController
@@ -22,11 +29,24 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenService tokenService;
+    private final KeywordIndexLoader keywordIndexLoader;
+    // auth.mode=token: log in with a signed token instead of a server-side session
+    private final boolean tokenMode;
+    // Secure flag of the token cookie; only turn it off for local development over plain HTTP
+    private final boolean secureCookie;
 
-    public AuthController(AuthenticationManager authenticationManager, UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AuthController(AuthenticationManager authenticationManager, UserRepository userRepository, PasswordEncoder passwordEncoder,
+                          TokenService tokenService, KeywordIndexLoader keywordIndexLoader,
+                          @Value("${auth.mode:session}") String authMode,
+                          @Value("${auth.token.cookie-secure:true}") boolean secureCookie) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.tokenService = tokenService;
+        this.keywordIndexLoader = keywordIndexLoader;
+        this.tokenMode = SecurityConfig.isTokenMode(authMode);
+        this.secureCookie = secureCookie;
     }
 
     @PostMapping("/register")
@@ -36,6 +56,7 @@ public class AuthController {
         }
         // Hash the password before saving
         user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setRole("USER"); // whatever the request says: admins are promoted in the database
         userRepository.save(user);
         return ResponseEntity.ok("User registered successfully");
     }
@@ -50,6 +71,17 @@ public class AuthController {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(username, password)
             );
+            // Build the user's keyword index now, so their first search does not wait for it
+            userRepository.findByUsername(authentication.getName())
+                    .ifPresent(user -> keywordIndexLoader.load(user.getId()));
+
+            if (tokenMode) {
+                // Stateless: the token goes back in the body (for API clients) and in an HttpOnly cookie (for the browser app)
+                String token = tokenService.issue(authentication.getName(), authentication.getAuthorities());
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.SET_COOKIE, tokenCookie(token, tokenService.getTtl()).toString())
+                        .body(Map.of("token", token, "tokenType", "Bearer", "expiresIn", tokenService.getTtl().toSeconds()));
+            }
 
             // If successful, store auth in the SecurityContext
             SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -64,12 +96,30 @@ public class AuthController {
         }
     }
 
+    // In token mode this only drops the cookie: a copied token stays valid until it expires (auth.token.ttl)
     @PostMapping("/logout")
     public ResponseEntity<?> logout(HttpServletRequest request) {
+        if (tokenMode) {
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, tokenCookie("", Duration.ZERO).toString())
+                    .body("Logged out");
+        }
         HttpSession session = request.getSession(false);
         if (session != null) {
             session.invalidate();
         }
         return ResponseEntity.ok("Logged out");
     }
+
+    // SameSite=Lax stands in for CSRF protection (see SecurityConfig): browsers leave the cookie off
+    // cross-site POST/PUT/DELETE requests, and no GET endpoint changes anything
+    private ResponseCookie tokenCookie(String token, Duration maxAge) {
+        return ResponseCookie.from(SecurityConfig.TOKEN_COOKIE, token)
+                .httpOnly(true)
+                .secure(secureCookie)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+    }
 }
\ No newline at end of file
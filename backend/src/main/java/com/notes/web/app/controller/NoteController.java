@@ -1,13 +1,23 @@
 package com.notes.web.app.controller;
 
+import com.notes.web.app.dto.CursorPage;
+import com.notes.web.app.dto.NoteSummary;
+import com.notes.web.app.dto.SearchHit;
+import com.notes.web.app.dto.SearchPage;
 import com.notes.web.app.entity.Note;
 import com.notes.web.app.entity.User;
 import com.notes.web.app.repository.UserRepository;
 import com.notes.web.app.service.NoteService;
+import com.notes.web.app.service.NoteTransferService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -16,10 +26,13 @@ public class NoteController {
 
     private final NoteService noteService;
     private final UserRepository userRepository;
+    private final NoteTransferService noteTransferService;
 
-    public NoteController(NoteService noteService, UserRepository userRepository) {
+    public NoteController(NoteService noteService, UserRepository userRepository,
+                          NoteTransferService noteTransferService) {
         this.noteService = noteService;
         this.userRepository = userRepository;
+        this.noteTransferService = noteTransferService;
     }
 
     @GetMapping
@@ -31,6 +44,14 @@ public class NoteController {
         return noteService.getNotesForUser(username);
     }
 
+    // Keyset-paginated summaries (no content), newest first; pass nextCursor to get the next page
+    @GetMapping("/summaries")
+    public CursorPage<NoteSummary> getNoteSummaries(@RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "20") int size) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return noteService.getNoteSummaries(username, cursor, size);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Note> getNote(@PathVariable Long id) {
         return noteService.getNoteById(id)
@@ -68,9 +89,38 @@ public class NoteController {
         return ResponseEntity.noContent().build();
     }
 
+    // Bulk import: NDJSON body, one {"title": ..., "content": ...} object per line
+    @PostMapping("/import")
+    public NoteTransferService.ImportResult importNotes(InputStream body) throws IOException {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return noteTransferService.importNotes(username, body);
+    }
+
+    // Bulk export: all of the user's notes as NDJSON, streamed straight from the database
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportNotes() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        StreamingResponseBody body = out -> noteTransferService.exportNotes(username, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"notes.ndjson\"")
+                .body(body);
+    }
+
+    // Every match, best first, unpaged as it always was; /search/ranked pages and adds scores
     @GetMapping("/search")
     public List<Note> searchNotes(@RequestParam String query) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return noteService.searchNotes(query, username);
+        return noteService.searchAllNotes(query, username).stream()
+                .map(SearchHit::note)
+                .toList();
+    }
+
+    // Same search with scores and paging (page is zero-based)
+    @GetMapping("/search/ranked")
+    public SearchPage searchNotesRanked(@RequestParam String query,
+                                        @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "20") int size) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return noteService.searchNotes(query, username, page, size);
     }
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.notes.web.app.dto;
+
+import java.util.List;
+
+// One page of a keyset-paginated list; pass nextCursor back to get the following page (null = last page)
+public record CursorPage<T>(List<T> items, String nextCursor) {
+}
@@ -0,0 +1,7 @@
+package com.notes.web.app.dto;
+
+import java.time.LocalDateTime;
+
+// Lightweight list row: the start of the content instead of the whole TEXT column
+public record NoteSummary(Long id, String title, String snippet, LocalDateTime createdAt, LocalDateTime updatedAt) {
+}
@@ -0,0 +1,8 @@
+package com.notes.web.app.dto;
+
+import com.notes.web.app.entity.Note;
+
+// One ranked search result: fused score plus the raw score from each half of the search
+// (null when that half did not find the note)
+public record SearchHit(Note note, double score, Double keywordScore, Double similarity) {
+}
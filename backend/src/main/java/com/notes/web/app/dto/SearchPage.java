@@ -0,0 +1,7 @@
+package com.notes.web.app.dto;
+
+import java.util.List;
+
+// A page of ranked search results; hasMore tells whether the next page has any
+public record SearchPage(List<SearchHit> hits, int page, int size, boolean hasMore) {
+}
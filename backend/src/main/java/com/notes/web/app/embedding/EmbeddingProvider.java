@@ -0,0 +1,19 @@
+package com.notes.web.app.embedding;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Turns texts into all-MiniLM-L6-v2 sentence embeddings (384 dimensions).
+ * Selected with embedding.provider, see EmbeddingConfig.
+ */
+public interface EmbeddingProvider {
+
+    // One vector per text, in input order. Errors are propagated so callers can retry;
+    // remote providers signal throttling with a WebClientResponseException (429/503).
+    Mono<List<float[]>> embed(List<String> texts);
+
+    // False when the provider is not configured (e.g. no API key); callers fall back to keywords
+    boolean isEnabled();
+}
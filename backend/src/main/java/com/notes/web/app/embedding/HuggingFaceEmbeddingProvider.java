@@ -0,0 +1,65 @@
+package com.notes.web.app.embedding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Remote embeddings from the Hugging Face inference router (feature-extraction pipeline)
+public class HuggingFaceEmbeddingProvider implements EmbeddingProvider {
+
+    private final WebClient webClient;
+    private final String apiKey;
+
+    public HuggingFaceEmbeddingProvider(WebClient.Builder webClientBuilder, String apiUrl, String apiKey) {
+        this.webClient = webClientBuilder.baseUrl(apiUrl).build();
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return apiKey != null && !apiKey.trim().isEmpty();
+    }
+
+    // Embed several texts with one request ({"inputs": [...]} -> one vector per input, same order)
+    @Override
+    public Mono<List<float[]>> embed(List<String> texts) {
+        Map<String, List<String>> requestBody = new HashMap<>();
+        requestBody.put("inputs", texts);
+
+        return webClient.post()
+                .header("Authorization", "Bearer " + apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(response -> {
+                    // A single input may come back flat ([...]) instead of nested ([[...]])
+                    if (texts.size() == 1 && response.isArray() && !response.isEmpty() && !response.get(0).isArray()) {
+                        return List.of(toFloatArray(response));
+                    }
+                    if (!response.isArray() || response.size() != texts.size()) {
+                        throw new IllegalStateException("Expected " + texts.size() + " embeddings, got " + response.getNodeType() + " of size " + response.size());
+                    }
+                    List<float[]> embeddings = new ArrayList<>(texts.size());
+                    for (JsonNode item : response) {
+                        embeddings.add(toFloatArray(item));
+                    }
+                    return embeddings;
+                });
+    }
+
+    // --- Helper: JSON number array -> float[] (no boxed intermediates) ---
+    private float[] toFloatArray(JsonNode array) {
+        float[] vector = new float[array.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) array.get(i).asDouble();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,151 @@
+package com.notes.web.app.embedding;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.notes.web.app.search.VectorMath;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process all-MiniLM-L6-v2 on the CPU through ONNX Runtime, loaded from model.onnx and
+ * vocab.txt on disk (both from the sentence-transformers/all-MiniLM-L6-v2 repository).
+ *
+ * Requests are split into batches of batch-size texts that run in parallel on a fixed pool
+ * of worker threads (one ONNX session shared by all of them, single-threaded per run so the
+ * pool size is the CPU budget). The token embeddings are mean-pooled over the attention mask
+ * and L2-normalised, which is what the sentence-transformers pipeline does.
+ */
+public class OnnxEmbeddingProvider implements EmbeddingProvider, AutoCloseable {
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final WordPieceTokenizer tokenizer;
+    private final boolean needsTokenTypeIds;
+    private final int threads;
+    private final int batchSize;
+    private final int maxTokens;
+    private final ExecutorService workers;
+    private final Scheduler scheduler;
+
+    public OnnxEmbeddingProvider(Path modelFile, Path vocabFile, int threads, int batchSize, int maxTokens)
+            throws IOException, OrtException {
+        if (!Files.isReadable(modelFile) || !Files.isReadable(vocabFile)) {
+            throw new IOException("ONNX model or vocabulary not found: " + modelFile + ", " + vocabFile);
+        }
+        this.tokenizer = WordPieceTokenizer.load(vocabFile);
+        this.environment = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setIntraOpNumThreads(1);
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            this.session = environment.createSession(modelFile.toString(), options);
+        }
+        this.needsTokenTypeIds = session.getInputNames().contains("token_type_ids");
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.maxTokens = maxTokens;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "onnx-embedding-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler = Schedulers.fromExecutorService(workers);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public Mono<List<float[]>> embed(List<String> texts) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i += batchSize) {
+            batches.add(texts.subList(i, Math.min(texts.size(), i + batchSize)));
+        }
+        return Flux.fromIterable(batches)
+                .flatMapSequential(batch -> Mono.fromCallable(() -> run(batch)).subscribeOn(scheduler), threads)
+                .flatMapIterable(vectors -> vectors)
+                .collectList();
+    }
+
+    @Override
+    public void close() throws OrtException {
+        scheduler.dispose();
+        workers.shutdownNow();
+        session.close();
+    }
+
+    // --- Inference for one batch (runs on a worker thread) ---
+    private List<float[]> run(List<String> texts) throws OrtException {
+        long[][] encoded = new long[texts.size()][];
+        int length = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = tokenizer.encode(texts.get(i), maxTokens);
+            length = Math.max(length, encoded[i].length);
+        }
+        // Pad to the longest text of the batch; padding is masked out (id 0 = [PAD])
+        long[][] inputIds = new long[encoded.length][length];
+        long[][] attentionMask = new long[encoded.length][length];
+        for (int i = 0; i < encoded.length; i++) {
+            System.arraycopy(encoded[i], 0, inputIds[i], 0, encoded[i].length);
+            for (int t = 0; t < encoded[i].length; t++) attentionMask[i][t] = 1;
+        }
+
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(environment, inputIds));
+            inputs.put("attention_mask", OnnxTensor.createTensor(environment, attentionMask));
+            if (needsTokenTypeIds) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(environment, new long[encoded.length][length]));
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                return pool(result.get(0), attentionMask);
+            }
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    // Mean over the unmasked tokens ([batch][tokens][384] -> [batch][384]), then unit length.
+    // Models exported with pooling built in already return [batch][384].
+    private static List<float[]> pool(OnnxValue output, long[][] attentionMask) throws OrtException {
+        Object value = output.getValue();
+        List<float[]> vectors = new ArrayList<>(attentionMask.length);
+        if (value instanceof float[][] pooled) {
+            for (float[] vector : pooled) vectors.add(VectorMath.normalize(vector));
+            return vectors;
+        }
+        float[][][] tokens = (float[][][]) value;
+        for (int i = 0; i < tokens.length; i++) {
+            float[] sum = new float[tokens[i][0].length];
+            int count = 0;
+            for (int t = 0; t < tokens[i].length; t++) {
+                if (attentionMask[i][t] == 0) continue;
+                for (int d = 0; d < sum.length; d++) sum[d] += tokens[i][t][d];
+                count++;
+            }
+            for (int d = 0; d < sum.length; d++) sum[d] /= Math.max(1, count);
+            vectors.add(VectorMath.normalize(sum));
+        }
+        return vectors;
+    }
+
+}
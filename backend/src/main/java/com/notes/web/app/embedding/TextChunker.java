@@ -0,0 +1,70 @@
+package com.notes.web.app.embedding;
+
+import com.notes.web.app.search.PassageIndex;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a note into passages short enough for the embedding model, which only reads its first
+ * 256 tokens. Word counts stand in for tokens (English averages about 1.3 WordPiece tokens per
+ * word), so the default 150-word window leaves room for the title.
+ *
+ * A note that fits in one window is a single passage: its whole text, exactly as it was embedded
+ * before chunking existed. Longer notes become overlapping windows over the content, each prefixed
+ * with the title so a passage still says what it belongs to.
+ */
+public class TextChunker {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int maxWords;
+    private final int overlapWords;
+
+    public TextChunker(int maxWords, int overlapWords) {
+        if (maxWords < 8) throw new IllegalArgumentException("Chunk size must be at least 8 words");
+        if (overlapWords < 0 || overlapWords >= maxWords / 2) {
+            throw new IllegalArgumentException("Chunk overlap must be between 0 and half the chunk size");
+        }
+        this.maxWords = maxWords;
+        this.overlapWords = overlapWords;
+    }
+
+    // The note as the model sees it: NFC form, whitespace runs collapsed. Differences the
+    // tokenizer ignores anyway must not produce different content hashes.
+    public static String normalize(String text) {
+        return WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").trim();
+    }
+
+    public List<String> passages(String title, String content) {
+        String whole = normalize(title + " " + content);
+        String[] contentWords = words(content);
+        if (words(whole).length <= maxWords || contentWords.length == 0) {
+            return List.of(whole);
+        }
+
+        // The title prefix may take at most a quarter of each window
+        String[] titleWords = words(title);
+        String prefix = String.join(" ", Arrays.copyOf(titleWords, Math.min(titleWords.length, maxWords / 4)));
+        int window = maxWords - Math.min(titleWords.length, maxWords / 4);
+        int stride = Math.max(1, window - overlapWords);
+
+        List<String> passages = new ArrayList<>();
+        for (int start = 0; passages.size() < PassageIndex.MAX_PASSAGES; start += stride) {
+            int end = Math.min(start + window, contentWords.length);
+            String body = String.join(" ", Arrays.copyOfRange(contentWords, start, end));
+            passages.add(prefix.isEmpty() ? body : prefix + " " + body);
+            if (end == contentWords.length) break;
+        }
+        return passages;
+    }
+
+    private static String[] words(String text) {
+        if (text == null) return new String[0];
+        String normalized = normalize(text);
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+}
@@ -0,0 +1,145 @@
+package com.notes.web.app.embedding;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * BERT "uncased" WordPiece tokenizer, as used by all-MiniLM-L6-v2 (vocab.txt from the model repo).
+ *
+ * Basic tokenization lower-cases, strips accents and splits on whitespace, punctuation and
+ * CJK characters; each word is then split greedily into the longest vocabulary pieces
+ * ("playing" -> "play", "##ing"). Produces the same ids as the Python BertTokenizer.
+ */
+public class WordPieceTokenizer {
+
+    private static final String UNKNOWN = "[UNK]";
+    private static final String CLASSIFIER = "[CLS]";
+    private static final String SEPARATOR = "[SEP]";
+    private static final int MAX_WORD_LENGTH = 100; // longer "words" become [UNK]
+
+    private final Map<String, Integer> vocabulary;
+    private final int unknownId;
+    private final int classifierId;
+    private final int separatorId;
+
+    public WordPieceTokenizer(Map<String, Integer> vocabulary) {
+        this.vocabulary = vocabulary;
+        this.unknownId = requireToken(UNKNOWN);
+        this.classifierId = requireToken(CLASSIFIER);
+        this.separatorId = requireToken(SEPARATOR);
+    }
+
+    // vocab.txt: one token per line, the line number is the token id
+    public static WordPieceTokenizer load(Path vocabFile) throws IOException {
+        List<String> lines = Files.readAllLines(vocabFile, StandardCharsets.UTF_8);
+        Map<String, Integer> vocabulary = new HashMap<>(lines.size() * 2);
+        for (int i = 0; i < lines.size(); i++) {
+            vocabulary.putIfAbsent(lines.get(i).strip(), i);
+        }
+        return new WordPieceTokenizer(vocabulary);
+    }
+
+    // [CLS] tokens... [SEP], truncated to at most maxTokens ids
+    public long[] encode(String text, int maxTokens) {
+        List<Integer> ids = new ArrayList<>();
+        for (String word : basicTokens(text)) {
+            wordPieces(word, ids);
+            if (ids.size() >= maxTokens - 2) break;
+        }
+        int length = Math.min(ids.size(), maxTokens - 2);
+        long[] encoded = new long[length + 2];
+        encoded[0] = classifierId;
+        for (int i = 0; i < length; i++) encoded[i + 1] = ids.get(i);
+        encoded[length + 1] = separatorId;
+        return encoded;
+    }
+
+    // --- Basic tokenization: clean, lower-case, strip accents, split words and punctuation ---
+    List<String> basicTokens(String text) {
+        String lowered = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < lowered.length(); ) {
+            int c = lowered.codePointAt(i);
+            i += Character.charCount(c);
+            if (c == 0 || c == 0xFFFD || Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                flush(word, words);
+            } else if (Character.isISOControl(c) || Character.getType(c) == Character.FORMAT) {
+                // dropped, like BERT's _clean_text
+            } else if (isPunctuation(c) || isCjk(c)) {
+                flush(word, words);
+                words.add(new String(Character.toChars(c)));
+            } else {
+                word.appendCodePoint(c);
+            }
+        }
+        flush(word, words);
+        return words;
+    }
+
+    // --- WordPiece: greedy longest-match-first against the vocabulary ---
+    private void wordPieces(String word, List<Integer> ids) {
+        if (word.codePointCount(0, word.length()) > MAX_WORD_LENGTH) {
+            ids.add(unknownId);
+            return;
+        }
+        List<Integer> pieces = new ArrayList<>();
+        int start = 0;
+        while (start < word.length()) {
+            int end = word.length();
+            Integer id = null;
+            while (start < end) {
+                String piece = (start > 0 ? "##" : "") + word.substring(start, end);
+                id = vocabulary.get(piece);
+                if (id != null) break;
+                end = word.offsetByCodePoints(end, -1);
+            }
+            if (id == null) {
+                ids.add(unknownId); // no piece matches: the whole word is unknown
+                return;
+            }
+            pieces.add(id);
+            start = end;
+        }
+        ids.addAll(pieces);
+    }
+
+    private static void flush(StringBuilder word, List<String> words) {
+        if (!word.isEmpty()) {
+            words.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static boolean isPunctuation(int c) {
+        if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)) {
+            return true;
+        }
+        int type = Character.getType(c);
+        return type == Character.CONNECTOR_PUNCTUATION || type == Character.DASH_PUNCTUATION
+                || type == Character.START_PUNCTUATION || type == Character.END_PUNCTUATION
+                || type == Character.INITIAL_QUOTE_PUNCTUATION || type == Character.FINAL_QUOTE_PUNCTUATION
+                || type == Character.OTHER_PUNCTUATION;
+    }
+
+    private static boolean isCjk(int c) {
+        return (c >= 0x4E00 && c <= 0x9FFF) || (c >= 0x3400 && c <= 0x4DBF) || (c >= 0x20000 && c <= 0x2A6DF)
+                || (c >= 0x2A700 && c <= 0x2B73F) || (c >= 0x2B740 && c <= 0x2B81F) || (c >= 0x2B820 && c <= 0x2CEAF)
+                || (c >= 0xF900 && c <= 0xFAFF) || (c >= 0x2F800 && c <= 0x2FA1F);
+    }
+
+    private int requireToken(String token) {
+        Integer id = vocabulary.get(token);
+        if (id == null) throw new IllegalArgumentException("Vocabulary has no " + token + " token");
+        return id;
+    }
+}
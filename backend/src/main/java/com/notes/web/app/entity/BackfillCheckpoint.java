@@ -0,0 +1,82 @@
+package com.notes.web.app.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Durable progress of a BackfillJob run: every note with id <= lastNoteId has been handled
+@Entity
+@Table(name = "backfill_checkpoints")
+public class BackfillCheckpoint {
+
+    public enum State { RUNNING, PAUSED, COMPLETED, FAILED }
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private State state;
+
+    @Column(nullable = false)
+    private long lastNoteId;
+
+    // Highest note id when the run started; newer notes reach the index through the outbox
+    @Column(nullable = false)
+    private long targetNoteId;
+
+    // Notes whose stored embedding was loaded / that were queued for (re-)embedding, this run
+    @Column(nullable = false)
+    private long restored;
+
+    @Column(nullable = false)
+    private long queued;
+
+    @Column(length = 500)
+    private String error;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+
+    protected BackfillCheckpoint() {
+    }
+
+    public BackfillCheckpoint(String name) {
+        this.name = name;
+        this.state = State.RUNNING;
+    }
+
+    // A new run from fromNoteId up to targetNoteId
+    public void start(long fromNoteId, long targetNoteId) {
+        this.lastNoteId = fromNoteId;
+        this.targetNoteId = targetNoteId;
+        this.restored = 0;
+        this.queued = 0;
+        this.error = null;
+        this.startedAt = LocalDateTime.now();
+        this.updatedAt = startedAt;
+    }
+
+    public void advance(long lastNoteId, long restored, long queued) {
+        this.lastNoteId = lastNoteId;
+        this.restored += restored;
+        this.queued += queued;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public void setState(State state, String error) {
+        this.state = state;
+        this.error = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public String getName() { return name; }
+    public State getState() { return state; }
+    public long getLastNoteId() { return lastNoteId; }
+    public long getTargetNoteId() { return targetNoteId; }
+    public long getRestored() { return restored; }
+    public long getQueued() { return queued; }
+    public String getError() { return error; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,40 @@
+package com.notes.web.app.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Content-addressed embedding: one row per distinct (normalised) passage text ever embedded, shared
+// by all notes and users. Rows no note's passages refer to any more are purged by EmbeddingCache.
+@Entity
+@Table(name = "embedding_cache")
+public class CachedEmbedding {
+
+    // SHA-256 of the normalised passage text (NoteEmbedding.hash of one of AIService.passages)
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // float32 little-endian, like NoteEmbedding
+    @Column(nullable = false)
+    private byte[] vector;
+
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_used_at")
+    private LocalDateTime lastUsedAt;
+
+    protected CachedEmbedding() {
+    }
+
+    public CachedEmbedding(String contentHash, float[] vector) {
+        this.contentHash = contentHash;
+        this.vector = NoteEmbedding.encode(vector);
+        this.createdAt = LocalDateTime.now();
+        this.lastUsedAt = createdAt;
+    }
+
+    public String getContentHash() { return contentHash; }
+    public float[] getVector() { return NoteEmbedding.decode(vector); }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getLastUsedAt() { return lastUsedAt; }
+}
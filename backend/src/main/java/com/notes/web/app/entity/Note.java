@@ -2,14 +2,25 @@ package com.notes.web.app.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notes")
+@Table(name = "notes", indexes = {
+        // Keyset pagination of a user's notes by (updatedAt, id), newest first
+        @Index(name = "idx_notes_user_updated_id", columnList = "user_id, updated_at DESC, id DESC")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "notes")
 public class Note {
 
+    public static final String ID_SEQUENCE = "notes_seq";
+
+    // Pooled sequence (50 ids per round trip) so bulk inserts can be JDBC-batched; IDENTITY cannot be
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notes_seq")
+    @SequenceGenerator(name = "notes_seq", sequenceName = ID_SEQUENCE, allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
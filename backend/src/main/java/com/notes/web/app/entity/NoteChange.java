@@ -0,0 +1,44 @@
+package com.notes.web.app.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Outbox row: written in the same transaction as the note change, consumed by IndexingWorker
+@Entity
+@Table(name = "note_changes")
+public class NoteChange {
+
+    public enum Type { UPSERT, DELETE }
+
+    public static final String ID_SEQUENCE = "note_changes_seq";
+
+    // Pooled like Note's, so the outbox rows of a bulk import batch too
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "note_changes_seq")
+    @SequenceGenerator(name = "note_changes_seq", sequenceName = ID_SEQUENCE, allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long noteId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    protected NoteChange() {
+    }
+
+    public NoteChange(Long noteId, Type type) {
+        this.noteId = noteId;
+        this.type = type;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() { return id; }
+    public Long getNoteId() { return noteId; }
+    public Type getType() { return type; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
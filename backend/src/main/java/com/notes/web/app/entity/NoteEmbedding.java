@@ -0,0 +1,95 @@
+package com.notes.web.app.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+// Durable copy of a note's embedding, so restarts don't have to call the model again
+@Entity
+@Table(name = "note_embeddings")
+public class NoteEmbedding {
+
+    @Id
+    @Column(name = "note_id")
+    private Long noteId;
+
+    // Shares the note's primary key; the row is dropped by the database when the note is deleted
+    @OneToOne(fetch = FetchType.LAZY)
+    @MapsId
+    @JoinColumn(name = "note_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JsonIgnore
+    private Note note;
+
+    // SHA-256 of the embedded text; a mismatch means the note changed since it was embedded
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    // float32 little-endian; one vector per passage of the note (see TextChunker), back to back
+    @Column(nullable = false)
+    private byte[] vector;
+
+    // Comma-separated hashes of the passage texts, in the same order: the embedding_cache entries
+    // this note still uses, which EmbeddingCache therefore never purges
+    @Column(name = "passage_hashes", columnDefinition = "TEXT")
+    private String passageHashes;
+
+    private LocalDateTime updatedAt;
+
+    public Long getNoteId() { return noteId; }
+    public String getContentHash() { return contentHash; }
+    public List<float[]> getPassages(int dimension) { return split(decode(vector), dimension); }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+
+    // --- Helpers: vector <-> bytea ---
+    public static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static byte[] encode(List<float[]> passages) {
+        ByteBuffer buffer = ByteBuffer.allocate(passages.size() * passages.get(0).length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (float[] passage : passages) floats.put(passage);
+        return buffer.array();
+    }
+
+    // Empty if the length is not a whole number of vectors (e.g. written with another dimension)
+    public static List<float[]> split(float[] concatenated, int dimension) {
+        if (concatenated.length == 0 || concatenated.length % dimension != 0) return List.of();
+        List<float[]> passages = new ArrayList<>(concatenated.length / dimension);
+        for (int offset = 0; offset < concatenated.length; offset += dimension) {
+            passages.add(Arrays.copyOfRange(concatenated, offset, offset + dimension));
+        }
+        return passages;
+    }
+
+    public static float[] decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    public static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.notes.web.app.entity;
+
+import com.notes.web.app.config.CacheConfig;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Drops a user's cached login credentials whenever the user is saved or deleted through JPA, so a new
+// password or role applies to the next login. Changes made directly in the database wait for the
+// entry to expire (spring.cache.caffeine.spec).
+public class UserCacheListener {
+
+    private final ObjectProvider<CacheManager> cacheManager;
+
+    // Created by Hibernate through Spring (SpringBeanContainer)
+    public UserCacheListener(ObjectProvider<CacheManager> cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void evictCredentials(User user) {
+        CacheManager manager = cacheManager.getIfAvailable();
+        Cache cache = manager == null ? null : manager.getCache(CacheConfig.USER_DETAILS);
+        if (cache == null) return;
+        String username = user.getUsername();
+        cache.evict(username);
+        // Again once committed: a login in between could have cached the old row
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.evict(username);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.notes.web.app.exception;
+
+// A pagination cursor that was not issued by us (or was mangled in transit); answered with a 400
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String cursor, Throwable cause) {
+        super("Invalid cursor: " + cursor, cause);
+    }
+}
@@ -0,0 +1,9 @@
+package com.notes.web.app.exception;
+
+// A search page past the deepest one we rank (see NoteService.MAX_SEARCH_RESULTS); answered with a 400
+public class InvalidPageException extends RuntimeException {
+
+    public InvalidPageException(int page, int size, int maxResults) {
+        super("Page " + page + " of size " + size + " is past the first " + maxResults + " results");
+    }
+}
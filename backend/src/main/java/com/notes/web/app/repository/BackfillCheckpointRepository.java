@@ -0,0 +1,9 @@
+package com.notes.web.app.repository;
+
+import com.notes.web.app.entity.BackfillCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BackfillCheckpointRepository extends JpaRepository<BackfillCheckpoint, String> {
+}
@@ -0,0 +1,46 @@
+package com.notes.web.app.repository;
+
+import com.notes.web.app.entity.CachedEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface CachedEmbeddingRepository extends JpaRepository<CachedEmbedding, String> {
+
+    // Identical text gives the same vector, so a concurrent insert of the same hash can simply be kept
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO embedding_cache (content_hash, vector, created_at, last_used_at)
+            VALUES (:contentHash, :vector, now(), now())
+            ON CONFLICT (content_hash) DO NOTHING
+            """, nativeQuery = true)
+    void insertIfAbsent(@Param("contentHash") String contentHash, @Param("vector") byte[] vector);
+
+    @Modifying
+    @Transactional
+    @Query("update CachedEmbedding c set c.lastUsedAt = :usedAt where c.contentHash in :hashes")
+    int markUsed(@Param("hashes") Collection<String> hashes, @Param("usedAt") LocalDateTime usedAt);
+
+    // Entries unused since the cutoff that are no longer a passage of any note's stored embedding.
+    // Rows stored before passage_hashes existed fall back to the whole-note hash (single-passage notes).
+    // NOT EXISTS rather than NOT IN, so Postgres plans a hash anti-join instead of a scan per entry.
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM embedding_cache c
+            WHERE c.last_used_at < :cutoff
+              AND NOT EXISTS (
+                  SELECT 1 FROM note_embeddings n
+                  CROSS JOIN LATERAL unnest(string_to_array(coalesce(n.passage_hashes, n.content_hash), ',')) AS p(hash)
+                  WHERE p.hash = c.content_hash)
+            """, nativeQuery = true)
+    int deleteUnusedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
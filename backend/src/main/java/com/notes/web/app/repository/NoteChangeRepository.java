@@ -0,0 +1,24 @@
+package com.notes.web.app.repository;
+
+import com.notes.web.app.entity.NoteChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface NoteChangeRepository extends JpaRepository<NoteChange, Long> {
+    // Oldest changes of the notes that have been quiet since cutoff: a note's rows only come back
+    // once its newest change is older than that. Pass PageRequest.ofSize(n).
+    @Query("select c from NoteChange c where c.noteId in "
+            + "(select q.noteId from NoteChange q group by q.noteId having max(q.createdAt) < :cutoff) "
+            + "order by c.id asc")
+    List<NoteChange> findQuietChanges(@Param("cutoff") LocalDateTime cutoff, Pageable limit);
+
+    Optional<NoteChange> findFirstByOrderByIdAsc();
+}
@@ -0,0 +1,33 @@
+package com.notes.web.app.repository;
+
+import com.notes.web.app.entity.NoteEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NoteEmbeddingRepository extends JpaRepository<NoteEmbedding, Long> {
+
+    // Single-statement insert-or-replace (no select-before-merge)
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO note_embeddings (note_id, content_hash, passage_hashes, vector, updated_at)
+            VALUES (:noteId, :contentHash, :passageHashes, :vector, now())
+            ON CONFLICT (note_id) DO UPDATE
+            SET content_hash = EXCLUDED.content_hash, passage_hashes = EXCLUDED.passage_hashes,
+                vector = EXCLUDED.vector, updated_at = EXCLUDED.updated_at
+            """, nativeQuery = true)
+    void upsert(@Param("noteId") Long noteId, @Param("contentHash") String contentHash,
+                @Param("passageHashes") String passageHashes, @Param("vector") byte[] vector);
+
+    // [noteId, contentHash] rows, without reading the vectors
+    @Query("SELECT e.noteId, e.contentHash FROM NoteEmbedding e WHERE e.noteId IN :noteIds")
+    List<Object[]> findContentHashes(@Param("noteIds") Collection<Long> noteIds);
+}
@@ -1,12 +1,83 @@
 package com.notes.web.app.repository;
 
+import com.notes.web.app.dto.NoteSummary;
 import com.notes.web.app.entity.Note;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface NoteRepository extends JpaRepository<Note, Long> {
+    int SNIPPET_LENGTH = 200;
+
+    String NOTE_LISTS_REGION = "noteLists";
+
+    String SUMMARY_SELECT = "select new com.notes.web.app.dto.NoteSummary(n.id, n.title, substring(n.content, 1, "
+            + SNIPPET_LENGTH + "), n.createdAt, n.updatedAt) from Note n ";
+
+    // GET /api/notes. The query cache keeps only the note ids (in their own region) and the notes come from
+    // the second-level cache, so no managed entity is shared; any write to notes invalidates the cached lists
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = NOTE_LISTS_REGION)
+    })
     List<Note> findByUserUsername(String username);
-}
\ No newline at end of file
+
+    // Keyset pagination, newest first (served by idx_notes_user_updated_id). Pass PageRequest.ofSize(n).
+    @Query(SUMMARY_SELECT + "where n.user.id = :userId order by n.updatedAt desc, n.id desc")
+    List<NoteSummary> findSummaries(@Param("userId") Long userId, Pageable limit);
+
+    @Query(SUMMARY_SELECT + "where n.user.id = :userId "
+            + "and (n.updatedAt < :updatedAt or (n.updatedAt = :updatedAt and n.id < :id)) "
+            + "order by n.updatedAt desc, n.id desc")
+    List<NoteSummary> findSummariesAfter(@Param("userId") Long userId,
+                                         @Param("updatedAt") LocalDateTime updatedAt,
+                                         @Param("id") Long id,
+                                         Pageable limit);
+
+    // All of a user's notes as a database cursor (bulk export). Must be consumed inside a transaction
+    // and closed; rows bypass the second-level cache so an export does not flush it.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select n from Note n where n.user.id = :userId order by n.id")
+    Stream<Note> streamByUserId(@Param("userId") Long userId);
+
+    // Backfill: the next page of notes after afterId (keyset, so every page is an index range scan).
+    // Bypasses the second-level cache so loading every note does not evict the hot ones.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query("select n from Note n where n.id > :afterId and n.id <= :maxId order by n.id")
+    List<Note> findPageAfter(@Param("afterId") long afterId, @Param("maxId") long maxId, Pageable limit);
+
+    // The note with its row share-locked (SELECT ... FOR SHARE) until the transaction ends: updates and
+    // deletes of it wait, so whatever is checked against it stays true until commit
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select n from Note n where n.id = :id")
+    Optional<Note> findByIdForShare(@Param("id") Long id);
+
+    // [id, title, content] of each of the user's notes: builds their keyword index without entities
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select n.id, n.title, n.content from Note n where n.user.id = :userId")
+    List<Object[]> findKeywordFields(@Param("userId") Long userId);
+
+    @Query("select coalesce(max(n.id), 0) from Note n")
+    long findMaxId();
+
+    // [user id, highest note id of that user] for users with notes after afterId
+    @Query("select n.user.id, max(n.id) from Note n where n.id > :afterId group by n.user.id")
+    List<Object[]> findLastNoteIdPerUser(@Param("afterId") long afterId);
+}
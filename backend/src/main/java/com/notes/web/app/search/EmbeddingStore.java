@@ -0,0 +1,153 @@
+package com.notes.web.app.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory embedding storage backed by a single contiguous float[] slab.
+ * Vectors are stored normalised, so scoring a note is one dot product (see VectorMath).
+ *
+ * Readers never lock: every search works on an immutable {@link Snapshot} read from one
+ * volatile field. Writers serialise on the store and never modify a slot a reader can see:
+ * a new or replaced vector is appended past the published size, and a removal only stamps
+ * the slot with the version that removed it (readers of older versions still see it).
+ * Dead slots are reclaimed by compaction into fresh arrays once they make up half the slab.
+ */
+public class EmbeddingStore implements VectorStore {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long LIVE = Long.MAX_VALUE;
+
+    private final int dimension;
+    private final SearchExecutor executor;
+
+    // Writer-only state (guarded by this)
+    private final LongIntMap slotByNoteId = new LongIntMap(INITIAL_CAPACITY);
+
+    private volatile Snapshot snapshot;
+
+    public EmbeddingStore(int dimension) {
+        this(dimension, SearchExecutor.SEQUENTIAL);
+    }
+
+    // Large stores are scanned in parallel slot ranges on the executor
+    public EmbeddingStore(int dimension, SearchExecutor executor) {
+        this.dimension = dimension;
+        this.executor = executor;
+        this.snapshot = new Snapshot(new float[INITIAL_CAPACITY * dimension], new long[INITIAL_CAPACITY],
+                newRemovedAt(INITIAL_CAPACITY), 0, 0, 0);
+    }
+
+    public int dimension() { return dimension; }
+    @Override public int size() { return snapshot.live; }
+    @Override public boolean isEmpty() { return snapshot.live == 0; }
+
+    @Override
+    public long memoryBytes() {
+        Snapshot view = snapshot;
+        return (long) view.slab.length * Float.BYTES + (long) view.noteIds.length * Long.BYTES
+                + (long) view.removedAt.length * Long.BYTES;
+    }
+
+    // Add or replace the vector of a note (a normalised copy is stored, the array is not retained)
+    @Override
+    public synchronized void put(long noteId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions but got " + vector.length);
+        }
+        Snapshot current = snapshot;
+        if (current.size == current.noteIds.length) {
+            current = compactOrGrow(current);
+        }
+
+        long version = current.version + 1;
+        int slot = current.size;
+        VectorMath.normalizeInto(vector, current.slab, slot * dimension);
+        current.noteIds[slot] = noteId;
+
+        int live = current.live + 1;
+        int previous = slotByNoteId.get(noteId);
+        if (previous >= 0) {
+            current.removedAt[previous] = version;
+            live--;
+        }
+        slotByNoteId.put(noteId, slot);
+        snapshot = new Snapshot(current.slab, current.noteIds, current.removedAt, slot + 1, live, version);
+    }
+
+    @Override
+    public synchronized boolean remove(long noteId) {
+        int slot = slotByNoteId.remove(noteId);
+        if (slot < 0) return false;
+
+        Snapshot current = snapshot;
+        long version = current.version + 1;
+        current.removedAt[slot] = version;
+        snapshot = new Snapshot(current.slab, current.noteIds, current.removedAt, current.size, current.live - 1, version);
+        return true;
+    }
+
+    // Copies the note's stored (normalised) vector; false if the note is not in the store
+    synchronized boolean copyVector(long noteId, float[] into) {
+        int slot = slotByNoteId.get(noteId);
+        if (slot < 0) return false;
+        System.arraycopy(snapshot.slab, slot * dimension, into, 0, dimension);
+        return true;
+    }
+
+    public synchronized void clear() {
+        slotByNoteId.clear();
+        snapshot = new Snapshot(new float[INITIAL_CAPACITY * dimension], new long[INITIAL_CAPACITY],
+                newRemovedAt(INITIAL_CAPACITY), 0, 0, snapshot.version + 1);
+    }
+
+    // Exhaustive scan: the k most similar notes (cosine similarity), best first
+    @Override
+    public List<ScoredNote> topK(float[] query, int k) {
+        if (k <= 0) return List.of();
+        float[] normalized = VectorMath.normalize(query);
+        Snapshot view = snapshot;
+        return executor.topK(view.size, k, (from, to, best) -> {
+            for (int slot = from; slot < to; slot++) {
+                if (!view.isVisible(slot)) continue;
+                best.offer(view.noteIds[slot], VectorMath.dot(normalized, 0, view.slab, slot * dimension, dimension));
+            }
+        });
+    }
+
+    // --- Helper: make room for one more slot (new arrays; readers keep using the old ones) ---
+    private Snapshot compactOrGrow(Snapshot current) {
+        int capacity = current.noteIds.length;
+        if (current.live > capacity / 2) capacity <<= 1;
+
+        float[] slab = new float[capacity * dimension];
+        long[] noteIds = new long[capacity];
+        int size = 0;
+        for (int slot = 0; slot < current.size; slot++) {
+            if (current.removedAt[slot] != LIVE) continue;
+            System.arraycopy(current.slab, slot * dimension, slab, size * dimension, dimension);
+            noteIds[size] = current.noteIds[slot];
+            slotByNoteId.put(noteIds[size], size);
+            size++;
+        }
+        Snapshot compacted = new Snapshot(slab, noteIds, newRemovedAt(capacity), size, current.live, current.version);
+        snapshot = compacted;
+        return compacted;
+    }
+
+    private static long[] newRemovedAt(int capacity) {
+        long[] removedAt = new long[capacity];
+        Arrays.fill(removedAt, LIVE);
+        return removedAt;
+    }
+
+    /**
+     * Published state. Slots below size are never rewritten; removedAt[slot] is written once,
+     * with a version newer than any snapshot that could still see the slot as live.
+     */
+    private record Snapshot(float[] slab, long[] noteIds, long[] removedAt, int size, int live, long version) {
+        boolean isVisible(int slot) {
+            return removedAt[slot] > version;
+        }
+    }
+}
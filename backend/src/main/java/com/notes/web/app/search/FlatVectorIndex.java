@@ -0,0 +1,86 @@
+package com.notes.web.app.search;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Brute-force index: one store per user, scanned in full on every search. With full-precision
+ * vectors (EmbeddingStore) it is exact; with int8/binary codes (QuantizedStore) it uses 4-32x
+ * less memory and re-ranks its best candidates exactly. Latency is linear in the user's note count,
+ * divided by the cores a {@link SearchExecutor} lets a large user's scan use.
+ *
+ * Thread-safe: searches scan lock-free store snapshots; writes to the same note are
+ * serialised through the owner map so the note never ends up in two users' stores.
+ */
+public class FlatVectorIndex implements VectorIndex {
+
+    private final Supplier<VectorStore> storeFactory;
+    private final Map<Long, VectorStore> storesByUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> ownerByNoteId = new ConcurrentHashMap<>();
+
+    public FlatVectorIndex(int dimension) {
+        this.storeFactory = () -> new EmbeddingStore(dimension);
+    }
+
+    // Quantized first pass; the best rerankFactor * k candidates are re-scored from fullPrecision
+    public FlatVectorIndex(int dimension, Quantization quantization, int rerankFactor, FullPrecisionSource fullPrecision) {
+        this(dimension, quantization, rerankFactor, fullPrecision, SearchExecutor.SEQUENTIAL);
+    }
+
+    // Large users' stores are scanned in parallel on the executor
+    public FlatVectorIndex(int dimension, Quantization quantization, int rerankFactor, FullPrecisionSource fullPrecision,
+                           SearchExecutor executor) {
+        this.storeFactory = quantization == Quantization.NONE
+                ? () -> new EmbeddingStore(dimension, executor)
+                : () -> new QuantizedStore(dimension, quantization, rerankFactor, fullPrecision, executor);
+    }
+
+    @Override
+    public void upsert(long userId, long noteId, float[] vector) {
+        ownerByNoteId.compute(noteId, (id, previousOwner) -> {
+            if (previousOwner != null && previousOwner != userId) {
+                storesByUser.get(previousOwner).remove(noteId);
+            }
+            storesByUser.computeIfAbsent(userId, u -> storeFactory.get()).put(noteId, vector);
+            return userId;
+        });
+    }
+
+    @Override
+    public void remove(long noteId) {
+        ownerByNoteId.computeIfPresent(noteId, (id, owner) -> {
+            storesByUser.get(owner).remove(noteId);
+            return null;
+        });
+    }
+
+    @Override
+    public List<ScoredNote> search(long userId, float[] query, int k) {
+        VectorStore store = storesByUser.get(userId);
+        return store == null ? List.of() : store.topK(query, k);
+    }
+
+    @Override
+    public boolean isEmpty(long userId) {
+        VectorStore store = storesByUser.get(userId);
+        return store == null || store.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return ownerByNoteId.size();
+    }
+
+    @Override
+    public void forEachNoteId(LongConsumer action) {
+        ownerByNoteId.keySet().forEach(action::accept);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return storesByUser.values().stream().mapToLong(VectorStore::memoryBytes).sum();
+    }
+}
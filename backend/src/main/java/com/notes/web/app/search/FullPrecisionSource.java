@@ -0,0 +1,12 @@
+package com.notes.web.app.search;
+
+import java.util.Collection;
+import java.util.Map;
+
+// Where a quantized index reads full-precision vectors from when re-ranking its candidates
+@FunctionalInterface
+public interface FullPrecisionSource {
+
+    // Vectors of the given notes; notes without a stored vector are simply absent
+    Map<Long, float[]> load(Collection<Long> noteIds);
+}
@@ -0,0 +1,280 @@
+package com.notes.web.app.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Hierarchical Navigable Small World graph (Malkov &amp; Yashunin) over one user's vectors.
+ *
+ * Vectors are normalised on insert so similarity is a plain dot product (VectorMath). Deleted notes
+ * stay in the graph as tombstones (still used for navigation, never returned) until they
+ * outnumber the live ones, at which point the graph is rebuilt from the live vectors.
+ *
+ * Not thread-safe on its own: HnswVectorIndex guards each graph with a read/write lock.
+ */
+final class HnswGraph {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private final LongIntMap nodeByNoteId = new LongIntMap(INITIAL_CAPACITY);
+    private float[] vectors;
+    private long[] noteIds;
+    private int[][][] links; // links[node][level] = neighbour nodes
+    private BitSet deleted = new BitSet();
+    private int count;
+    private int liveCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private long linkBytes; // adjacency lists, kept in step with links so memoryBytes() never walks them
+
+    HnswGraph(int dimension, int m, int efConstruction, long seed) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new Random(seed);
+        this.vectors = new float[INITIAL_CAPACITY * dimension];
+        this.noteIds = new long[INITIAL_CAPACITY];
+        this.links = new int[INITIAL_CAPACITY][][];
+    }
+
+    int size() {
+        return liveCount;
+    }
+
+    // Vector slab, note ids and adjacency lists (tombstones included)
+    long memoryBytes() {
+        return (long) vectors.length * Float.BYTES + (long) noteIds.length * Long.BYTES + linkBytes;
+    }
+
+    void upsert(long noteId, float[] vector) {
+        remove(noteId);
+        if (count == noteIds.length) grow();
+
+        int node = count++;
+        float[] normalized = VectorMath.normalize(vector);
+        System.arraycopy(normalized, 0, vectors, node * dimension, dimension);
+        noteIds[node] = noteId;
+        nodeByNoteId.put(noteId, node);
+        liveCount++;
+
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) links[node][l] = new int[0];
+        linkBytes += (long) (level + 1) * ARRAY_HEADER_BYTES;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(normalized, current, l);
+        }
+        List<Candidate> entryPoints = List.of(new Candidate(current, dot(normalized, current)));
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> nearest = searchLayer(normalized, entryPoints, efConstruction, l, false);
+            int[] neighbours = selectNeighbours(nearest, m);
+            setLinks(node, l, neighbours);
+            for (int neighbour : neighbours) {
+                connect(neighbour, node, l);
+            }
+            entryPoints = nearest;
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    boolean remove(long noteId) {
+        int node = nodeByNoteId.remove(noteId);
+        if (node < 0) return false;
+        deleted.set(node);
+        liveCount--;
+        if (liveCount == 0) {
+            clear();
+        } else if (count - liveCount > liveCount && count > INITIAL_CAPACITY) {
+            rebuild();
+        }
+        return true;
+    }
+
+    List<ScoredNote> search(float[] query, int k, int ef) {
+        if (liveCount == 0 || k <= 0) return List.of();
+        float[] normalized = VectorMath.normalize(query);
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(normalized, current, l);
+        }
+        List<Candidate> nearest = searchLayer(normalized,
+                List.of(new Candidate(current, dot(normalized, current))), Math.max(ef, k), 0, true);
+
+        List<ScoredNote> results = new ArrayList<>(Math.min(k, nearest.size()));
+        for (int i = 0; i < nearest.size() && results.size() < k; i++) {
+            Candidate c = nearest.get(i);
+            results.add(new ScoredNote(noteIds[c.node], c.score));
+        }
+        return results;
+    }
+
+    // --- Helper: walk one layer towards the query, one hop at a time ---
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = dot(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : links[current][level]) {
+                float score = dot(query, neighbour);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // --- Helper: best-first beam search on one layer, result sorted best first ---
+    private List<Candidate> searchLayer(float[] query, List<Candidate> entryPoints, int ef, int level, boolean liveOnly) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.score));
+
+        for (Candidate ep : entryPoints) {
+            visited.set(ep.node);
+            candidates.add(ep);
+            if (!liveOnly || !deleted.get(ep.node)) results.add(ep);
+        }
+        while (results.size() > ef) results.poll();
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.score < results.peek().score) break;
+
+            for (int neighbour : links[closest.node][level]) {
+                if (visited.get(neighbour)) continue;
+                visited.set(neighbour);
+
+                float score = dot(query, neighbour);
+                if (results.size() < ef || score > results.peek().score) {
+                    Candidate c = new Candidate(neighbour, score);
+                    candidates.add(c);
+                    if (!liveOnly || !deleted.get(neighbour)) {
+                        results.add(c);
+                        if (results.size() > ef) results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        return sorted;
+    }
+
+    // --- Helper: neighbour selection heuristic (keeps diverse directions, not just the closest) ---
+    private int[] selectNeighbours(List<Candidate> sortedCandidates, int limit) {
+        int[] selected = new int[Math.min(limit, sortedCandidates.size())];
+        int n = 0;
+        for (Candidate c : sortedCandidates) {
+            if (n == selected.length) break;
+            boolean diverse = true;
+            for (int i = 0; i < n; i++) {
+                if (dot(c.node, selected[i]) > c.score) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) selected[n++] = c.node;
+        }
+        return n == selected.length ? selected : Arrays.copyOf(selected, n);
+    }
+
+    private void connect(int node, int neighbour, int level) {
+        int[] current = links[node][level];
+        int limit = level == 0 ? maxM0 : m;
+        if (current.length < limit) {
+            int[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = neighbour;
+            setLinks(node, level, extended);
+            return;
+        }
+        // Over capacity: re-select the best neighbours among the existing ones plus the new one
+        List<Candidate> candidates = new ArrayList<>(current.length + 1);
+        for (int existing : current) candidates.add(new Candidate(existing, dot(node, existing)));
+        candidates.add(new Candidate(neighbour, dot(node, neighbour)));
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        setLinks(node, level, selectNeighbours(candidates, limit));
+    }
+
+    private void setLinks(int node, int level, int[] neighbours) {
+        linkBytes += (long) (neighbours.length - links[node][level].length) * Integer.BYTES;
+        links[node][level] = neighbours;
+    }
+
+    private void rebuild() {
+        int oldCount = count;
+        float[] oldVectors = vectors;
+        long[] oldNoteIds = noteIds;
+        BitSet oldDeleted = deleted;
+
+        clear();
+        float[] vector = new float[dimension];
+        for (int node = 0; node < oldCount; node++) {
+            if (oldDeleted.get(node)) continue;
+            System.arraycopy(oldVectors, node * dimension, vector, 0, dimension);
+            upsert(oldNoteIds[node], vector);
+        }
+    }
+
+    private void clear() {
+        nodeByNoteId.clear();
+        vectors = new float[INITIAL_CAPACITY * dimension];
+        noteIds = new long[INITIAL_CAPACITY];
+        links = new int[INITIAL_CAPACITY][][];
+        deleted = new BitSet();
+        count = 0;
+        liveCount = 0;
+        entryPoint = -1;
+        maxLevel = -1;
+        linkBytes = 0;
+    }
+
+    private void grow() {
+        int capacity = noteIds.length << 1;
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+        noteIds = Arrays.copyOf(noteIds, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private float dot(float[] query, int node) {
+        return VectorMath.dot(query, 0, vectors, node * dimension, dimension);
+    }
+
+    private float dot(int a, int b) {
+        return VectorMath.dot(vectors, a * dimension, vectors, b * dimension, dimension);
+    }
+
+    private record Candidate(int node, float score) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.notes.web.app.search;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Approximate index: one HNSW graph per user. Search cost grows roughly logarithmically
+ * with the user's note count instead of linearly.
+ *
+ * m / efConstruction trade build time and memory for graph quality, efSearch trades
+ * query latency for recall.
+ *
+ * Thread-safe with lock striping by user: each graph has its own read/write lock, so
+ * searches run in parallel and only wait for inserts/deletes into the same user's graph.
+ */
+public class HnswVectorIndex implements VectorIndex {
+
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final Map<Long, LockedGraph> graphsByUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> ownerByNoteId = new ConcurrentHashMap<>();
+
+    public HnswVectorIndex(int dimension, int m, int efConstruction, int efSearch) {
+        if (m < 2) throw new IllegalArgumentException("HNSW m must be at least 2");
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    @Override
+    public void upsert(long userId, long noteId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions but got " + vector.length);
+        }
+        ownerByNoteId.compute(noteId, (id, previousOwner) -> {
+            if (previousOwner != null && previousOwner != userId) {
+                graphsByUser.get(previousOwner).remove(noteId);
+            }
+            graphsByUser.computeIfAbsent(userId, u -> new LockedGraph(new HnswGraph(dimension, m, efConstruction, u)))
+                    .upsert(noteId, vector);
+            return userId;
+        });
+    }
+
+    @Override
+    public void remove(long noteId) {
+        ownerByNoteId.computeIfPresent(noteId, (id, owner) -> {
+            graphsByUser.get(owner).remove(noteId);
+            return null;
+        });
+    }
+
+    @Override
+    public List<ScoredNote> search(long userId, float[] query, int k) {
+        LockedGraph graph = graphsByUser.get(userId);
+        return graph == null ? List.of() : graph.search(query, k, efSearch);
+    }
+
+    @Override
+    public boolean isEmpty(long userId) {
+        LockedGraph graph = graphsByUser.get(userId);
+        return graph == null || graph.size() == 0;
+    }
+
+    @Override
+    public int size() {
+        return ownerByNoteId.size();
+    }
+
+    @Override
+    public void forEachNoteId(LongConsumer action) {
+        ownerByNoteId.keySet().forEach(action::accept);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return graphsByUser.values().stream().mapToLong(LockedGraph::memoryBytes).sum();
+    }
+
+    // --- Helper: one user's graph behind its own read/write lock ---
+    private static final class LockedGraph {
+        private final HnswGraph graph;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        LockedGraph(HnswGraph graph) {
+            this.graph = graph;
+        }
+
+        void upsert(long noteId, float[] vector) {
+            lock.writeLock().lock();
+            try {
+                graph.upsert(noteId, vector);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long noteId) {
+            lock.writeLock().lock();
+            try {
+                graph.remove(noteId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<ScoredNote> search(float[] query, int k, int ef) {
+            lock.readLock().lock();
+            try {
+                return graph.search(query, k, ef);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return graph.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long memoryBytes() {
+            lock.readLock().lock();
+            try {
+                return graph.memoryBytes();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.notes.web.app.search;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fuses the keyword (BM25) and semantic (cosine) result lists with weighted Reciprocal Rank
+ * Fusion: a note scores sum(weight / (rrfK + rank)) over the lists it appears in. RRF only
+ * looks at ranks, so the two very differently scaled scores never have to be normalised
+ * against each other. Semantic hits below minSimilarity are treated as noise and dropped.
+ */
+public class HybridRanker {
+
+    private final int rrfK;
+    private final double keywordWeight;
+    private final double semanticWeight;
+    private final double minSimilarity;
+
+    public HybridRanker(int rrfK, double keywordWeight, double semanticWeight, double minSimilarity) {
+        this.rrfK = rrfK;
+        this.keywordWeight = keywordWeight;
+        this.semanticWeight = semanticWeight;
+        this.minSimilarity = minSimilarity;
+    }
+
+    // Both input lists must be ordered best first. Returns the [offset, offset + limit) slice
+    // of the fused ranking, and whether any candidate ranks below it. That is exact as long as
+    // each list holds more than offset + limit hits or every match of its half of the search.
+    public Ranking rank(List<ScoredNote> keywordHits, List<ScoredNote> semanticHits, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit: " + offset + ", " + limit);
+        }
+        int end = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        Map<Long, Fused> fused = new HashMap<>();
+        for (int i = 0; i < keywordHits.size(); i++) {
+            ScoredNote hit = keywordHits.get(i);
+            Fused f = fused.computeIfAbsent(hit.noteId(), id -> new Fused());
+            f.score += keywordWeight / (rrfK + i + 1);
+            f.keywordScore = hit.score();
+        }
+        int rank = 0;
+        for (ScoredNote hit : semanticHits) {
+            if (hit.score() < minSimilarity) continue;
+            Fused f = fused.computeIfAbsent(hit.noteId(), id -> new Fused());
+            f.score += semanticWeight / (rrfK + ++rank);
+            f.similarity = hit.score();
+        }
+
+        TopK top = new TopK(end);
+        fused.forEach((noteId, f) -> top.offer(noteId, f.score));
+        List<ScoredNote> best = top.toList();
+
+        List<RankedNote> page = best.subList(Math.min(offset, best.size()), best.size()).stream()
+                .map(hit -> {
+                    Fused f = fused.get(hit.noteId());
+                    return new RankedNote(hit.noteId(), hit.score(), f.keywordScore, f.similarity);
+                })
+                .toList();
+        return new Ranking(page, fused.size() > end);
+    }
+
+    // keywordScore / similarity are null when the note was not found by that half of the search
+    public record RankedNote(long noteId, double score, Double keywordScore, Double similarity) {
+    }
+
+    public record Ranking(List<RankedNote> hits, boolean hasMore) {
+    }
+
+    private static final class Fused {
+        double score;
+        Double keywordScore;
+        Double similarity;
+    }
+}
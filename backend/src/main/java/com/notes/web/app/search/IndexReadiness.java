@@ -0,0 +1,38 @@
+package com.notes.web.app.search;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which users' vectors are still being loaded by the startup backfill. The backfill walks notes
+ * in id order, so a user is ready once its progress passes the user's highest note id; until
+ * then their semantic results would be partial, and search stays keyword-only for them.
+ * Users without pending notes (including everyone who signs up later) are always ready.
+ */
+public class IndexReadiness {
+
+    private final Map<Long, Long> lastNoteIdByUser = new ConcurrentHashMap<>(); // users still pending
+
+    // A backfill run is about to load these users' notes (user id -> highest note id)
+    public void begin(Map<Long, Long> lastNoteIds) {
+        lastNoteIdByUser.clear();
+        lastNoteIdByUser.putAll(lastNoteIds);
+    }
+
+    // Every note with id <= noteId has been loaded
+    public void advance(long noteId) {
+        lastNoteIdByUser.values().removeIf(last -> last <= noteId);
+    }
+
+    public void complete() {
+        lastNoteIdByUser.clear();
+    }
+
+    public boolean isReady(long userId) {
+        return !lastNoteIdByUser.containsKey(userId);
+    }
+
+    public int pendingUsers() {
+        return lastNoteIdByUser.size();
+    }
+}
@@ -0,0 +1,326 @@
+package com.notes.web.app.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Per-user inverted index over note titles and content, scored with Okapi BM25.
+ *
+ * A search only touches the posting lists of the query terms (the last term also matches
+ * as a prefix, for search-as-you-type), so cost no longer grows with the total amount of
+ * text a user has. Partitions are built lazily on a user's first search and then kept up
+ * to date incrementally; each has its own read/write lock. A partition's notes are spread over
+ * shards that a {@link SearchExecutor} scores in parallel once a query touches enough postings.
+ *
+ * Loaded partitions hold at most maxNotes notes between them: past that, the partitions of the
+ * users who searched least recently are dropped and rebuilt on their next search.
+ */
+public class KeywordIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int TITLE_BOOST = 2; // title terms count this many times
+
+    private final double k1;
+    private final double b;
+    private final int shardCount;
+    private final SearchExecutor executor;
+    private final long maxNotes;
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+    // Loaded users, least recently searched first (guarded by itself)
+    private final LinkedHashMap<Long, Partition> recency = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong loadedNotes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Bumped on every write to a user that is not loaded, so a concurrent load can tell it raced
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public KeywordIndex(double k1, double b) {
+        this(k1, b, 1, SearchExecutor.SEQUENTIAL);
+    }
+
+    // Each partition is split into shardCount shards, scored in parallel on the executor for large users
+    public KeywordIndex(double k1, double b, int shardCount, SearchExecutor executor) {
+        this(k1, b, shardCount, executor, Long.MAX_VALUE);
+    }
+
+    public KeywordIndex(double k1, double b, int shardCount, SearchExecutor executor, long maxNotes) {
+        if (shardCount < 1) throw new IllegalArgumentException("A partition needs at least one shard");
+        this.k1 = k1;
+        this.b = b;
+        this.shardCount = shardCount;
+        this.executor = executor;
+        this.maxNotes = maxNotes;
+    }
+
+    public boolean isLoaded(long userId) {
+        return partitions.containsKey(userId);
+    }
+
+    // Call before reading the user's notes from the database; pass the token to completeLoad
+    public long beginLoad(long userId) {
+        return generation(userId).get();
+    }
+
+    // Install a freshly read partition. Returns false (and installs nothing) if a write for the
+    // user happened since beginLoad, because the notes read may already be stale.
+    public boolean completeLoad(long userId, long token, Collection<Document> notes) {
+        Partition partition = new Partition();
+        for (Document note : notes) {
+            partition.add(note.id(), documentTokens(note.title(), note.content()));
+        }
+        synchronized (generation(userId)) {
+            if (generation(userId).get() != token) return false;
+            if (partitions.putIfAbsent(userId, partition) != null) return true;
+            loadedNotes.addAndGet(partition.docCount);
+            synchronized (recency) {
+                recency.put(userId, partition);
+            }
+        }
+        evictOverBudget(userId);
+        return true;
+    }
+
+    public void upsert(long userId, long noteId, String title, String content) {
+        Partition partition = loadedPartition(userId);
+        if (partition == null) return;
+        List<String> tokens = documentTokens(title, content);
+        partition.lock.writeLock().lock();
+        try {
+            if (partition.evicted) return; // dropped meanwhile: the rebuild will read this note
+            int before = partition.docCount;
+            partition.remove(noteId);
+            partition.add(noteId, tokens);
+            loadedNotes.addAndGet(partition.docCount - before);
+        } finally {
+            partition.lock.writeLock().unlock();
+        }
+        evictOverBudget(userId);
+    }
+
+    public void remove(long userId, long noteId) {
+        Partition partition = loadedPartition(userId);
+        if (partition == null) return;
+        partition.lock.writeLock().lock();
+        try {
+            if (partition.evicted) return;
+            int before = partition.docCount;
+            partition.remove(noteId);
+            loadedNotes.addAndGet(partition.docCount - before);
+        } finally {
+            partition.lock.writeLock().unlock();
+        }
+    }
+
+    // Up to k notes of the user containing the query terms, best BM25 score first
+    public List<ScoredNote> search(long userId, String query, int k) {
+        Partition partition = partitions.get(userId);
+        List<String> terms = tokenize(query);
+        if (partition == null || terms.isEmpty() || k <= 0) return List.of();
+        synchronized (recency) {
+            recency.get(userId); // most recently used now
+        }
+
+        partition.lock.readLock().lock();
+        try {
+            return partition.search(terms, k);
+        } finally {
+            partition.lock.readLock().unlock();
+        }
+    }
+
+    // Notes in the loaded partitions
+    public long size() {
+        return loadedNotes.get();
+    }
+
+    public int loadedUsers() {
+        return partitions.size();
+    }
+
+    // Partitions dropped to stay within maxNotes
+    public long evictions() {
+        return evictions.get();
+    }
+
+    // The indexed fields of a note
+    public record Document(long id, String title, String content) {
+    }
+
+    static List<String> tokenize(String... texts) {
+        List<String> tokens = new ArrayList<>();
+        for (String text : texts) {
+            if (text == null) continue;
+            for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+                if (!token.isEmpty()) tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private List<String> documentTokens(String title, String content) {
+        List<String> tokens = new ArrayList<>();
+        List<String> titleTokens = tokenize(title);
+        for (int i = 0; i < TITLE_BOOST; i++) tokens.addAll(titleTokens);
+        tokens.addAll(tokenize(content));
+        return tokens;
+    }
+
+    // Drops least recently searched partitions until the loaded notes fit again; the one just loaded or
+    // written (keep) stays even if it alone is over the budget
+    private void evictOverBudget(long keep) {
+        while (loadedNotes.get() > maxNotes) {
+            Map.Entry<Long, Partition> eldest;
+            synchronized (recency) {
+                eldest = recency.entrySet().stream().filter(e -> e.getKey() != keep).findFirst().orElse(null);
+                if (eldest == null) return;
+                recency.remove(eldest.getKey());
+            }
+            evict(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void evict(long userId, Partition partition) {
+        // Under the generation lock, like a write to an unloaded user: a load that began while the
+        // partition was still installed cannot be mistaken for a fresh one afterwards
+        synchronized (generation(userId)) {
+            if (!partitions.remove(userId, partition)) return;
+            generation(userId).incrementAndGet();
+        }
+        partition.lock.writeLock().lock();
+        try {
+            partition.evicted = true;
+            loadedNotes.addAndGet(-partition.docCount);
+        } finally {
+            partition.lock.writeLock().unlock();
+        }
+        evictions.incrementAndGet();
+    }
+
+    private Partition loadedPartition(long userId) {
+        AtomicLong generation = generation(userId);
+        synchronized (generation) {
+            Partition partition = partitions.get(userId);
+            if (partition == null) generation.incrementAndGet();
+            return partition;
+        }
+    }
+
+    private AtomicLong generation(long userId) {
+        return generations.computeIfAbsent(userId, id -> new AtomicLong());
+    }
+
+    // One user's postings, split by note id into shards that can be scored in parallel. The BM25
+    // statistics (document count, average length, document frequencies) span all shards, so the
+    // scores do not depend on the shard count.
+    private final class Partition {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Shard[] shards;
+        private volatile int docCount;
+        private long totalLength;
+        private boolean evicted; // under the write lock; no longer counted in loadedNotes
+
+        Partition() {
+            shards = new Shard[shardCount];
+            for (int i = 0; i < shardCount; i++) shards[i] = new Shard();
+        }
+
+        void add(long noteId, List<String> tokens) {
+            shard(noteId).add(noteId, tokens);
+            docCount++;
+            totalLength += tokens.size();
+        }
+
+        void remove(long noteId) {
+            int length = shard(noteId).remove(noteId);
+            if (length < 0) return;
+            docCount--;
+            totalLength -= length;
+        }
+
+        List<ScoredNote> search(List<String> terms, int k) {
+            if (docCount == 0) return List.of();
+            double avgLength = (double) totalLength / docCount;
+
+            // Exact terms, plus every indexed term the last one is a prefix of
+            Set<String> matched = new LinkedHashSet<>(terms.subList(0, terms.size() - 1));
+            String last = terms.get(terms.size() - 1);
+            for (Shard shard : shards) {
+                matched.addAll(shard.postings.subMap(last, true, last + Character.MAX_VALUE, false).keySet());
+            }
+
+            Map<String, Double> idfs = new LinkedHashMap<>();
+            long postingCount = 0;
+            for (String term : matched) {
+                int df = 0;
+                for (Shard shard : shards) {
+                    Map<Long, Integer> list = shard.postings.get(term);
+                    if (list != null) df += list.size();
+                }
+                if (df == 0) continue;
+                idfs.put(term, Math.log(1 + (docCount - df + 0.5) / (df + 0.5)));
+                postingCount += df;
+            }
+
+            return executor.topKOfShards(shards.length, postingCount, k, (from, to, best) -> {
+                for (int i = from; i < to; i++) shards[i].score(idfs, avgLength, best);
+            });
+        }
+
+        private Shard shard(long noteId) {
+            return shards[(int) Math.floorMod(noteId, (long) shards.length)];
+        }
+    }
+
+    private final class Shard {
+        // term -> (noteId -> term frequency); sorted so prefixes are a range scan
+        private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        private final Map<Long, Integer> docLengths = new HashMap<>();
+        private final Map<Long, Set<String>> termsByNote = new HashMap<>();
+
+        void add(long noteId, List<String> tokens) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) frequencies.merge(token, 1, Integer::sum);
+            frequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(noteId, tf));
+            termsByNote.put(noteId, frequencies.keySet());
+            docLengths.put(noteId, tokens.size());
+        }
+
+        // The removed note's length, or -1 if it was not indexed
+        int remove(long noteId) {
+            Set<String> terms = termsByNote.remove(noteId);
+            if (terms == null) return -1;
+            for (String term : terms) {
+                Map<Long, Integer> list = postings.get(term);
+                list.remove(noteId);
+                if (list.isEmpty()) postings.remove(term);
+            }
+            return docLengths.remove(noteId);
+        }
+
+        void score(Map<String, Double> idfs, double avgLength, TopK best) {
+            Map<Long, Double> scores = new HashMap<>();
+            idfs.forEach((term, idf) -> {
+                Map<Long, Integer> list = postings.get(term);
+                if (list == null) return;
+                list.forEach((noteId, tf) -> {
+                    double norm = tf + k1 * (1 - b + b * docLengths.get(noteId) / avgLength);
+                    scores.merge(noteId, idf * tf * (k1 + 1) / norm, Double::sum);
+                });
+            });
+            scores.forEach(best::offer);
+        }
+    }
+}
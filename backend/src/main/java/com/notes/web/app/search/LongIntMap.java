@@ -0,0 +1,112 @@
+package com.notes.web.app.search;
+
+import java.util.Arrays;
+
+// Open-addressing long -> int map (linear probing, backward-shift deletion).
+// Used instead of HashMap<Long, Integer> so lookups on the scoring path never box,
+// and put/remove of an existing key never allocate.
+final class LongIntMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Returns the mapped value, or -1 if the key is absent
+    int get(long key) {
+        int i = index(key);
+        while (true) {
+            long k = keys[i];
+            if (k == EMPTY) return -1;
+            if (k == key) return values[i];
+            i = (i + 1) & mask;
+        }
+    }
+
+    void put(long key, int value) {
+        if (key == EMPTY) throw new IllegalArgumentException("Reserved key: " + key);
+        int i = index(key);
+        while (true) {
+            long k = keys[i];
+            if (k == EMPTY) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size > keys.length * MAX_LOAD) rehash(keys.length << 1);
+                return;
+            }
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    // Returns the removed value, or -1 if the key was absent
+    int remove(long key) {
+        int i = index(key);
+        while (true) {
+            long k = keys[i];
+            if (k == EMPTY) return -1;
+            if (k == key) break;
+            i = (i + 1) & mask;
+        }
+        int removed = values[i];
+        size--;
+
+        // Shift following entries of the same probe run back into the hole
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != EMPTY) {
+            int home = index(keys[j]);
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // Home slot of a key (package-private so tests can build colliding probe runs)
+    int index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
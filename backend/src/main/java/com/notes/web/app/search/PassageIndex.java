@@ -0,0 +1,130 @@
+package com.notes.web.app.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Note-level view over a {@link VectorIndex} that holds one vector per passage of a note
+ * (see TextChunker). Passage i of note n is stored under the key {@code n << PASSAGE_BITS | i},
+ * so the underlying index, its quantization and its concurrency guarantees are unchanged.
+ *
+ * A search fetches the best passages and folds them into one score per note: the best passage
+ * (MAX), or the mean of the note's top aggregationK passages among those fetched (TOP_K_MEAN,
+ * which favours notes that match in several places). Passages are fetched in growing rounds
+ * until k distinct notes have turned up or the user has no more passages.
+ */
+public class PassageIndex {
+
+    public enum Aggregation { MAX, TOP_K_MEAN }
+
+    public static final int PASSAGE_BITS = 10;
+    public static final int MAX_PASSAGES = 1 << PASSAGE_BITS; // per note; longer notes are cut off
+    private static final int OVERSAMPLE = 4; // passages fetched per requested note in the first round
+
+    private final VectorIndex passages;
+    private final Aggregation aggregation;
+    private final int aggregationK;
+    private final Map<Long, Integer> passageCounts = new ConcurrentHashMap<>();
+
+    public PassageIndex(VectorIndex passages, Aggregation aggregation, int aggregationK) {
+        if (aggregationK < 1) throw new IllegalArgumentException("Aggregation k must be at least 1");
+        this.passages = passages;
+        this.aggregation = aggregation;
+        this.aggregationK = aggregationK;
+        // An index reopened from disk already holds passages: recover each note's count from its keys
+        passages.forEachNoteId(key -> passageCounts.merge(noteId(key), passage(key) + 1, Math::max));
+    }
+
+    public static long passageKey(long noteId, int passage) {
+        return noteId << PASSAGE_BITS | passage;
+    }
+
+    public static long noteId(long passageKey) {
+        return passageKey >>> PASSAGE_BITS;
+    }
+
+    public static int passage(long passageKey) {
+        return (int) (passageKey & (MAX_PASSAGES - 1));
+    }
+
+    // Replace all of the note's passage vectors
+    public void upsert(long userId, long noteId, List<float[]> vectors) {
+        if (vectors.isEmpty()) throw new IllegalArgumentException("A note needs at least one passage vector");
+        passageCounts.compute(noteId, (id, previous) -> {
+            int count = Math.min(vectors.size(), MAX_PASSAGES);
+            for (int i = 0; i < count; i++) {
+                passages.upsert(userId, passageKey(noteId, i), vectors.get(i));
+            }
+            for (int i = count; previous != null && i < previous; i++) {
+                passages.remove(passageKey(noteId, i));
+            }
+            return count;
+        });
+    }
+
+    public void remove(long noteId) {
+        passageCounts.computeIfPresent(noteId, (id, count) -> {
+            for (int i = 0; i < count; i++) passages.remove(passageKey(noteId, i));
+            return null;
+        });
+    }
+
+    // Up to k notes of the user, best first, scored from their passages' cosine similarities
+    public List<ScoredNote> search(long userId, float[] query, int k) {
+        if (k <= 0) return List.of();
+        Map<Long, List<Double>> scoresByNote;
+        int fetch = saturatedMultiply(k, OVERSAMPLE);
+        while (true) {
+            List<ScoredNote> hits = passages.search(userId, query, fetch);
+            scoresByNote = new LinkedHashMap<>();
+            for (ScoredNote hit : hits) { // best first, so each note's list is sorted too
+                scoresByNote.computeIfAbsent(noteId(hit.noteId()), id -> new ArrayList<>()).add(hit.score());
+            }
+            // A short round means the user has no more passages (the index size counts every user's);
+            // at Integer.MAX_VALUE the round cannot widen any further
+            if (scoresByNote.size() >= k || hits.isEmpty() || hits.size() < fetch || fetch == Integer.MAX_VALUE) break;
+            fetch = saturatedMultiply(fetch, 2);
+        }
+
+        TopK best = new TopK(k);
+        scoresByNote.forEach((noteId, scores) -> best.offer(noteId, aggregate(scores)));
+        return best.toList();
+    }
+
+    private static int saturatedMultiply(int a, int b) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) a * b);
+    }
+
+    // Passages indexed for the note (0 if it has none)
+    public int passageCount(long noteId) {
+        return passageCounts.getOrDefault(noteId, 0);
+    }
+
+    public boolean isEmpty(long userId) {
+        return passages.isEmpty(userId);
+    }
+
+    // Notes indexed (passages: see passageCount)
+    public int size() {
+        return passageCounts.size();
+    }
+
+    public int passageCount() {
+        return passages.size();
+    }
+
+    public long memoryBytes() {
+        return passages.memoryBytes();
+    }
+
+    private double aggregate(List<Double> bestFirst) {
+        if (aggregation == Aggregation.MAX) return bestFirst.get(0);
+        int n = Math.min(aggregationK, bestFirst.size()); // short notes: mean over the passages they have
+        double sum = 0;
+        for (int i = 0; i < n; i++) sum += bestFirst.get(i);
+        return sum / n;
+    }
+}
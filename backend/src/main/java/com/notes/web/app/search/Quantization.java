@@ -0,0 +1,20 @@
+package com.notes.web.app.search;
+
+// How the flat index keeps vectors in memory (search.vector.quantization)
+public enum Quantization {
+    NONE(1),    // float32: 4 bytes per dimension, exact
+    INT8(4),    // one signed byte per dimension plus a per-vector scale: 4x smaller
+    BINARY(20); // one sign bit per dimension, compared by Hamming distance: 32x smaller
+
+    // Candidates re-ranked per requested result when no rerank factor is configured.
+    // Binary codes are much coarser, so they need a far larger candidate pool for good recall.
+    private final int defaultRerankFactor;
+
+    Quantization(int defaultRerankFactor) {
+        this.defaultRerankFactor = defaultRerankFactor;
+    }
+
+    public int defaultRerankFactor() {
+        return defaultRerankFactor;
+    }
+}
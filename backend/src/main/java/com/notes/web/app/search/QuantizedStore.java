@@ -0,0 +1,209 @@
+package com.notes.web.app.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact variant of {@link EmbeddingStore}: keeps int8 or binary codes of the (normalised)
+ * vectors instead of float32, so a user's first-pass scan reads 4x (int8) or 32x (binary)
+ * less memory. The rerank-factor * k best approximate candidates are then re-scored exactly
+ * with full-precision vectors loaded from a {@link FullPrecisionSource}, which can live
+ * outside the heap (e.g. the note_embeddings table).
+ *
+ * Same concurrency model as EmbeddingStore: lock-free readers over immutable snapshots,
+ * writers serialised on the store.
+ */
+public class QuantizedStore implements VectorStore {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantizedStore.class);
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long LIVE = Long.MAX_VALUE;
+
+    private final int dimension;
+    private final Quantization quantization;
+    private final int codeSize; // bytes per vector (binary codes are padded to whole longs)
+    private final int rerankFactor;
+    private final FullPrecisionSource fullPrecision;
+    private final SearchExecutor executor;
+
+    // Writer-only state (guarded by this)
+    private final LongIntMap slotByNoteId = new LongIntMap(INITIAL_CAPACITY);
+
+    private volatile Snapshot snapshot;
+
+    public QuantizedStore(int dimension, Quantization quantization, int rerankFactor, FullPrecisionSource fullPrecision) {
+        this(dimension, quantization, rerankFactor, fullPrecision, SearchExecutor.SEQUENTIAL);
+    }
+
+    // The first pass over large stores is split into parallel slot ranges on the executor
+    public QuantizedStore(int dimension, Quantization quantization, int rerankFactor, FullPrecisionSource fullPrecision,
+                          SearchExecutor executor) {
+        if (quantization == Quantization.NONE) {
+            throw new IllegalArgumentException("Use EmbeddingStore for full-precision vectors");
+        }
+        this.dimension = dimension;
+        this.quantization = quantization;
+        this.codeSize = quantization == Quantization.INT8 ? dimension : (dimension + 63) / 64 * Long.BYTES;
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.fullPrecision = fullPrecision;
+        this.executor = executor;
+        this.snapshot = emptySnapshot(INITIAL_CAPACITY, 0);
+    }
+
+    @Override public int size() { return snapshot.live; }
+    @Override public boolean isEmpty() { return snapshot.live == 0; }
+
+    @Override
+    public long memoryBytes() {
+        Snapshot view = snapshot;
+        return view.codes.length + (long) view.scales.length * Float.BYTES
+                + (long) view.noteIds.length * Long.BYTES + (long) view.removedAt.length * Long.BYTES;
+    }
+
+    // In-memory bytes per stored vector (code + scale), for capacity planning
+    public int bytesPerVector() {
+        return codeSize + Float.BYTES;
+    }
+
+    @Override
+    public synchronized void put(long noteId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions but got " + vector.length);
+        }
+        Snapshot current = snapshot;
+        if (current.size == current.noteIds.length) {
+            current = compactOrGrow(current);
+        }
+
+        long version = current.version + 1;
+        int slot = current.size;
+        current.scales[slot] = encode(VectorMath.normalize(vector), current.codes, slot * codeSize);
+        current.noteIds[slot] = noteId;
+
+        int live = current.live + 1;
+        int previous = slotByNoteId.get(noteId);
+        if (previous >= 0) {
+            current.removedAt[previous] = version;
+            live--;
+        }
+        slotByNoteId.put(noteId, slot);
+        snapshot = new Snapshot(current.codes, current.scales, current.noteIds, current.removedAt, slot + 1, live, version);
+    }
+
+    @Override
+    public synchronized boolean remove(long noteId) {
+        int slot = slotByNoteId.remove(noteId);
+        if (slot < 0) return false;
+
+        Snapshot current = snapshot;
+        long version = current.version + 1;
+        current.removedAt[slot] = version;
+        snapshot = new Snapshot(current.codes, current.scales, current.noteIds, current.removedAt, current.size, current.live - 1, version);
+        return true;
+    }
+
+    @Override
+    public List<ScoredNote> topK(float[] query, int k) {
+        if (k <= 0) return List.of();
+        float[] unit = VectorMath.normalize(query);
+        byte[] queryCode = new byte[codeSize];
+        float queryScale = encode(unit, queryCode, 0);
+
+        // First pass over the codes: approximate scores, oversampled when re-ranking
+        Snapshot view = snapshot;
+        List<ScoredNote> approximate = executor.topK(view.size, fullPrecision == null ? k : k * rerankFactor, (from, to, candidates) -> {
+            for (int slot = from; slot < to; slot++) {
+                if (!view.isVisible(slot)) continue;
+                candidates.offer(view.noteIds[slot], approximateScore(view, slot, queryCode, queryScale));
+            }
+        });
+        return fullPrecision == null ? approximate : rerank(unit, approximate, k);
+    }
+
+    // --- Helper: exact cosine for the candidates; approximate score if a vector is unavailable ---
+    private List<ScoredNote> rerank(float[] unitQuery, List<ScoredNote> candidates, int k) {
+        Map<Long, float[]> vectors;
+        try {
+            vectors = fullPrecision.load(candidates.stream().map(ScoredNote::noteId).toList());
+        } catch (RuntimeException e) {
+            log.warn("Re-ranking unavailable, using approximate scores: {}", e.getMessage());
+            vectors = Map.of();
+        }
+        TopK best = new TopK(k);
+        for (ScoredNote candidate : candidates) {
+            float[] vector = vectors.get(candidate.noteId());
+            if (vector == null || vector.length != dimension) {
+                best.offer(candidate.noteId(), candidate.score());
+            } else {
+                float norm = (float) Math.sqrt(VectorMath.dot(vector, vector));
+                best.offer(candidate.noteId(), norm == 0 ? 0 : VectorMath.dot(unitQuery, vector) / norm);
+            }
+        }
+        return best.toList();
+    }
+
+    // Approximates the cosine similarity between the query and the vector in the slot
+    private double approximateScore(Snapshot view, int slot, byte[] queryCode, float queryScale) {
+        int offset = slot * codeSize;
+        if (quantization == Quantization.INT8) {
+            return (double) view.scales[slot] * queryScale * VectorMath.int8Dot(queryCode, 0, view.codes, offset, codeSize);
+        }
+        // Fraction of differing sign bits ~ angle / pi between the vectors
+        int differentBits = VectorMath.hammingDistance(queryCode, 0, view.codes, offset, codeSize);
+        return Math.cos(Math.PI * differentBits / dimension);
+    }
+
+    // Writes the code of a unit vector at codes[offset..+codeSize) and returns its scale
+    private float encode(float[] unit, byte[] codes, int offset) {
+        if (quantization == Quantization.INT8) {
+            float max = 0;
+            for (float v : unit) max = Math.max(max, Math.abs(v));
+            float factor = max == 0 ? 0 : 127 / max;
+            for (int i = 0; i < dimension; i++) codes[offset + i] = (byte) Math.round(unit[i] * factor);
+            return max / 127;
+        }
+        Arrays.fill(codes, offset, offset + codeSize, (byte) 0);
+        for (int i = 0; i < dimension; i++) {
+            if (unit[i] > 0) codes[offset + (i >> 3)] |= (byte) (1 << (i & 7));
+        }
+        return 1;
+    }
+
+    // --- Helper: make room for one more slot (new arrays; readers keep using the old ones) ---
+    private Snapshot compactOrGrow(Snapshot current) {
+        int capacity = current.noteIds.length;
+        if (current.live > capacity / 2) capacity <<= 1;
+
+        Snapshot compacted = emptySnapshot(capacity, current.version);
+        int size = 0;
+        for (int slot = 0; slot < current.size; slot++) {
+            if (current.removedAt[slot] != LIVE) continue;
+            System.arraycopy(current.codes, slot * codeSize, compacted.codes, size * codeSize, codeSize);
+            compacted.scales[size] = current.scales[slot];
+            compacted.noteIds[size] = current.noteIds[slot];
+            slotByNoteId.put(compacted.noteIds[size], size);
+            size++;
+        }
+        compacted = new Snapshot(compacted.codes, compacted.scales, compacted.noteIds, compacted.removedAt, size, current.live, current.version);
+        snapshot = compacted;
+        return compacted;
+    }
+
+    private Snapshot emptySnapshot(int capacity, long version) {
+        long[] removedAt = new long[capacity];
+        Arrays.fill(removedAt, LIVE);
+        return new Snapshot(new byte[capacity * codeSize], new float[capacity], new long[capacity], removedAt, 0, 0, version);
+    }
+
+    // Published state, same rules as EmbeddingStore.Snapshot
+    private record Snapshot(byte[] codes, float[] scales, long[] noteIds, long[] removedAt, int size, int live, long version) {
+        boolean isVisible(int slot) {
+            return removedAt[slot] > version;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.notes.web.app.search;
+
+// A note id with its similarity to the query (higher is better)
+public record ScoredNote(long noteId, double score) {
+}
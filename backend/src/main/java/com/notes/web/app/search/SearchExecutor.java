@@ -0,0 +1,123 @@
+package com.notes.web.app.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores one user's search in parallel: the caller describes its data as rows (or shards)
+ * [0, n) and a {@link RangeScorer} that offers the matches of a sub-range into a {@link TopK};
+ * the executor splits the range, scores the pieces on a dedicated ForkJoinPool (the request
+ * thread takes one piece itself) and merges the partial top-k lists.
+ *
+ * Small searches (fewer than two minShardSize pieces) stay on the request thread, where the
+ * fork/join overhead would outweigh the gain. Admission control: at most maxConcurrent searches
+ * fan out at a time; the others are scored sequentially on their own request thread instead of
+ * queueing behind a few large searches, so the pool never holds more than maxConcurrent *
+ * parallelism pieces.
+ */
+public class SearchExecutor implements AutoCloseable {
+
+    // Single-threaded: scores everything on the caller (tests, benchmarks, parallelism 1)
+    public static final SearchExecutor SEQUENTIAL = new SearchExecutor(1, 1, Integer.MAX_VALUE);
+
+    @FunctionalInterface
+    public interface RangeScorer {
+        // Offer the matches among rows [from, to) into best (called concurrently for disjoint ranges)
+        void score(int from, int to, TopK best);
+    }
+
+    private final int parallelism;
+    private final int minShardSize;
+    private final ForkJoinPool pool;
+    private final Semaphore admission;
+    private final AtomicLong parallelSearches = new AtomicLong();
+    private final AtomicLong sequentialSearches = new AtomicLong();
+    private final AtomicLong shedSearches = new AtomicLong();
+
+    public SearchExecutor(int parallelism, int maxConcurrent, int minShardSize) {
+        if (parallelism < 1 || maxConcurrent < 1 || minShardSize < 1) {
+            throw new IllegalArgumentException("Parallelism, max concurrent searches and shard size must be positive");
+        }
+        this.parallelism = parallelism;
+        this.minShardSize = minShardSize;
+        this.admission = new Semaphore(maxConcurrent);
+        this.pool = parallelism == 1 ? null : new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("search-worker-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    // Rows [0, rows), split into at most parallelism pieces of at least minShardSize rows
+    public List<ScoredNote> topK(int rows, int k, RangeScorer scorer) {
+        return run(rows, (int) Math.min(parallelism, rows / minShardSize), k, scorer);
+    }
+
+    // Data already partitioned into shards [0, shards) holding items entries in total
+    public List<ScoredNote> topKOfShards(int shards, long items, int k, RangeScorer scorer) {
+        return run(shards, (int) Math.min(Math.min(parallelism, shards), items / minShardSize), k, scorer);
+    }
+
+    public Stats getStats() {
+        return new Stats(parallelSearches.get(), sequentialSearches.get(), shedSearches.get(),
+                pool == null ? 0 : pool.getActiveThreadCount());
+    }
+
+    // shed: large enough to fan out, but run sequentially because maxConcurrent searches already were
+    public record Stats(long parallel, long sequential, long shed, int activeWorkers) {
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) pool.shutdownNow();
+    }
+
+    private List<ScoredNote> run(int rows, int pieces, int k, RangeScorer scorer) {
+        if (k <= 0 || rows <= 0) return List.of();
+        if (pieces < 2 || pool == null) {
+            sequentialSearches.incrementAndGet();
+            return sequential(rows, k, scorer);
+        }
+        if (!admission.tryAcquire()) {
+            shedSearches.incrementAndGet();
+            return sequential(rows, k, scorer);
+        }
+        parallelSearches.incrementAndGet();
+        List<ForkJoinTask<List<ScoredNote>>> forks = new ArrayList<>(pieces - 1);
+        try {
+            for (int piece = 1; piece < pieces; piece++) {
+                int from = (int) ((long) rows * piece / pieces);
+                int to = (int) ((long) rows * (piece + 1) / pieces);
+                forks.add(pool.submit(() -> {
+                    TopK partial = new TopK(k);
+                    scorer.score(from, to, partial);
+                    return partial.toList();
+                }));
+            }
+            TopK best = new TopK(k);
+            scorer.score(0, rows / pieces, best);
+            for (ForkJoinTask<List<ScoredNote>> fork : forks) {
+                for (ScoredNote hit : fork.join()) best.offer(hit.noteId(), hit.score());
+            }
+            return best.toList();
+        } finally {
+            forks.forEach(fork -> fork.cancel(false)); // no-op for finished pieces
+            admission.release();
+        }
+    }
+
+    private static List<ScoredNote> sequential(int rows, int k, RangeScorer scorer) {
+        TopK best = new TopK(k);
+        scorer.score(0, rows, best);
+        return best.toList();
+    }
+}
@@ -0,0 +1,503 @@
+package com.notes.web.app.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Brute-force index whose vectors live on disk, so a restart maps files instead of reloading and
+ * re-indexing every embedding. The directory holds:
+ *
+ * <ul>
+ *   <li>immutable {@link VectorSegment} files (id map + normalised vectors), memory-mapped;</li>
+ *   <li>a {@link WriteAheadLog} of the writes since the newest segment, replayed into an in-memory
+ *       memtable (one {@link EmbeddingStore} per user) on open;</li>
+ *   <li>a MANIFEST naming the live segments (oldest first) and the current log, replaced atomically.</li>
+ * </ul>
+ *
+ * Once the memtable reaches flushRows vectors it is written out as a new segment and the log starts
+ * over. Replaced or deleted vectors are marked dead in memory; deletions are also recorded in the
+ * next segment (tombstones), so they still hide older rows after a restart. A background merge
+ * rewrites all segments into one when there are more than maxSegments or half their rows are dead.
+ *
+ * Searches scan the user's contiguous row range in each segment plus their memtable store, without
+ * locking; writes, flushes and the merge's final swap are serialised on the index. The heap holds the
+ * id-to-location map, deleted bitmaps and the memtable; the vectors stay in the page cache. The
+ * directory is derived data (note_embeddings is the source of truth): if it cannot be read it is
+ * discarded and the startup backfill fills it again.
+ */
+public class SegmentedVectorIndex implements VectorIndex, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedVectorIndex.class);
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final int MANIFEST_FORMAT = 1;
+
+    private final Path directory;
+    private final int dimension;
+    private final int flushRows;
+    private final int maxSegments;
+    private final boolean syncWrites;
+    private final SearchExecutor executor;
+    private final ScheduledExecutorService merger;
+    private final Map<Long, Integer> liveByUser = new ConcurrentHashMap<>();
+
+    // Writer-only state (guarded by this)
+    private final Map<Long, Location> locations = new HashMap<>();
+    private final Map<Long, Long> memtableOwners = new HashMap<>();
+    private final List<Long> pendingTombstones = new ArrayList<>();
+    private WriteAheadLog wal;
+    private long nextGeneration;
+
+    private volatile State state;
+    private volatile int live;
+
+    // Where a key's live vector is: a segment row, or the memtable (segment == null)
+    private record Location(long userId, VectorSegment segment, int row) {
+    }
+
+    // What searches read: segments oldest first, plus the memtable stores by user
+    private record State(List<VectorSegment> segments, Map<Long, EmbeddingStore> memtable) {
+    }
+
+    public SegmentedVectorIndex(Path directory, int dimension, int flushRows, int maxSegments,
+                                Duration mergeInterval, boolean syncWrites) {
+        this(directory, dimension, flushRows, maxSegments, mergeInterval, syncWrites, SearchExecutor.SEQUENTIAL);
+    }
+
+    // A large user's rows are scanned in parallel on the executor
+    public SegmentedVectorIndex(Path directory, int dimension, int flushRows, int maxSegments,
+                                Duration mergeInterval, boolean syncWrites, SearchExecutor executor) {
+        if (flushRows < 1 || maxSegments < 1) throw new IllegalArgumentException("flushRows and maxSegments must be positive");
+        this.directory = directory;
+        this.dimension = dimension;
+        this.flushRows = flushRows;
+        this.maxSegments = maxSegments;
+        this.syncWrites = syncWrites;
+        this.executor = executor;
+
+        long started = System.currentTimeMillis();
+        try {
+            Files.createDirectories(directory);
+            try {
+                load();
+            } catch (IOException | RuntimeException e) {
+                log.error("Vector index at {} is unreadable; starting empty", directory, e);
+                discard();
+                load();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the vector index at " + directory, e);
+        }
+        log.info("Vector index: opened {} with {} vectors in {} segments ({} MB mapped) in {} ms", directory, live,
+                state.segments().size(), mappedBytes() / (1024 * 1024), System.currentTimeMillis() - started);
+
+        this.merger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "vector-index-merge");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMs = mergeInterval.toMillis();
+        merger.scheduleWithFixedDelay(this::mergeIfNeeded, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void upsert(long userId, long noteId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions but got " + vector.length);
+        }
+        synchronized (this) {
+            try {
+                wal.appendUpsert(userId, noteId, vector);
+                applyUpsert(userId, noteId, vector);
+                if (memtableOwners.size() >= flushRows) flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write to the vector index", e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void remove(long noteId) {
+        if (!locations.containsKey(noteId)) return;
+        try {
+            wal.appendDelete(noteId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the vector index", e);
+        }
+        applyRemove(noteId);
+    }
+
+    @Override
+    public List<ScoredNote> search(long userId, float[] query, int k) {
+        if (k <= 0) return List.of();
+        float[] normalized = VectorMath.normalize(query);
+        State view = state;
+        TopK best = new TopK(k);
+        // Recent writes first: a search that started before a merge swap may still scan a source
+        // row of a key rewritten since, and must not return that key twice
+        Set<Long> recentKeys = new HashSet<>();
+        EmbeddingStore recent = view.memtable().get(userId);
+        if (recent != null) {
+            for (ScoredNote hit : recent.topK(normalized, k)) {
+                best.offer(hit.noteId(), hit.score());
+                recentKeys.add(hit.noteId());
+            }
+        }
+        // The user's rows in every segment, scored as one range [0, rows) split across the executor
+        List<VectorSegment> segments = view.segments();
+        int[] firstRows = new int[segments.size()];
+        int[] offsets = new int[segments.size() + 1];
+        for (int s = 0; s < segments.size(); s++) {
+            firstRows[s] = segments.get(s).firstRow(userId);
+            offsets[s + 1] = offsets[s] + segments.get(s).firstRow(userId + 1) - firstRows[s];
+        }
+        List<ScoredNote> stored = executor.topK(offsets[segments.size()], k, (from, to, partial) -> {
+            float[] vector = new float[dimension];
+            for (int s = 0; s < segments.size(); s++) {
+                VectorSegment segment = segments.get(s);
+                int end = Math.min(to, offsets[s + 1]);
+                for (int i = Math.max(from, offsets[s]); i < end; i++) {
+                    int row = firstRows[s] + i - offsets[s];
+                    if (segment.isDeleted(row) || !recentKeys.isEmpty() && recentKeys.contains(segment.key(row))) continue;
+                    segment.readVector(row, vector);
+                    partial.offer(segment.key(row), VectorMath.dot(normalized, vector));
+                }
+            }
+        });
+        for (ScoredNote hit : stored) best.offer(hit.noteId(), hit.score());
+        return best.toList();
+    }
+
+    @Override
+    public boolean isEmpty(long userId) {
+        return !liveByUser.containsKey(userId);
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public synchronized void forEachNoteId(LongConsumer action) {
+        locations.keySet().forEach(action::accept);
+    }
+
+    // Heap only: the mapped vectors are in the page cache (see mappedBytes)
+    @Override
+    public long memoryBytes() {
+        State view = state;
+        return view.memtable().values().stream().mapToLong(EmbeddingStore::memoryBytes).sum()
+                + view.segments().stream().mapToLong(VectorSegment::heapBytes).sum();
+    }
+
+    public long mappedBytes() {
+        return state.segments().stream().mapToLong(VectorSegment::fileBytes).sum();
+    }
+
+    public int segmentCount() {
+        return state.segments().size();
+    }
+
+    // Writes the memtable out as a segment now (normally done every flushRows writes)
+    public synchronized void flush() throws IOException {
+        if (memtableOwners.isEmpty() && pendingTombstones.isEmpty()) return;
+
+        int rows = memtableOwners.size();
+        long[] keys = new long[rows];
+        long[] userIds = new long[rows];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : memtableOwners.entrySet()) {
+            keys[i] = entry.getKey();
+            userIds[i] = entry.getValue();
+            i++;
+        }
+        int[] order = sortedByUserAndKey(userIds, keys);
+        long[] sortedUsers = new long[rows];
+        long[] sortedKeys = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            sortedUsers[row] = userIds[order[row]];
+            sortedKeys[row] = keys[order[row]];
+        }
+        long[] tombstones = pendingTombstones.stream().mapToLong(Long::longValue).toArray();
+
+        State current = state;
+        VectorSegment segment = VectorSegment.write(directory.resolve(segmentName(nextGeneration++)), dimension,
+                sortedUsers, sortedKeys, tombstones,
+                (row, into) -> current.memtable().get(sortedUsers[row]).copyVector(sortedKeys[row], into));
+        WriteAheadLog nextWal = WriteAheadLog.open(directory.resolve(walName(nextGeneration++)), dimension, syncWrites,
+                (type, userId, key, vector) -> { });
+        List<VectorSegment> segments = new ArrayList<>(current.segments());
+        segments.add(segment);
+        writeManifest(segments, nextWal);
+
+        WriteAheadLog previousWal = wal;
+        wal = nextWal;
+        previousWal.close();
+        Files.deleteIfExists(previousWal.path());
+
+        for (int row = 0; row < rows; row++) {
+            locations.put(sortedKeys[row], new Location(sortedUsers[row], segment, row));
+        }
+        memtableOwners.clear();
+        pendingTombstones.clear();
+        // Searches still holding the old state keep reading the old memtable stores
+        state = new State(List.copyOf(segments), new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public void close() throws IOException {
+        merger.shutdownNow();
+        synchronized (this) {
+            wal.close();
+        }
+    }
+
+    // --- Merge: all current segments into one, dropping dead rows and tombstones ---
+    void mergeIfNeeded() {
+        try {
+            List<VectorSegment> sources = state.segments();
+            long rows = sources.stream().mapToLong(VectorSegment::rows).sum();
+            long dead = sources.stream().mapToLong(VectorSegment::deletedRows).sum();
+            if (sources.size() > maxSegments || dead * 2 > rows) {
+                merge(sources);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Vector index merge failed", e);
+        }
+    }
+
+    private void merge(List<VectorSegment> sources) throws IOException {
+        long started = System.currentTimeMillis();
+        long generation;
+        synchronized (this) {
+            generation = nextGeneration++;
+        }
+
+        // Live rows now; rows that die while the merge runs are marked dead at the swap
+        int total = sources.stream().mapToInt(VectorSegment::rows).sum();
+        int[] sourceOf = new int[total];
+        int[] rowOf = new int[total];
+        long[] userIds = new long[total];
+        long[] keys = new long[total];
+        int count = 0;
+        for (int s = 0; s < sources.size(); s++) {
+            VectorSegment source = sources.get(s);
+            for (int row = 0; row < source.rows(); row++) {
+                if (source.isDeleted(row)) continue;
+                sourceOf[count] = s;
+                rowOf[count] = row;
+                userIds[count] = source.userId(row);
+                keys[count] = source.key(row);
+                count++;
+            }
+        }
+        int[] order = sortedByUserAndKey(Arrays.copyOf(userIds, count), Arrays.copyOf(keys, count));
+        long[] mergedUsers = new long[count];
+        long[] mergedKeys = new long[count];
+        for (int row = 0; row < count; row++) {
+            mergedUsers[row] = userIds[order[row]];
+            mergedKeys[row] = keys[order[row]];
+        }
+        // Tombstones only ever hide rows in older segments, and every older segment is merged here
+        VectorSegment merged = count == 0 ? null : VectorSegment.write(directory.resolve(segmentName(generation)),
+                dimension, mergedUsers, mergedKeys, new long[0],
+                (row, into) -> sources.get(sourceOf[order[row]]).readVector(rowOf[order[row]], into));
+
+        synchronized (this) {
+            for (int row = 0; row < count; row++) {
+                Location location = locations.get(mergedKeys[row]);
+                if (location != null && location.segment() == sources.get(sourceOf[order[row]])
+                        && location.row() == rowOf[order[row]]) {
+                    locations.put(mergedKeys[row], new Location(location.userId(), merged, row));
+                } else {
+                    merged.markDeleted(row); // replaced or deleted since it was read
+                }
+            }
+            // Segments flushed during the merge come after the merged ones
+            List<VectorSegment> current = state.segments();
+            List<VectorSegment> segments = new ArrayList<>();
+            if (merged != null) segments.add(merged);
+            segments.addAll(current.subList(sources.size(), current.size()));
+            writeManifest(segments, wal);
+            state = new State(List.copyOf(segments), state.memtable());
+        }
+        // Mappings of the old files stay valid for searches still reading them
+        for (VectorSegment source : sources) Files.deleteIfExists(source.path());
+        log.info("Vector index: merged {} segments into {} live rows ({} dropped) in {} ms", sources.size(), count,
+                total - count, System.currentTimeMillis() - started);
+    }
+
+    // --- Writer helpers (caller holds the lock) ---
+    private void applyUpsert(long userId, long key, float[] vector) {
+        Location previous = locations.get(key);
+        if (previous != null) detach(key, previous);
+        state.memtable().computeIfAbsent(userId, u -> new EmbeddingStore(dimension, executor)).put(key, vector);
+        locations.put(key, new Location(userId, null, 0));
+        memtableOwners.put(key, userId);
+        liveByUser.merge(userId, 1, Integer::sum);
+        live = locations.size();
+    }
+
+    private void applyRemove(long key) {
+        Location previous = locations.remove(key);
+        if (previous == null) return;
+        detach(key, previous);
+        pendingTombstones.add(key); // an older segment may still hold a (dead) row for the key
+        live = locations.size();
+    }
+
+    // Hide the key's current vector; a reader may briefly miss the key, but never sees it twice
+    private void detach(long key, Location location) {
+        if (location.segment() != null) {
+            location.segment().markDeleted(location.row());
+        } else {
+            state.memtable().get(location.userId()).remove(key);
+            memtableOwners.remove(key);
+        }
+        liveByUser.computeIfPresent(location.userId(), (user, count) -> count > 1 ? count - 1 : null);
+    }
+
+    // --- Open / manifest ---
+    private synchronized void load() throws IOException {
+        locations.clear();
+        memtableOwners.clear();
+        pendingTombstones.clear();
+        liveByUser.clear();
+
+        Path manifestPath = directory.resolve(MANIFEST);
+        List<VectorSegment> segments = new ArrayList<>();
+        String walName;
+        if (Files.exists(manifestPath)) {
+            Properties manifest = new Properties();
+            manifest.load(new StringReader(Files.readString(manifestPath, StandardCharsets.UTF_8)));
+            if (Integer.parseInt(manifest.getProperty("format")) != MANIFEST_FORMAT) {
+                throw new IOException("unsupported manifest format " + manifest.getProperty("format"));
+            }
+            if (Integer.parseInt(manifest.getProperty("dimension")) != dimension) {
+                throw new IOException("built for " + manifest.getProperty("dimension") + " dimensions, expected " + dimension);
+            }
+            nextGeneration = Long.parseLong(manifest.getProperty("next-generation"));
+            for (String name : manifest.getProperty("segments", "").split(",")) {
+                if (!name.isBlank()) segments.add(VectorSegment.open(directory.resolve(name.trim())));
+            }
+            walName = manifest.getProperty("wal");
+        } else {
+            nextGeneration = 1;
+            walName = walName(nextGeneration++);
+        }
+
+        // Replay the segments oldest first: a segment's tombstones, then its rows, hide older rows of the same key
+        for (VectorSegment segment : segments) {
+            if (segment.dimension() != dimension) throw new IOException(segment.path().getFileName() + " has the wrong dimension");
+            for (long key : segment.tombstones()) {
+                Location previous = locations.remove(key);
+                if (previous != null) previous.segment().markDeleted(previous.row());
+            }
+            for (int row = 0; row < segment.rows(); row++) {
+                Location previous = locations.put(segment.key(row), new Location(segment.userId(row), segment, row));
+                if (previous != null) previous.segment().markDeleted(previous.row());
+            }
+        }
+        for (Location location : locations.values()) liveByUser.merge(location.userId(), 1, Integer::sum);
+        live = locations.size();
+        state = new State(List.copyOf(segments), new ConcurrentHashMap<>());
+
+        wal = WriteAheadLog.open(directory.resolve(walName), dimension, syncWrites, (type, userId, key, vector) -> {
+            if (type == WriteAheadLog.UPSERT) applyUpsert(userId, key, vector);
+            else applyRemove(key);
+        });
+        writeManifest(segments, wal);
+        deleteUnreferenced(segments, wal);
+    }
+
+    private void writeManifest(List<VectorSegment> segments, WriteAheadLog log) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty("format", String.valueOf(MANIFEST_FORMAT));
+        manifest.setProperty("dimension", String.valueOf(dimension));
+        manifest.setProperty("next-generation", String.valueOf(nextGeneration));
+        manifest.setProperty("segments", String.join(",",
+                segments.stream().map(s -> s.path().getFileName().toString()).toList()));
+        manifest.setProperty("wal", log.path().getFileName().toString());
+        StringWriter text = new StringWriter();
+        manifest.store(text, "Vector index manifest");
+
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) channel.write(bytes);
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Leftovers of a flush or merge interrupted before (or cleaned up after) its manifest
+    private void deleteUnreferenced(List<VectorSegment> segments, WriteAheadLog log) throws IOException {
+        Set<Path> keep = new HashSet<>();
+        segments.forEach(segment -> keep.add(segment.path().getFileName()));
+        keep.add(log.path().getFileName());
+        for (Path file : indexFiles()) {
+            if (!keep.contains(file.getFileName())) Files.deleteIfExists(file);
+        }
+    }
+
+    private void discard() throws IOException {
+        for (Path file : indexFiles()) Files.deleteIfExists(file);
+        Files.deleteIfExists(directory.resolve(MANIFEST));
+    }
+
+    private List<Path> indexFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith("segment-") || name.startsWith("wal-") || name.endsWith(".tmp");
+            }).toList();
+        }
+    }
+
+    private static String segmentName(long generation) {
+        return String.format("segment-%08d.vec", generation);
+    }
+
+    private static String walName(long generation) {
+        return String.format("wal-%08d.log", generation);
+    }
+
+    // Permutation that sorts the rows by (user id, key), the order segments are written in
+    private static int[] sortedByUserAndKey(long[] userIds, long[] keys) {
+        return IntStream.range(0, userIds.length).boxed()
+                .sorted(Comparator.<Integer>comparingLong(i -> userIds[i]).thenComparingLong(i -> keys[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+}
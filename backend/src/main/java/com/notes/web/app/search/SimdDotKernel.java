@@ -0,0 +1,79 @@
+package com.notes.web.app.search;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// Dot product on the widest SIMD registers the CPU has. Only loaded through VectorMath.
+final class SimdDotKernel implements VectorMath.DotKernel {
+
+    // The narrowest vector shape there is; byte loads never go below it
+    private static final int MIN_BYTE_BITS = 64;
+
+    private final VectorSpecies<Float> floats;
+    // int8 codes: one int lane per byte, widened to ints before multiplying. On 128-bit registers that
+    // would take a 32-bit byte vector, which does not exist, so bytes are loaded 64 bits at a time and
+    // widened in several parts.
+    private final VectorSpecies<Integer> ints;
+    private final VectorSpecies<Byte> bytes;
+    private final int parts;
+
+    SimdDotKernel() {
+        this(VectorShape.preferredShape());
+    }
+
+    // Any shape works (what the CPU lacks is emulated); tests use it to force the narrow ones
+    SimdDotKernel(VectorShape shape) {
+        floats = FloatVector.SPECIES_MAX.withShape(shape);
+        ints = IntVector.SPECIES_MAX.withShape(shape);
+        bytes = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(MIN_BYTE_BITS, ints.length() * Byte.SIZE)));
+        parts = bytes.length() / ints.length();
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc0 = FloatVector.zero(floats);
+        FloatVector acc1 = FloatVector.zero(floats);
+        int step = floats.length();
+        int i = 0;
+        // Two accumulators so consecutive multiply-adds do not wait on each other
+        for (int bound = floats.loopBound(length) - 2 * step; i <= bound; i += 2 * step) {
+            acc0 = FloatVector.fromArray(floats, a, aOffset + i)
+                    .mul(FloatVector.fromArray(floats, b, bOffset + i)).add(acc0);
+            acc1 = FloatVector.fromArray(floats, a, aOffset + i + step)
+                    .mul(FloatVector.fromArray(floats, b, bOffset + i + step)).add(acc1);
+        }
+        for (int bound = floats.loopBound(length); i < bound; i += step) {
+            acc0 = FloatVector.fromArray(floats, a, aOffset + i)
+                    .mul(FloatVector.fromArray(floats, b, bOffset + i)).add(acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) sum += a[aOffset + i] * b[bOffset + i];
+        return sum;
+    }
+
+    @Override
+    public int int8Dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        IntVector acc = IntVector.zero(ints);
+        int i = 0;
+        for (int bound = bytes.loopBound(length); i < bound; i += bytes.length()) {
+            ByteVector va = ByteVector.fromArray(bytes, a, aOffset + i);
+            ByteVector vb = ByteVector.fromArray(bytes, b, bOffset + i);
+            for (int part = 0; part < parts; part++) {
+                acc = ((IntVector) va.convertShape(VectorOperators.B2I, ints, part))
+                        .mul((IntVector) vb.convertShape(VectorOperators.B2I, ints, part)).add(acc);
+            }
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) sum += a[aOffset + i] * b[bOffset + i];
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "SIMD (" + floats.vectorBitSize() + "-bit, " + floats.length() + " lanes)";
+    }
+}
@@ -0,0 +1,49 @@
+package com.notes.web.app.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the k best-scoring notes seen so far in a bounded min-heap: O(n log k) instead of
+ * sorting all n candidates. Ties are broken by note id so the order is deterministic.
+ */
+public final class TopK {
+
+    // Best first: higher score, then lower note id
+    static final Comparator<ScoredNote> BEST_FIRST = Comparator.comparingDouble(ScoredNote::score).reversed()
+            .thenComparingLong(ScoredNote::noteId);
+
+    private final int k;
+    private final PriorityQueue<ScoredNote> heap; // worst of the kept notes on top
+
+    public TopK(int k) {
+        this.k = Math.max(0, k);
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(this.k, 1024)), BEST_FIRST.reversed());
+    }
+
+    public void offer(long noteId, double score) {
+        if (k == 0) return;
+        if (heap.size() < k) {
+            heap.add(new ScoredNote(noteId, score));
+            return;
+        }
+        ScoredNote worst = heap.peek();
+        if (score > worst.score() || (score == worst.score() && noteId < worst.noteId())) {
+            heap.poll();
+            heap.add(new ScoredNote(noteId, score));
+        }
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    // The kept notes, best first
+    public List<ScoredNote> toList() {
+        List<ScoredNote> results = new ArrayList<>(heap);
+        results.sort(BEST_FIRST);
+        return results;
+    }
+}
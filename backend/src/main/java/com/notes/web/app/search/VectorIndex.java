@@ -0,0 +1,30 @@
+package com.notes.web.app.search;
+
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Nearest-neighbour index over note embeddings, partitioned by owner so a search
+ * only ever sees the notes of the user issuing it.
+ */
+public interface VectorIndex {
+
+    // Add the note's vector, replacing any previous one
+    void upsert(long userId, long noteId, float[] vector);
+
+    // No-op if the note was never indexed
+    void remove(long noteId);
+
+    // Up to k notes of the user, best match first, scored by cosine similarity
+    List<ScoredNote> search(long userId, float[] query, int k);
+
+    boolean isEmpty(long userId);
+
+    int size();
+
+    // Every indexed note id (e.g. to rebuild a view over an index that was reopened from disk)
+    void forEachNoteId(LongConsumer action);
+
+    // Approximate heap held by the vectors (and graph links), for monitoring
+    long memoryBytes();
+}
@@ -0,0 +1,123 @@
+package com.notes.web.app.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Similarity kernels over primitive float arrays.
+ *
+ * Vectors are normalised once when they are stored, so cosine similarity becomes a single
+ * dot product per comparison. The dot product uses the JDK Vector API (SIMD) when the JVM
+ * was started with --add-modules jdk.incubator.vector, and a plain unrolled loop otherwise.
+ */
+public final class VectorMath {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorMath.class);
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final DotKernel SCALAR = new DotKernel() {
+        @Override
+        public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            return scalarDot(a, aOffset, b, bOffset, length);
+        }
+
+        @Override
+        public int int8Dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+            return scalarInt8Dot(a, aOffset, b, bOffset, length);
+        }
+    };
+    private static final DotKernel KERNEL = loadKernel();
+
+    private VectorMath() {
+    }
+
+    // Best available kernel: a[aOffset..+length) . b[bOffset..+length)
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    // Portable fallback, also used to benchmark the SIMD kernel against
+    public static float scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int bound = length & ~3; i < bound; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) s0 += a[aOffset + i] * b[bOffset + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // Integer dot product of two int8 codes (QuantizedStore)
+    public static int int8Dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return KERNEL.int8Dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static int scalarInt8Dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) sum += a[aOffset + i] * b[bOffset + i];
+        return sum;
+    }
+
+    // Number of differing bits between two binary codes; length in bytes, a multiple of 8
+    public static int hammingDistance(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int distance = 0;
+        for (int i = 0; i < length; i += Long.BYTES) {
+            distance += Long.bitCount((long) LONGS.get(a, aOffset + i) ^ (long) LONGS.get(b, bOffset + i));
+        }
+        return distance;
+    }
+
+    // Unit-length copy of the vector (all zeros stays all zeros, so it scores 0 against anything)
+    public static float[] normalize(float[] vector) {
+        float[] normalized = new float[vector.length];
+        normalizeInto(vector, normalized, 0);
+        return normalized;
+    }
+
+    // Writes the unit-length vector into target[offset..+vector.length)
+    public static void normalizeInto(float[] vector, float[] target, int offset) {
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < vector.length; i++) {
+            target[offset + i] = norm == 0 ? 0f : (float) (vector[i] / norm);
+        }
+    }
+
+    public static boolean isVectorized() {
+        return KERNEL != SCALAR;
+    }
+
+    public static String describe() {
+        return KERNEL == SCALAR ? "scalar (start the JVM with --add-modules jdk.incubator.vector for SIMD)" : KERNEL.toString();
+    }
+
+    // The SIMD kernel is only loaded when its module is present; otherwise class loading would fail
+    private static DotKernel loadKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return SCALAR;
+        try {
+            return (DotKernel) Class.forName("com.notes.web.app.search.SimdDotKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("SIMD similarity kernel unavailable, using scalar: {}", e.toString());
+            return SCALAR;
+        }
+    }
+
+    interface DotKernel {
+        float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+        int int8Dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+    }
+}
@@ -0,0 +1,198 @@
+package com.notes.web.app.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One immutable, memory-mapped file of normalised vectors (see {@link SegmentedVectorIndex}).
+ * Layout, little-endian:
+ *
+ * <pre>
+ *   header     magic, format version, dimension, rows, tombstones (int32 each), padded to 32 bytes
+ *   user ids   int64[rows], sorted, so a user's rows are one contiguous range
+ *   keys       int64[rows], sorted within each user
+ *   tombstones int64[tombstones]: keys deleted before this segment was written
+ *   vectors    float32[rows * dimension], starting on a 64-byte boundary
+ * </pre>
+ *
+ * Files are written to a temporary name, forced to disk and renamed, so a segment is either
+ * complete or absent. Rows that were replaced or deleted later are only marked in memory (the
+ * deleted bitmap is rebuilt when the index is opened); merges drop them for good.
+ */
+final class VectorSegment {
+
+    static final int MAGIC = 0x4E565347; // "NVSG"
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ALIGNMENT = 64;
+    private static final long MAX_CHUNK_BYTES = 1L << 30; // a single mapping is limited to 2 GB
+    private static final int WRITE_BLOCK_ROWS = 256;
+
+    // Supplies the vector of output row i while a segment is written
+    interface VectorSource {
+        void read(int row, float[] into);
+    }
+
+    private final Path path;
+    private final int dimension;
+    private final int rows;
+    private final LongBuffer userIds;
+    private final LongBuffer keys;
+    private final long[] tombstones;
+    private final FloatBuffer[] vectorChunks;
+    private final int rowsPerChunk;
+    private final long fileBytes;
+    private final AtomicLongArray deleted;
+    private final AtomicInteger deletedRows = new AtomicInteger();
+
+    private VectorSegment(Path path, int dimension, int rows, LongBuffer userIds, LongBuffer keys, long[] tombstones,
+                          FloatBuffer[] vectorChunks, int rowsPerChunk, long fileBytes) {
+        this.path = path;
+        this.dimension = dimension;
+        this.rows = rows;
+        this.userIds = userIds;
+        this.keys = keys;
+        this.tombstones = tombstones;
+        this.vectorChunks = vectorChunks;
+        this.rowsPerChunk = rowsPerChunk;
+        this.fileBytes = fileBytes;
+        this.deleted = new AtomicLongArray((rows + 63) / 64);
+    }
+
+    // userIds/keys must be sorted by (user id, key); vectors are written as given (already normalised)
+    static VectorSegment write(Path path, int dimension, long[] userIds, long[] keys, long[] tombstones,
+                               VectorSource vectors) throws IOException {
+        int rows = userIds.length;
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer head = ByteBuffer.allocate((int) vectorOffset(rows, tombstones.length)).order(ByteOrder.LITTLE_ENDIAN);
+            head.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimension).putInt(rows).putInt(tombstones.length);
+            head.position(HEADER_BYTES);
+            for (long userId : userIds) head.putLong(userId);
+            for (long key : keys) head.putLong(key);
+            for (long key : tombstones) head.putLong(key);
+            head.clear(); // whole buffer, including the padding before the vectors
+            writeFully(channel, head);
+
+            // Vectors in blocks of rows, so a merge never holds more than one block on the heap
+            float[] vector = new float[dimension];
+            ByteBuffer block = ByteBuffer.allocate(WRITE_BLOCK_ROWS * dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            FloatBuffer floats = block.asFloatBuffer();
+            for (int row = 0; row < rows; row++) {
+                vectors.read(row, vector);
+                floats.put(vector);
+                if (!floats.hasRemaining() || row == rows - 1) {
+                    block.limit(floats.position() * Float.BYTES).position(0);
+                    writeFully(channel, block);
+                    block.clear();
+                    floats.clear();
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return open(path);
+    }
+
+    static VectorSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileBytes = channel.size();
+            if (fileBytes < HEADER_BYTES) throw new IOException("Truncated segment " + path);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) throw new IOException("Not a vector segment: " + path);
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported segment format " + version + ": " + path);
+            int dimension = header.getInt();
+            int rows = header.getInt();
+            int tombstoneCount = header.getInt();
+
+            long rowBytes = (long) dimension * Float.BYTES;
+            long vectorOffset = vectorOffset(rows, tombstoneCount);
+            if (fileBytes != vectorOffset + rows * rowBytes) throw new IOException("Truncated segment " + path);
+
+            LongBuffer userIds = mapLongs(channel, HEADER_BYTES, rows);
+            LongBuffer keys = mapLongs(channel, HEADER_BYTES + (long) rows * Long.BYTES, rows);
+            long[] tombstones = new long[tombstoneCount];
+            mapLongs(channel, HEADER_BYTES + 2L * rows * Long.BYTES, tombstoneCount).get(tombstones);
+
+            // Vectors are mapped in chunks of whole rows (the mapping stays valid after the channel closes)
+            int rowsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / Math.max(1, rowBytes));
+            int chunks = (rows + rowsPerChunk - 1) / rowsPerChunk;
+            FloatBuffer[] vectorChunks = new FloatBuffer[chunks];
+            for (int c = 0; c < chunks; c++) {
+                int chunkRows = Math.min(rowsPerChunk, rows - c * rowsPerChunk);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                        vectorOffset + c * rowsPerChunk * rowBytes, chunkRows * rowBytes);
+                vectorChunks[c] = chunk.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+            return new VectorSegment(path, dimension, rows, userIds, keys, tombstones, vectorChunks, rowsPerChunk, fileBytes);
+        }
+    }
+
+    Path path() { return path; }
+    int dimension() { return dimension; }
+    int rows() { return rows; }
+    long userId(int row) { return userIds.get(row); }
+    long key(int row) { return keys.get(row); }
+    long[] tombstones() { return tombstones; }
+    int deletedRows() { return deletedRows.get(); }
+    long fileBytes() { return fileBytes; }
+
+    // Copies the row's vector out of the mapping
+    void readVector(int row, float[] into) {
+        vectorChunks[row / rowsPerChunk].get((row % rowsPerChunk) * dimension, into, 0, dimension);
+    }
+
+    // First row of the user, or of the next user up if they have none
+    int firstRow(long userId) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (userIds.get(mid) < userId) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    boolean isDeleted(int row) {
+        return (deleted.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    void markDeleted(int row) {
+        long bit = 1L << row;
+        long previous = deleted.getAndAccumulate(row >>> 6, bit, (word, b) -> word | b);
+        if ((previous & bit) == 0) deletedRows.incrementAndGet();
+    }
+
+    // Heap held next to the mapping (deleted bitmap, tombstones)
+    long heapBytes() {
+        return (long) deleted.length() * Long.BYTES + (long) tombstones.length * Long.BYTES;
+    }
+
+    private static long vectorOffset(int rows, int tombstones) {
+        long end = HEADER_BYTES + (2L * rows + tombstones) * Long.BYTES;
+        return (end + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static LongBuffer mapLongs(FileChannel channel, long offset, int count) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) count * Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
@@ -0,0 +1,21 @@
+package com.notes.web.app.search;
+
+import java.util.List;
+
+// One user's vectors, scanned in full on search (EmbeddingStore, QuantizedStore)
+interface VectorStore {
+
+    void put(long noteId, float[] vector);
+
+    boolean remove(long noteId);
+
+    // The k most similar notes (cosine similarity), best first
+    List<ScoredNote> topK(float[] query, int k);
+
+    int size();
+
+    boolean isEmpty();
+
+    // Approximate heap held by the store's arrays
+    long memoryBytes();
+}
@@ -0,0 +1,142 @@
+package com.notes.web.app.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the vector index writes since the last flushed segment (see
+ * {@link SegmentedVectorIndex}). A record is
+ *
+ * <pre>
+ *   type (int8: 1 upsert, 2 delete), user id, key (int64), dimension (int32),
+ *   vector (float32[dimension], upserts only), CRC32 of the preceding bytes (int32)
+ * </pre>
+ *
+ * Replay stops at the first short or corrupt record (a write torn by a crash) and truncates the
+ * file there, so later appends never follow garbage. With sync off, records reach the OS on every
+ * write (they survive a process crash) but are only forced to disk on flush and close.
+ */
+final class WriteAheadLog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    static final byte UPSERT = 1;
+    static final byte DELETE = 2;
+    private static final int HEAD_BYTES = 1 + Long.BYTES * 2 + Integer.BYTES;
+
+    interface Replay {
+        void apply(byte type, long userId, long key, float[] vector);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean sync;
+    private final int dimension;
+    private final ByteBuffer record;
+    private final CRC32 crc = new CRC32();
+
+    private WriteAheadLog(Path path, FileChannel channel, int dimension, boolean sync) {
+        this.path = path;
+        this.channel = channel;
+        this.sync = sync;
+        this.dimension = dimension;
+        this.record = ByteBuffer.allocate(HEAD_BYTES + dimension * Float.BYTES + Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Opens (or creates) the log, passes every intact record to replay and positions for appends
+    static WriteAheadLog open(Path path, int dimension, boolean sync, Replay replay) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        WriteAheadLog wal = new WriteAheadLog(path, channel, dimension, sync);
+        long end = wal.replay(replay);
+        if (end < channel.size()) {
+            log.warn("Vector index log {}: dropped a torn record at byte {}", path.getFileName(), end);
+            channel.truncate(end);
+        }
+        channel.position(end);
+        return wal;
+    }
+
+    Path path() { return path; }
+
+    synchronized void appendUpsert(long userId, long key, float[] vector) throws IOException {
+        append(UPSERT, userId, key, vector);
+    }
+
+    synchronized void appendDelete(long key) throws IOException {
+        append(DELETE, 0, key, null);
+    }
+
+    synchronized void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) return;
+        channel.force(false);
+        channel.close();
+    }
+
+    private void append(byte type, long userId, long key, float[] vector) throws IOException {
+        record.clear();
+        record.put(type).putLong(userId).putLong(key).putInt(vector == null ? 0 : vector.length);
+        if (vector != null) {
+            for (float value : vector) record.putFloat(value);
+        }
+        crc.reset();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) channel.write(record);
+        if (sync) channel.force(false);
+    }
+
+    // Byte offset after the last intact record
+    private long replay(Replay replay) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer head = ByteBuffer.allocate(HEAD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (position + HEAD_BYTES <= size) {
+            head.clear();
+            readFully(head, position);
+            head.flip();
+            byte type = head.get();
+            long userId = head.getLong();
+            long key = head.getLong();
+            int length = head.getInt();
+            boolean wellFormed = (type == UPSERT && length == dimension) || (type == DELETE && length == 0);
+            int recordBytes = HEAD_BYTES + length * Float.BYTES + Integer.BYTES;
+            if (!wellFormed || position + recordBytes > size) break;
+
+            ByteBuffer body = ByteBuffer.allocate(recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(body, position);
+            crc.reset();
+            crc.update(body.array(), 0, recordBytes - Integer.BYTES);
+            body.position(HEAD_BYTES);
+            float[] vector = null;
+            if (type == UPSERT) {
+                vector = new float[length];
+                body.asFloatBuffer().get(vector);
+            }
+            if (body.getInt(recordBytes - Integer.BYTES) != (int) crc.getValue()) break;
+
+            replay.apply(type, userId, key, vector);
+            position += recordBytes;
+        }
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of " + path);
+        }
+    }
+}
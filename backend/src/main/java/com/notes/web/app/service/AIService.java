@@ -1,167 +1,261 @@
 package com.notes.web.app.service;
 
+import com.notes.web.app.embedding.EmbeddingProvider;
+import com.notes.web.app.embedding.TextChunker;
 import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteEmbedding;
+import com.notes.web.app.repository.NoteEmbeddingRepository;
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.search.HybridRanker;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.KeywordIndex;
+import com.notes.web.app.search.PassageIndex;
+import com.notes.web.app.search.ScoredNote;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class AIService {
-    private static final String HF_API_URL = "https://router.huggingface.co/hf-inference/models/sentence-transformers/all-MiniLM-L6-v2/pipeline/feature-extraction";
 
-    @Value("${huggingface.api.key}")
-    private String hfApiKey;
+    private static final Logger log = LoggerFactory.getLogger(AIService.class);
 
-    private final WebClient webClient;
+    public static final int EMBEDDING_DIM = 384; // all-MiniLM-L6-v2 output size
+    private static final int SEMANTIC_CANDIDATES = 50; // nearest neighbours fetched before re-ranking
 
-    // In-Memory Vector Storage
-    // Map<NoteID, EmbeddingVector>
-    private final Map<Long, List<Double>> vectorIndex = new HashMap<>();
+    // Hugging Face API or local ONNX model (see EmbeddingConfig)
+    private final EmbeddingProvider embeddingProvider;
 
-    public AIService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.baseUrl(HF_API_URL).build();
+    // In-Memory Vector Index over note passages (partitioned per user, see SearchConfig)
+    private final PassageIndex passageIndex;
+    // Users whose vectors the startup backfill has not loaded yet get keyword-only results
+    private final IndexReadiness indexReadiness;
+    // Splits long notes into passages the model can read whole (see EmbeddingConfig)
+    private final TextChunker textChunker;
+    // Durable copy of the index (note_embeddings table)
+    private final NoteEmbeddingRepository noteEmbeddingRepository;
+    // Current text of a note, checked before its embedding is stored
+    private final NoteRepository noteRepository;
+    // Recently searched queries, so repeated searches skip the API
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    // BM25 inverted index for the keyword half of hybrid search
+    private final KeywordIndex keywordIndex;
+    // Fuses keyword and semantic results (weights/thresholds in SearchConfig)
+    private final HybridRanker hybridRanker;
+    // Longest a search waits for its query embedding before answering from keywords alone
+    private final Duration embeddingTimeout;
+
+    // Metrics: latency of each search phase (search.phase), embedding API calls (embedding.requests)
+    private final MeterRegistry meterRegistry;
+    private final Timer keywordPhase;
+    private final Timer embedPhase;
+    private final Timer vectorPhase;
+    private final Timer rankPhase;
+    private final DistributionSummary embeddingBatchSize;
+
+    public AIService(EmbeddingProvider embeddingProvider,
+                     PassageIndex passageIndex,
+                     IndexReadiness indexReadiness,
+                     TextChunker textChunker,
+                     NoteEmbeddingRepository noteEmbeddingRepository,
+                     NoteRepository noteRepository,
+                     QueryEmbeddingCache queryEmbeddingCache,
+                     KeywordIndex keywordIndex,
+                     HybridRanker hybridRanker,
+                     @Value("${search.embedding-timeout:800ms}") Duration embeddingTimeout,
+                     MeterRegistry meterRegistry) {
+        this.embeddingProvider = embeddingProvider;
+        this.passageIndex = passageIndex;
+        this.indexReadiness = indexReadiness;
+        this.textChunker = textChunker;
+        this.noteEmbeddingRepository = noteEmbeddingRepository;
+        this.noteRepository = noteRepository;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.keywordIndex = keywordIndex;
+        this.hybridRanker = hybridRanker;
+        this.embeddingTimeout = embeddingTimeout;
+        this.meterRegistry = meterRegistry;
+        this.keywordPhase = searchPhase("keyword", meterRegistry);
+        this.embedPhase = searchPhase("embed", meterRegistry);
+        this.vectorPhase = searchPhase("vector", meterRegistry);
+        this.rankPhase = searchPhase("rank", meterRegistry);
+        this.embeddingBatchSize = DistributionSummary.builder("embedding.batch.size")
+                .description("Texts per embedding request")
+                .register(meterRegistry);
     }
 
-    // Generate Embedding for a Note (Async)
-    public void generateAndStoreEmbedding(Note note) {
-        String text = note.getTitle() + " " + note.getContent();
-        fetchEmbedding(text).subscribe(embedding -> {
-            if (!embedding.isEmpty() && embedding.size() == 384) {  // Validate full embedding
-                vectorIndex.put(note.getId(), embedding);
-                System.out.println("Generated embedding for note: " + note.getId());
-            } else {
-                System.err.println("Skipped invalid/empty embedding for note: " + note.getId() + " (size: " + (embedding != null ? embedding.size() : "null") + ")");
+    // The texts embedded for a note: one passage for short notes, overlapping windows for long ones
+    public List<String> passages(Note note) {
+        return textChunker.passages(note.getTitle(), note.getContent());
+    }
+
+    // Persist freshly computed passage embeddings, then put them in the index (called by EmbeddingPipeline).
+    // Only if the note still exists with the text they were computed from: its row is share-locked until
+    // commit, so a task queued before a delete or an edit, or one finishing after a newer task for the same
+    // note, is dropped instead of leaving an orphaned or stale vector. A failed write throws before the
+    // index is touched. Returns false for a dropped task.
+    @Transactional
+    public boolean storeEmbedding(Long noteId, Long userId, String contentHash, List<String> passageHashes,
+                                  List<float[]> passages) {
+        for (float[] embedding : passages) {
+            if (embedding.length != EMBEDDING_DIM) {  // Validate full embedding
+                throw new IllegalStateException("Invalid embedding for note " + noteId + " (size: " + embedding.length + ")");
             }
-        });
+        }
+        Optional<Note> current = noteRepository.findByIdForShare(noteId);
+        if (current.isEmpty() || !contentHash.equals(NoteEmbedding.hash(embeddingText(current.get())))) {
+            return false;
+        }
+        noteEmbeddingRepository.upsert(noteId, contentHash, String.join(",", passageHashes), NoteEmbedding.encode(passages));
+        passageIndex.upsert(userId, noteId, passages);
+        return true;
+    }
+
+    // Load persisted embeddings into the index if they were computed from the note's current text
+    // (and chunked the way it is chunked now). Returns false when the note has to be (re-)embedded.
+    public boolean restoreEmbedding(Note note, NoteEmbedding stored) {
+        if (stored == null || !stored.getContentHash().equals(NoteEmbedding.hash(embeddingText(note)))) {
+            return false;
+        }
+        List<float[]> vectors = stored.getPassages(EMBEDDING_DIM);
+        if (vectors.isEmpty() || vectors.size() != passages(note).size()) return false;
+        passageIndex.upsert(note.getUserId(), note.getId(), vectors);
+        return true;
+    }
+
+    // Whether the index already holds the embedding of the note's current text, e.g. because it was
+    // reopened from disk (search.vector.index=segment); nothing has to be loaded for it then
+    public boolean isIndexed(Note note, String storedHash) {
+        return storedHash != null && storedHash.equals(NoteEmbedding.hash(embeddingText(note)))
+                && passageIndex.passageCount(note.getId()) == passages(note).size();
     }
 
     // Remove embedding if note is deleted
     public void removeEmbedding(Long noteId) {
-        vectorIndex.remove(noteId);
+        passageIndex.remove(noteId);
     }
 
-    public List<Note> searchNotes(String query, List<Note> allNotes) {
-        List<Note> keywordMatches = allNotes.stream()
-                .filter(n -> n.getTitle().toLowerCase().contains(query.toLowerCase())
-                        || n.getContent().toLowerCase().contains(query.toLowerCase()))
-                .collect(Collectors.toList());
+    // Hybrid search: BM25 and semantic candidates fused by the HybridRanker.
+    // Returns the note ids of ranks [offset, offset + size); callers load the notes themselves.
+    public HybridRanker.Ranking rankNotes(String query, Long userId, int offset, int size) {
+        // One more than the page needs, so the ranker can tell whether another page follows
+        int candidates = (int) Math.max(SEMANTIC_CANDIDATES, Math.min(Integer.MAX_VALUE, (long) offset + size + 1));
+        return rank(query, userId, candidates, candidates, offset, size);
+    }
 
-        // Semantic: Get query embedding
-        List<Double> queryVector = fetchEmbedding(query).block();
-        if (queryVector == null || queryVector.isEmpty()) {
-            System.err.println("Semantic failed; using keywords only");
-            return keywordMatches;
-        }
+    // Unpaged: every keyword match plus the best semantic candidates, all fused
+    public HybridRanker.Ranking rankAllNotes(String query, Long userId) {
+        return rank(query, userId, Integer.MAX_VALUE, SEMANTIC_CANDIDATES, 0, Integer.MAX_VALUE);
+    }
 
-        if (vectorIndex.isEmpty()) {
-            System.err.println("No stored embeddings; using keywords only");
-            return keywordMatches;
-        }
+    private HybridRanker.Ranking rank(String query, Long userId, int keywordCandidates, int candidates,
+                                      int offset, int size) {
+        // Keyword: BM25 over the user's inverted index (best match first)
+        List<ScoredNote> keywordHits = keywordPhase.record(() -> keywordIndex.search(userId, query, keywordCandidates));
 
-        // Calculate Semantic Scores
-        Map<Note, Double> scores = new HashMap<>();
-        for (Note note : allNotes) {
-            List<Double> noteVector = vectorIndex.get(note.getId());
-            if (noteVector != null && !noteVector.isEmpty()) {
-                double similarity = cosineSimilarity(queryVector, noteVector);
-                scores.put(note, similarity);
+        // Semantic: nearest neighbours of the query embedding (skipped if unavailable)
+        List<ScoredNote> semanticHits = List.of();
+        if (!indexReadiness.isReady(userId)) {
+            // Partially loaded vectors would bias the fusion; no point embedding the query yet
+            meterRegistry.counter("search.keyword_only", "reason", "index_loading").increment();
+        } else {
+            float[] queryVector = embedPhase.record(() -> queryEmbedding(query));
+            if (queryVector == null || queryVector.length != EMBEDDING_DIM) {
+                log.debug("No query embedding; using keywords only");
+                meterRegistry.counter("search.keyword_only", "reason", "no_query_embedding").increment();
+            } else if (passageIndex.isEmpty(userId)) {
+                log.debug("No stored embeddings; using keywords only");
+                meterRegistry.counter("search.keyword_only", "reason", "no_note_embeddings").increment();
+            } else {
+                semanticHits = vectorPhase.record(() -> passageIndex.search(userId, queryVector, candidates));
             }
         }
 
-        // Filter threshold (>0.2 for "relevant") + sort descending + top 5 limit
-        // Boost keywords: Add 0.1 bonus if keyword match
-        List<Note> semanticResults = scores.entrySet().stream()
-                .filter(entry -> entry.getValue() > 0.2)  // Threshold: Tune this (test with known queries)
-                .map(entry -> {
-                    Note note = entry.getKey();
-                    double score = entry.getValue();
-                    if (keywordMatches.contains(note)) {
-                        score += 0.1;  // Hybrid boost for exact keywords
-                    }
-                    return new AbstractMap.SimpleEntry<>(note, score);
-                })
-                .sorted((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()))  // Descending
-                .limit(5)  // Top-K: Prevents dumping all notes
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-
-        // Hybrid: Prioritize semantic, but include any keyword-only misses
-        Set<Note> resultSet = new HashSet<>(semanticResults);
-        resultSet.addAll(keywordMatches);
-        return resultSet.stream()
-                .sorted((n1, n2) -> {
-                    // Sort by semantic score if available, else arbitrary
-                    Double s1 = scores.get(n1);
-                    Double s2 = scores.get(n2);
-                    if (s1 != null && s2 != null) return Double.compare(s2, s1);
-                    return 0;
-                })
-                .collect(Collectors.toList());
-    }
-
-    // --- Helper: Call Hugging Face API ---
-    private reactor.core.publisher.Mono<List<Double>> fetchEmbedding(String text) {
-        if (hfApiKey == null || hfApiKey.trim().isEmpty()) {
-            return reactor.core.publisher.Mono.just(new ArrayList<>());
+        List<ScoredNote> semantic = semanticHits;
+        return rankPhase.record(() -> hybridRanker.rank(keywordHits, semantic, offset, size));
+    }
+
+    // --- Helper: query embedding, served from the cache when possible ---
+    // Gives up after embeddingTimeout (the request is cancelled) so a slow provider cannot hold a search
+    private float[] queryEmbedding(String query) {
+        float[] cached = queryEmbeddingCache.get(query);
+        if (cached != null) return cached;
+
+        float[] vector = fetchEmbedding(query)
+                .timeout(embeddingTimeout, reactor.core.publisher.Mono.fromSupplier(() -> {
+                    log.debug("Query embedding took over {} ms; using keywords only", embeddingTimeout.toMillis());
+                    return new float[0];
+                }))
+                .block();
+        if (vector != null && vector.length == EMBEDDING_DIM) {
+            queryEmbeddingCache.put(query, vector); // failures are not cached, the next search retries
         }
+        return vector;
+    }
 
-        // Proven body from curl: {"inputs": ["text"]}
-        Map<String, List<String>> requestBody = new HashMap<>();
-        requestBody.put("inputs", Collections.singletonList(text));
-
-        return webClient.post()
-                .header("Authorization", "Bearer " + hfApiKey)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(Object.class)
-                .map(response -> {
-                    if (response instanceof List) {
-                        List<?> list = (List<?>) response;
-                        if (list.isEmpty()) return new ArrayList<Double>();
-
-                        Object firstItem = list.get(0);
-                        if (firstItem instanceof List) {
-                            @SuppressWarnings("unchecked")
-                            List<Double> embedding = (List<Double>) firstItem;
-                            return embedding;
-                        }
-                        @SuppressWarnings("unchecked")
-                        List<Double> embedding = (List<Double>) list;
-                        return embedding;
-                    }
-                    System.err.println("Unexpected response type: " + (response != null ? response.getClass() : "null"));
-                    return new ArrayList<Double>();
-                })
-                .onErrorResume(e -> {
-                    System.err.println("AI API Error: " + e.getClass().getSimpleName() + " - " + e.getMessage());
-                    if (e instanceof org.springframework.web.reactive.function.client.WebClientResponseException) {
-                        org.springframework.web.reactive.function.client.WebClientResponseException wcre = (org.springframework.web.reactive.function.client.WebClientResponseException) e;
-                        System.err.println("Status: " + wcre.getStatusCode() + ", Body: " + wcre.getResponseBodyAsString());
-                    }
-                    return reactor.core.publisher.Mono.just(new ArrayList<>());
-                });
+    // The whole text of a note, normalised so that texts differing only in Unicode form or whitespace
+    // hash the same (the tokenizer would not tell them apart either). Its hash marks which version
+    // of the note the stored passage embeddings belong to.
+    public static String embeddingText(Note note) {
+        return TextChunker.normalize(note.getTitle() + " " + note.getContent());
     }
 
-    // --- Helper: Math (Cosine Similarity) ---
-    private double cosineSimilarity(List<Double> vectorA, List<Double> vectorB) {
-        if (vectorA.size() != vectorB.size()) {
-            System.err.println("Vector dim mismatch: " + vectorA.size() + " vs " + vectorB.size());
-            return 0.0;
-        }
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-        for (int i = 0; i < vectorA.size(); i++) {
-            dotProduct += vectorA.get(i) * vectorB.get(i);
-            normA += Math.pow(vectorA.get(i), 2);
-            normB += Math.pow(vectorB.get(i), 2);
+    public boolean isEnabled() {
+        return embeddingProvider.isEnabled();
+    }
+
+    // One vector per text, same order. Errors are propagated so callers can tell
+    // throttling (429/503) from bad input.
+    // Every call is timed under embedding.requests, tagged success / throttled / error / cancelled (timeout)
+    public reactor.core.publisher.Mono<List<float[]>> fetchEmbeddings(List<String> texts) {
+        if (!isEnabled()) {
+            return reactor.core.publisher.Mono.just(texts.stream().map(t -> new float[0]).toList());
         }
-        double denominator = Math.sqrt(normA) * Math.sqrt(normB);
-        return denominator == 0 ? 0.0 : dotProduct / denominator;
+        return reactor.core.publisher.Mono.defer(() -> {
+            embeddingBatchSize.record(texts.size());
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return embeddingProvider.embed(texts)
+                    .doOnSuccess(vectors -> sample.stop(embeddingRequests("success")))
+                    .doOnError(e -> sample.stop(embeddingRequests(EmbeddingPipeline.isThrottling(e) ? "throttled" : "error")))
+                    .doOnCancel(() -> sample.stop(embeddingRequests("cancelled")));
+        });
+    }
+
+    private Timer embeddingRequests(String outcome) {
+        return Timer.builder("embedding.requests")
+                .description("Embedding provider calls")
+                .tag("provider", embeddingProvider.getClass().getSimpleName())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Timer searchPhase(String phase, MeterRegistry meterRegistry) {
+        return Timer.builder("search.phase")
+                .description("Time spent in each phase of a search")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+
+    // --- Helper: single embedding via the provider ---
+    // Returns the embedding as a primitive array, or an empty array on failure
+    private reactor.core.publisher.Mono<float[]> fetchEmbedding(String text) {
+        return fetchEmbeddings(Collections.singletonList(text))
+                .map(embeddings -> embeddings.get(0))
+                .onErrorResume(e -> {
+                    if (e instanceof org.springframework.web.reactive.function.client.WebClientResponseException wcre) {
+                        log.warn("Query embedding failed: {} {}", wcre.getStatusCode(), wcre.getResponseBodyAsString());
+                    } else {
+                        log.warn("Query embedding failed: {}", e.toString());
+                    }
+                    return reactor.core.publisher.Mono.just(new float[0]);
+                });
     }
 }
\ No newline at end of file
@@ -0,0 +1,333 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.entity.BackfillCheckpoint;
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteEmbedding;
+import com.notes.web.app.repository.BackfillCheckpointRepository;
+import com.notes.web.app.repository.NoteEmbeddingRepository;
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.PassageIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Loads stored embeddings into the vector index after startup and queues notes whose embedding is
+ * missing or stale. Runs in the background, so the app serves requests right away; users whose
+ * notes are not loaded yet get keyword-only search (IndexReadiness).
+ *
+ * Notes are read in id-ordered keyset pages by one coordinator thread and processed by a pool of
+ * backfill.workers threads. A page is finished once its stored embeddings are loaded and the notes
+ * it queued have their new embeddings stored (the pipeline's queue does not survive a restart).
+ * Pages can finish out of order; the checkpoint (backfill_checkpoints) only advances over the
+ * contiguous prefix of finished pages, so resuming from it never skips a note. A failed page, or a
+ * note the pipeline gave up on, stops the run (state FAILED) until it is resumed.
+ *
+ * An in-memory index starts empty, so every start runs from the first note. An index reopened from
+ * disk (segment) still holds what earlier runs loaded: a run that had not finished continues from
+ * its checkpoint, and after a finished one the new run verifies every note, since a note edited just
+ * before a shutdown may have lost its re-embed with the pipeline queue and only comparing content
+ * hashes finds it. Notes the reopened index has in their current version cost one hash comparison
+ * and no vector read, and its users keep semantic search meanwhile. A paused job stays paused
+ * across restarts.
+ */
+@Component
+public class BackfillJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BackfillJob.class);
+
+    public static final String NAME = "embeddings";
+    private static final int PAGES_IN_FLIGHT_PER_WORKER = 2;
+
+    private final NoteRepository noteRepository;
+    private final NoteEmbeddingRepository noteEmbeddingRepository;
+    private final BackfillCheckpointRepository checkpointRepository;
+    private final AIService aiService;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final PassageIndex passageIndex;
+    private final IndexReadiness indexReadiness;
+    private final int pageSize;
+    private final int workerCount;
+    private final ExecutorService workers;
+
+    // Guarded by this
+    private BackfillCheckpoint checkpoint;
+    private final TreeMap<Long, PageResult> pages = new TreeMap<>(); // last note id of page -> result once done
+    private long pagesCompleted;
+    private boolean paused;
+    private Thread coordinator;
+    private String failure;
+
+    public BackfillJob(NoteRepository noteRepository, NoteEmbeddingRepository noteEmbeddingRepository,
+                       BackfillCheckpointRepository checkpointRepository, AIService aiService,
+                       EmbeddingPipeline embeddingPipeline, PassageIndex passageIndex, IndexReadiness indexReadiness,
+                       @Value("${backfill.page-size:500}") int pageSize,
+                       @Value("${backfill.workers:4}") int workerCount) {
+        this.noteRepository = noteRepository;
+        this.noteEmbeddingRepository = noteEmbeddingRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.aiService = aiService;
+        this.embeddingPipeline = embeddingPipeline;
+        this.passageIndex = passageIndex;
+        this.indexReadiness = indexReadiness;
+        this.pageSize = pageSize;
+        this.workerCount = workerCount;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "backfill-worker-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void startOnBoot() {
+        checkpoint = checkpointRepository.findById(NAME).orElseGet(() -> new BackfillCheckpoint(NAME));
+        if (checkpoint.getState() == BackfillCheckpoint.State.RUNNING || checkpoint.getState() == BackfillCheckpoint.State.FAILED) {
+            log.info("Previous embedding backfill stopped at note {} of {} ({})", checkpoint.getLastNoteId(),
+                    checkpoint.getTargetNoteId(), checkpoint.getState());
+        }
+        paused = checkpoint.getState() == BackfillCheckpoint.State.PAUSED;
+
+        // A reopened index is searchable as it is and still holds the interrupted run's notes
+        boolean warm = passageIndex.size() > 0;
+        boolean unfinished = checkpoint.getState() != BackfillCheckpoint.State.COMPLETED
+                && checkpoint.getLastNoteId() < checkpoint.getTargetNoteId();
+        long from = warm && unfinished ? checkpoint.getLastNoteId() : 0;
+        long target = noteRepository.findMaxId();
+        checkpoint.start(from, target);
+        if (!paused) checkpoint.setState(BackfillCheckpoint.State.RUNNING, null);
+        checkpoint = checkpointRepository.save(checkpoint);
+
+        Map<Long, Long> lastNoteIds = new HashMap<>();
+        for (Object[] row : noteRepository.findLastNoteIdPerUser(from)) {
+            lastNoteIds.put((Long) row[0], (Long) row[1]);
+        }
+        // Users of a reopened index are ready now; the run only repairs what changed
+        indexReadiness.begin(warm ? Map.of() : lastNoteIds);
+        log.info("Embedding backfill: notes {}..{} of {} users, {} workers{}{}", from + 1, target, lastNoteIds.size(),
+                workerCount, warm ? ", verifying " + passageIndex.size() + " indexed notes" : "", paused ? " (paused)" : "");
+        launch();
+    }
+
+    // Stop handing out pages; pages already being processed finish and are checkpointed
+    public synchronized Status pause() {
+        if (checkpoint != null && checkpoint.getState() == BackfillCheckpoint.State.RUNNING) {
+            paused = true;
+            updateState(BackfillCheckpoint.State.PAUSED, null);
+        }
+        return getStatus();
+    }
+
+    // Continue a paused run, or restart a failed one from its checkpoint (once its last pages have drained)
+    public synchronized Status resume() {
+        if (checkpoint == null) return getStatus();
+        switch (checkpoint.getState()) {
+            case PAUSED -> {
+                paused = false;
+                updateState(BackfillCheckpoint.State.RUNNING, null);
+                notifyAll();
+            }
+            case FAILED -> {
+                if (coordinator != null && coordinator.isAlive()) return getStatus();
+                paused = false;
+                failure = null;
+                pages.clear();
+                updateState(BackfillCheckpoint.State.RUNNING, null);
+                launch();
+            }
+            default -> { }
+        }
+        return getStatus();
+    }
+
+    public synchronized Status getStatus() {
+        if (checkpoint == null) {
+            return new Status(null, 0, 0, 0, 0, 0, indexReadiness.pendingUsers(), null, null, null);
+        }
+        return new Status(checkpoint.getState(), checkpoint.getLastNoteId(), checkpoint.getTargetNoteId(),
+                pagesCompleted, checkpoint.getRestored(), checkpoint.getQueued(), indexReadiness.pendingUsers(),
+                checkpoint.getStartedAt(), checkpoint.getUpdatedAt(), checkpoint.getError());
+    }
+
+    // lastNoteId: every note up to it is loaded, or was queued and its new embedding stored
+    public record Status(BackfillCheckpoint.State state, long lastNoteId, long targetNoteId, long pagesCompleted,
+                         long restored, long queued, int usersPending, LocalDateTime startedAt,
+                         LocalDateTime updatedAt, String error) {
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (coordinator != null) coordinator.interrupt();
+        workers.shutdownNow();
+    }
+
+    // --- Coordinator: reads pages and hands them to the workers ---
+    private void launch() {
+        coordinator = new Thread(this::run, "backfill-coordinator");
+        coordinator.setDaemon(true);
+        coordinator.start();
+    }
+
+    private void run() {
+        Semaphore slots = new Semaphore(workerCount * PAGES_IN_FLIGHT_PER_WORKER);
+        try {
+            long afterId;
+            long target;
+            synchronized (this) {
+                afterId = checkpoint.getLastNoteId();
+                target = checkpoint.getTargetNoteId();
+            }
+            while (afterId < target) {
+                if (!awaitRunnable()) break;
+                List<Note> page = noteRepository.findPageAfter(afterId, target, PageRequest.ofSize(pageSize));
+                if (page.isEmpty()) break;
+                long lastId = page.get(page.size() - 1).getId();
+                slots.acquire();
+                synchronized (this) {
+                    pages.put(lastId, null);
+                }
+                workers.submit(() -> {
+                    PageResult result;
+                    try {
+                        result = process(page);
+                    } catch (RuntimeException e) {
+                        pageFailed(lastId, e);
+                        slots.release();
+                        return;
+                    }
+                    // The page holds its slot until the notes it queued are stored
+                    result.settled().whenComplete((ignored, error) -> {
+                        try {
+                            if (error != null) {
+                                pageFailed(lastId, error instanceof CompletionException && error.getCause() != null
+                                        ? error.getCause() : error);
+                            } else {
+                                pageDone(lastId, result);
+                            }
+                        } catch (RuntimeException e) {
+                            pageFailed(lastId, e);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                });
+                afterId = lastId;
+            }
+
+            // Wait for the pages still being processed
+            slots.acquire(workerCount * PAGES_IN_FLIGHT_PER_WORKER);
+            finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                fail(e);
+            }
+        }
+    }
+
+    // Blocks while paused; false once the run has failed
+    private synchronized boolean awaitRunnable() throws InterruptedException {
+        while (paused && failure == null) {
+            wait();
+        }
+        return failure == null;
+    }
+
+    private synchronized void finish() {
+        if (failure != null) return;
+        indexReadiness.complete();
+        checkpoint.advance(checkpoint.getTargetNoteId(), 0, 0);
+        updateState(BackfillCheckpoint.State.COMPLETED, null);
+        log.info("Embedding backfill complete: restored {} stored embeddings, queued {} notes for embedding",
+                checkpoint.getRestored(), checkpoint.getQueued());
+    }
+
+    // --- Workers ---
+    private PageResult process(List<Note> page) {
+        // Hashes first: notes the index already holds in their current version need no vector read
+        Map<Long, String> hashes = new HashMap<>();
+        for (Object[] row : noteEmbeddingRepository.findContentHashes(page.stream().map(Note::getId).toList())) {
+            hashes.put((Long) row[0], (String) row[1]);
+        }
+        List<Note> toLoad = page.stream().filter(note -> !aiService.isIndexed(note, hashes.get(note.getId()))).toList();
+
+        // One bulk read of the stored vectors for the rest
+        Map<Long, NoteEmbedding> stored = toLoad.isEmpty() ? Map.of()
+                : noteEmbeddingRepository.findAllById(toLoad.stream().map(Note::getId).toList()).stream()
+                .collect(Collectors.toMap(NoteEmbedding::getNoteId, Function.identity()));
+
+        int restored = page.size() - toLoad.size();
+        List<CompletableFuture<Boolean>> queued = new ArrayList<>();
+        for (Note note : toLoad) {
+            if (aiService.restoreEmbedding(note, stored.get(note.getId()))) {
+                restored++;
+            } else {
+                // New or edited since it was last embedded (batched + rate limited by the pipeline)
+                queued.add(embeddingPipeline.submit(note));
+            }
+        }
+        return new PageResult(restored, queued.size(), CompletableFuture.allOf(queued.toArray(CompletableFuture[]::new)));
+    }
+
+    // Advance the checkpoint over the finished prefix of pages
+    private synchronized void pageDone(long lastId, PageResult result) {
+        pages.put(lastId, result);
+        pagesCompleted++;
+        long restored = 0;
+        long queued = 0;
+        long advancedTo = -1;
+        while (!pages.isEmpty() && pages.firstEntry().getValue() != null && failure == null) {
+            Map.Entry<Long, PageResult> done = pages.pollFirstEntry();
+            restored += done.getValue().restored();
+            queued += done.getValue().queued();
+            advancedTo = done.getKey();
+        }
+        if (advancedTo < 0) return;
+        checkpoint.advance(advancedTo, restored, queued);
+        checkpoint = checkpointRepository.save(checkpoint);
+        indexReadiness.advance(advancedTo);
+    }
+
+    private synchronized void pageFailed(long lastId, Throwable e) {
+        log.error("Embedding backfill failed on the page ending at note {}", lastId, e);
+        fail(e);
+    }
+
+    private void fail(Throwable e) {
+        failure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        updateState(BackfillCheckpoint.State.FAILED, failure);
+        notifyAll();
+    }
+
+    private void updateState(BackfillCheckpoint.State state, String error) {
+        checkpoint.setState(state, error);
+        checkpoint = checkpointRepository.save(checkpoint);
+    }
+
+    // settled completes once every note the page queued has been stored (or was gone by then)
+    private record PageResult(int restored, int queued, CompletableFuture<Void> settled) {
+    }
+}
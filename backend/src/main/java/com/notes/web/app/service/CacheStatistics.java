@@ -0,0 +1,71 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.config.CacheConfig;
+import com.notes.web.app.repository.NoteRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hit/miss counters of the application's caches: the Hibernate second-level regions (users, notes),
+ * the Hibernate query cache (all queries, then the note list region alone), and the Spring login
+ * credentials cache.
+ *
+ * Counters are cumulative since startup.
+ */
+@Component
+public class CacheStatistics {
+
+    private static final List<String> ENTITY_REGIONS = List.of("users", "notes");
+    private static final List<String> QUERY_REGIONS = List.of(NoteRepository.NOTE_LISTS_REGION);
+    private static final List<String> SPRING_CACHES = List.of(CacheConfig.USER_DETAILS);
+
+    private final Statistics hibernateStatistics;
+    private final CacheManager cacheManager;
+
+    public CacheStatistics(EntityManagerFactory entityManagerFactory, CacheManager cacheManager) {
+        this.hibernateStatistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.cacheManager = cacheManager;
+    }
+
+    public List<CacheStats> getStats() {
+        List<CacheStats> stats = new ArrayList<>();
+        for (String region : ENTITY_REGIONS) {
+            CacheRegionStatistics regionStats = hibernateStatistics.getDomainDataRegionStatistics(region);
+            if (regionStats == null) continue;
+            stats.add(CacheStats.of("hibernate:" + region, regionStats.getHitCount(), regionStats.getMissCount(),
+                    regionStats.getElementCountInMemory()));
+        }
+        stats.add(CacheStats.of("hibernate:query", hibernateStatistics.getQueryCacheHitCount(),
+                hibernateStatistics.getQueryCacheMissCount(), -1));
+        for (String region : QUERY_REGIONS) {
+            CacheRegionStatistics regionStats = hibernateStatistics.getQueryRegionStatistics(region);
+            if (regionStats == null) continue;
+            stats.add(CacheStats.of("hibernate:query:" + region, regionStats.getHitCount(), regionStats.getMissCount(),
+                    regionStats.getElementCountInMemory()));
+        }
+
+        for (String name : SPRING_CACHES) {
+            if (!(cacheManager.getCache(name) instanceof CaffeineCache cache)) continue;
+            com.github.benmanes.caffeine.cache.stats.CacheStats caffeineStats = cache.getNativeCache().stats();
+            stats.add(CacheStats.of(name, caffeineStats.hitCount(), caffeineStats.missCount(),
+                    cache.getNativeCache().estimatedSize()));
+        }
+        return stats;
+    }
+
+    // size is -1 when the cache cannot report it (JCache regions report Long.MIN_VALUE)
+    public record CacheStats(String name, long hits, long misses, double hitRatio, long size) {
+        static CacheStats of(String name, long hits, long misses, long size) {
+            long lookups = hits + misses;
+            return new CacheStats(name, hits, misses, lookups == 0 ? 0 : (double) hits / lookups, Math.max(-1, size));
+        }
+    }
+}
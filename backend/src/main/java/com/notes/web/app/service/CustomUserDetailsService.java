@@ -1,32 +1,50 @@
 package com.notes.web.app.service;
 
+import com.notes.web.app.config.CacheConfig;
 import com.notes.web.app.entity.User;
 import com.notes.web.app.repository.UserRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.util.List;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    // username -> credentials of users that logged in recently (bounded, see spring.cache.caffeine.spec);
+    // evicted whenever the user is saved (UserCacheListener)
+    private final Cache userDetailsCache;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, CacheManager cacheManager) {
         this.userRepository = userRepository;
+        this.userDetailsCache = cacheManager.getCache(CacheConfig.USER_DETAILS);
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        Credentials credentials = userDetailsCache.get(username, Credentials.class);
+        if (credentials == null) {
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found")); // unknown names are not cached
+            credentials = new Credentials(user.getUsername(), user.getPassword(), user.getRole());
+            userDetailsCache.put(username, credentials);
+        }
 
+        // A fresh UserDetails per call: Spring Security erases the password of the one it authenticated
         return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                Collections.emptyList() // not using Roles for now
+                credentials.username(),
+                credentials.passwordHash(),
+                credentials.role() == null ? List.of() : AuthorityUtils.createAuthorityList("ROLE_" + credentials.role())
         );
     }
-}
\ No newline at end of file
+
+    // role: USER or ADMIN (only ADMIN grants anything: the /api/admin endpoints, see SecurityConfig)
+    private record Credentials(String username, String passwordHash, String role) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.entity.CachedEmbedding;
+import com.notes.web.app.entity.NoteEmbedding;
+import com.notes.web.app.repository.CachedEmbeddingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent, content-addressed embedding cache (embedding_cache table), keyed by the SHA-256 of
+ * the normalised passage text. Shared by all notes and users, so re-saving an unchanged note, a
+ * note whose text another note already has, or re-embedding after a restart never calls the model
+ * again.
+ *
+ * Entries stay while a note's stored embedding has them as one of its passages
+ * (note_embeddings.passage_hashes); others are purged once unused for the retention period.
+ *
+ * Cache failures only cost an embedding call, they never fail the caller.
+ */
+@Component
+public class EmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private final CachedEmbeddingRepository repository;
+    private final Duration retention;
+    private final Counter hits;
+    private final Counter misses;
+
+    public EmbeddingCache(CachedEmbeddingRepository repository,
+                          @Value("${embedding.cache.retention:30d}") Duration retention,
+                          MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.retention = retention;
+        this.hits = Counter.builder("embedding.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("embedding.cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    // Cached vectors by content hash; hashes that are not cached are absent from the (mutable) map
+    public Map<String, float[]> getAll(Collection<String> contentHashes) {
+        Map<String, float[]> found = new HashMap<>();
+        try {
+            for (CachedEmbedding entry : repository.findAllById(contentHashes)) {
+                float[] vector = entry.getVector();
+                if (vector.length == AIService.EMBEDDING_DIM) found.put(entry.getContentHash(), vector);
+            }
+            if (!found.isEmpty()) repository.markUsed(found.keySet(), LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Embedding cache lookup failed: {}", e.getMessage());
+        }
+        hits.increment(found.size());
+        misses.increment(contentHashes.size() - found.size());
+        return found;
+    }
+
+    public void put(String contentHash, float[] vector) {
+        if (vector.length != AIService.EMBEDDING_DIM) return; // failed/disabled embeddings are not cached
+        try {
+            repository.insertIfAbsent(contentHash, NoteEmbedding.encode(vector));
+        } catch (RuntimeException e) {
+            log.warn("Could not cache embedding {}: {}", contentHash, e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${embedding.cache.purge-interval-ms:3600000}",
+            fixedDelayString = "${embedding.cache.purge-interval-ms:3600000}")
+    public void purge() {
+        int removed = repository.deleteUnusedBefore(LocalDateTime.now().minus(retention));
+        if (removed > 0) {
+            log.info("Purged {} unused cached embeddings", removed);
+        }
+    }
+}
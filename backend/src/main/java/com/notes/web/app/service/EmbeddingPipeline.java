@@ -0,0 +1,342 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteEmbedding;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background embedding queue shared by the startup backfill and note writes.
+ *
+ * Pending notes are grouped into batches whose passages (see TextChunker) go out as
+ * multi-input requests of at most batch-size texts, and at most max-in-flight batches run
+ * at once (one per worker). A 429/503, or a call still unanswered after request-timeout, puts
+ * the batch back at the head of the queue and pauses every worker with exponential backoff
+ * (honouring Retry-After); each success halves the backoff again. Passages already in the
+ * EmbeddingCache never reach the API.
+ *
+ * Results are stored note by note (AIService.storeEmbedding): a note deleted or edited since
+ * it was queued is discarded, and a note whose write fails is retried on its own.
+ */
+@Component
+public class EmbeddingPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingPipeline.class);
+
+    private static final int MAX_ATTEMPTS = 3;             // for non-throttling errors
+    private static final long MIN_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    private static final long BATCH_LINGER_MS = 20;        // wait briefly for a batch to fill up
+    private static final int PROGRESS_LOG_INTERVAL = 100;
+
+    private final AIService aiService;
+    private final EmbeddingCache embeddingCache;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final Duration requestTimeout;
+    private final LinkedBlockingDeque<EmbeddingTask> queue = new LinkedBlockingDeque<>();
+    private final Semaphore capacity; // bounds queued + in-flight notes; retries reuse their permit
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    // Shared throttling state: no worker sends before resumeAt
+    private volatile long resumeAtNanos;
+    private final AtomicLong backoffMs = new AtomicLong(0);
+
+    // Progress counters
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong embeddedPassages = new AtomicLong();
+    private final AtomicLong reusedPassages = new AtomicLong(); // no API call needed (cached or duplicate text)
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong(); // completed, but the note had changed or gone
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastLogged = new AtomicLong();
+
+    public EmbeddingPipeline(AIService aiService, EmbeddingCache embeddingCache,
+                             @Value("${embedding.pipeline.batch-size:32}") int batchSize,
+                             @Value("${embedding.pipeline.max-in-flight:2}") int maxInFlight,
+                             @Value("${embedding.pipeline.queue-capacity:10000}") int queueCapacity,
+                             @Value("${embedding.pipeline.request-timeout:30s}") Duration requestTimeout) {
+        this.aiService = aiService;
+        this.embeddingCache = embeddingCache;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.requestTimeout = requestTimeout;
+        this.capacity = new Semaphore(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(maxInFlight, r -> {
+            Thread t = new Thread(r, "embedding-worker-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < maxInFlight; i++) {
+            workers.submit(this::workLoop);
+        }
+        if (!aiService.isEnabled()) {
+            log.info("Embedding provider disabled; notes are not embedded and search is keyword-only");
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.shutdownNow();
+    }
+
+    // Queue a note for (re-)embedding. Blocks while the queue is full (backpressure for backfills).
+    // The future completes once the note is settled: true if its embedding was stored, false if the
+    // note had changed or gone meanwhile or the provider is disabled, exceptionally if the pipeline
+    // gave up on it.
+    public CompletableFuture<Boolean> submit(Note note) {
+        if (!aiService.isEnabled()) return CompletableFuture.completedFuture(false);
+        EmbeddingTask task = task(note);
+        try {
+            capacity.acquire();
+            queue.put(task);
+            submitted.incrementAndGet();
+            return task.settled();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing embedding for note " + note.getId(), e);
+        }
+    }
+
+    // Queue a note unless the queue is full; false means try again later (for callers that must not block)
+    public boolean offer(Note note) {
+        if (!aiService.isEnabled()) return true; // nothing to embed with; the note stays keyword-only
+        EmbeddingTask task = task(note);
+        if (!capacity.tryAcquire()) return false;
+        queue.add(task);
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    private EmbeddingTask task(Note note) {
+        return new EmbeddingTask(note.getId(), note.getUserId(), aiService.passages(note),
+                NoteEmbedding.hash(AIService.embeddingText(note)), 0, new CompletableFuture<>());
+    }
+
+    public Progress getProgress() {
+        return new Progress(submitted.get(), completed.get(), failed.get(), discarded.get(), embeddedPassages.get(),
+                reusedPassages.get(), throttled.get(), queue.size(), inFlight.get(), backoffMs.get());
+    }
+
+    // submitted / completed / failed / discarded / queued / inFlight count notes, the *Passages counters texts
+    public record Progress(long submitted, long completed, long failed, long discarded, long embeddedPassages,
+                           long reusedPassages, long throttled, int queued, int inFlight, long backoffMs) {
+        public long pending() { return queued + inFlight; }
+    }
+
+    // --- Worker ---
+    private void workLoop() {
+        while (running) {
+            try {
+                List<EmbeddingTask> batch = nextBatch();
+                awaitBackoff();
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Embedding worker error", e);
+            }
+        }
+    }
+
+    private List<EmbeddingTask> nextBatch() throws InterruptedException {
+        List<EmbeddingTask> batch = new ArrayList<>(batchSize);
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_LINGER_MS);
+        while (batch.size() < batchSize) {
+            EmbeddingTask next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+        return batch;
+    }
+
+    private void awaitBackoff() throws InterruptedException {
+        long wait;
+        while ((wait = resumeAtNanos - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void process(List<EmbeddingTask> batch) throws InterruptedException {
+        inFlight.addAndGet(batch.size());
+        try {
+            // Passages embedded before (by any note of any user) come from the cache; identical passages
+            // within the batch are sent once
+            List<List<String>> passageHashes = new ArrayList<>(batch.size());
+            List<String> allHashes = new ArrayList<>();
+            for (EmbeddingTask task : batch) {
+                List<String> hashes = task.passages().stream().map(NoteEmbedding::hash).toList();
+                passageHashes.add(hashes);
+                allHashes.addAll(hashes);
+            }
+            Map<String, float[]> vectors = embeddingCache.getAll(allHashes);
+            Map<String, String> missing = new LinkedHashMap<>(); // passage hash -> text
+            for (int t = 0; t < batch.size(); t++) {
+                List<String> passages = batch.get(t).passages();
+                for (int p = 0; p < passages.size(); p++) {
+                    String hash = passageHashes.get(t).get(p);
+                    if (!vectors.containsKey(hash)) missing.putIfAbsent(hash, passages.get(p));
+                }
+            }
+
+            // Long notes can have more passages than one request should carry
+            List<String> missingHashes = new ArrayList<>(missing.keySet());
+            for (int from = 0; from < missingHashes.size(); from += batchSize) {
+                List<String> hashes = missingHashes.subList(from, Math.min(from + batchSize, missingHashes.size()));
+                // A hung call would hold this worker (and the permits of its notes) for good
+                List<float[]> embeddings = aiService.fetchEmbeddings(hashes.stream().map(missing::get).toList())
+                        .timeout(requestTimeout)
+                        .block();
+                for (int i = 0; i < hashes.size(); i++) {
+                    vectors.put(hashes.get(i), embeddings.get(i));
+                    embeddingCache.put(hashes.get(i), embeddings.get(i)); // kept even if a later request fails
+                }
+            }
+
+            List<EmbeddingTask> unstored = new ArrayList<>();
+            RuntimeException storeError = null;
+            for (int t = 0; t < batch.size(); t++) {
+                EmbeddingTask task = batch.get(t);
+                List<float[]> embeddings = passageHashes.get(t).stream().map(vectors::get).toList();
+                try {
+                    boolean stored = aiService.storeEmbedding(task.noteId(), task.userId(), task.contentHash(),
+                            passageHashes.get(t), embeddings);
+                    if (!stored) discarded.incrementAndGet();
+                    task.settled().complete(stored);
+                } catch (RuntimeException e) {
+                    unstored.add(task); // retried alone; its vectors are in the cache by now
+                    storeError = e;
+                }
+            }
+            capacity.release(batch.size() - unstored.size());
+            embeddedPassages.addAndGet(missing.size());
+            reusedPassages.addAndGet(allHashes.size() - missing.size());
+            onSuccess(batch.size() - unstored.size());
+            if (storeError != null) onFailure(unstored, storeError);
+        } catch (WebClientResponseException e) {
+            if (isThrottling(e)) {
+                onThrottled(batch, "status " + e.getStatusCode().value(), retryAfterMs(e));
+            } else {
+                onFailure(batch, e);
+            }
+        } catch (RuntimeException e) {
+            if (Exceptions.unwrap(e) instanceof TimeoutException) {
+                onThrottled(batch, "no response within " + requestTimeout.toMillis() + " ms", 0);
+            } else {
+                onFailure(batch, e);
+            }
+        } finally {
+            inFlight.addAndGet(-batch.size());
+        }
+        logProgress();
+    }
+
+    // 429 / 503 from the embedding API: back off and retry rather than count as a failure
+    static boolean isThrottling(Throwable e) {
+        return e instanceof WebClientResponseException response
+                && (response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()
+                || response.getStatusCode().value() == HttpStatus.SERVICE_UNAVAILABLE.value());
+    }
+
+    private void onSuccess(int count) {
+        completed.addAndGet(count);
+        backoffMs.updateAndGet(b -> b / 2 < MIN_BACKOFF_MS ? 0 : b / 2);
+    }
+
+    // Throttled or timed out: the provider is overloaded, so every worker waits and the batch is retried as is
+    private void onThrottled(List<EmbeddingTask> batch, String reason, long retryAfterMs) throws InterruptedException {
+        throttled.incrementAndGet();
+        long backoff = backoffMs.updateAndGet(b -> Math.min(MAX_BACKOFF_MS, Math.max(MIN_BACKOFF_MS, b * 2)));
+        long delay = Math.max(backoff, retryAfterMs) + ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+        resumeAtNanos = Math.max(resumeAtNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+        log.warn("Embedding API throttled ({}), backing off {} ms", reason, delay);
+
+        // Back to the head of the queue, in original order
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            queue.putFirst(batch.get(i));
+        }
+    }
+
+    private void onFailure(List<EmbeddingTask> batch, Exception e) throws InterruptedException {
+        log.warn("Embedding batch of {} failed: {}", batch.size(), e.getMessage());
+        for (EmbeddingTask task : batch) {
+            if (task.attempts() + 1 < MAX_ATTEMPTS) {
+                queue.put(task.retry());
+            } else {
+                failed.incrementAndGet();
+                capacity.release();
+                log.error("Giving up on embedding for note {}", task.noteId());
+                task.settled().completeExceptionally(new IllegalStateException(
+                        "Gave up on embedding note " + task.noteId() + ": " + e.getMessage(), e));
+            }
+        }
+    }
+
+    private long retryAfterMs(WebClientResponseException e) {
+        String retryAfter = e.getHeaders().getFirst("Retry-After");
+        if (retryAfter == null) return 0;
+        try {
+            return Duration.ofSeconds(Long.parseLong(retryAfter.trim())).toMillis();
+        } catch (NumberFormatException ignored) {
+            return 0; // HTTP-date form: fall back to our own backoff
+        }
+    }
+
+    private void logProgress() {
+        long done = completed.get() + failed.get();
+        long previous = lastLogged.get();
+        if (done - previous < PROGRESS_LOG_INTERVAL && done != submitted.get()) return;
+        if (!lastLogged.compareAndSet(previous, done)) return;
+
+        Progress progress = getProgress();
+        if (progress.pending() == 0) {
+            log.info("Embedding pipeline idle: {} embedded, {} failed", progress.completed(), progress.failed());
+        } else {
+            log.info("Embedding pipeline: {}/{} done, {} queued", done, progress.submitted(), progress.queued());
+        }
+    }
+
+    // contentHash identifies the whole note text the passages were cut from; settled is shared by retries
+    private record EmbeddingTask(Long noteId, Long userId, List<String> passages, String contentHash, int attempts,
+                                 CompletableFuture<Boolean> settled) {
+        EmbeddingTask retry() {
+            return new EmbeddingTask(noteId, userId, passages, contentHash, attempts + 1, settled);
+        }
+    }
+}
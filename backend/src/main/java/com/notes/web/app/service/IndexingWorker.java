@@ -0,0 +1,125 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteChange;
+import com.notes.web.app.repository.NoteChangeRepository;
+import com.notes.web.app.repository.NoteRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the vector index in step with the notes table by draining the note_changes outbox.
+ *
+ * A note's changes are only picked up once the note has been quiet for the coalescing window
+ * (its newest change is older than that), so a note being edited continuously is re-embedded
+ * once after the edits stop rather than on every poll. All of its pending changes then collapse
+ * into a single re-embed (or removal).
+ * Rows are deleted once handed to the EmbeddingPipeline; if the process dies before the
+ * embedding lands, the startup content-hash check re-embeds the note. drain() runs on the
+ * shared scheduler thread, so it never blocks on a full pipeline: the changes it could not
+ * hand over stay in the outbox and are retried on the next poll.
+ */
+@Component
+public class IndexingWorker {
+
+    private static final int BATCH_SIZE = 500; // change rows per drain
+
+    private final NoteChangeRepository noteChangeRepository;
+    private final NoteRepository noteRepository;
+    private final AIService aiService;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final Duration coalesceWindow;
+
+    private volatile long lagMs;
+    private volatile LocalDateTime lastDrainAt;
+    private volatile long processed;
+    private volatile long coalesced;
+    private volatile long deferred;
+
+    public IndexingWorker(NoteChangeRepository noteChangeRepository, NoteRepository noteRepository,
+                          AIService aiService, EmbeddingPipeline embeddingPipeline,
+                          @Value("${indexing.coalesce-window-ms:2000}") long coalesceWindowMs) {
+        this.noteChangeRepository = noteChangeRepository;
+        this.noteRepository = noteRepository;
+        this.aiService = aiService;
+        this.embeddingPipeline = embeddingPipeline;
+        this.coalesceWindow = Duration.ofMillis(coalesceWindowMs);
+    }
+
+    @Scheduled(fixedDelayString = "${indexing.poll-interval-ms:1000}")
+    public void drain() {
+        List<NoteChange> changes = noteChangeRepository.findQuietChanges(LocalDateTime.now().minus(coalesceWindow),
+                PageRequest.ofSize(BATCH_SIZE));
+        if (!changes.isEmpty()) {
+            apply(changes);
+        }
+        lagMs = noteChangeRepository.findFirstByOrderByIdAsc()
+                .map(oldest -> Math.max(0, Duration.between(oldest.getCreatedAt(), LocalDateTime.now()).toMillis()))
+                .orElse(0L);
+        lastDrainAt = LocalDateTime.now();
+    }
+
+    private void apply(List<NoteChange> changes) {
+        // Coalesce: only the latest change per note matters
+        Map<Long, NoteChange.Type> latest = new LinkedHashMap<>();
+        Map<Long, List<Long>> changeIds = new HashMap<>();
+        for (NoteChange change : changes) {
+            latest.put(change.getNoteId(), change.getType());
+            changeIds.computeIfAbsent(change.getNoteId(), id -> new ArrayList<>()).add(change.getId());
+        }
+
+        List<Long> handled = new ArrayList<>(); // notes whose change rows can go
+        List<Long> upsertIds = new ArrayList<>();
+        latest.forEach((noteId, type) -> {
+            if (type == NoteChange.Type.DELETE) {
+                aiService.removeEmbedding(noteId);
+                handled.add(noteId);
+            } else {
+                upsertIds.add(noteId);
+            }
+        });
+
+        Map<Long, Note> notes = noteRepository.findAllById(upsertIds).stream()
+                .collect(Collectors.toMap(Note::getId, Function.identity()));
+        boolean pipelineFull = false;
+        for (Long noteId : upsertIds) {
+            Note note = notes.get(noteId);
+            if (note == null) {
+                aiService.removeEmbedding(noteId); // deleted after the change was recorded
+            } else if (pipelineFull || !embeddingPipeline.offer(note)) {
+                pipelineFull = true; // keep the rest for the next drain, in order
+                continue;
+            }
+            handled.add(noteId);
+        }
+
+        List<Long> done = handled.stream().flatMap(noteId -> changeIds.get(noteId).stream()).toList();
+        noteChangeRepository.deleteAllByIdInBatch(done);
+        processed += done.size();
+        coalesced += done.size() - handled.size();
+        deferred += changes.size() - done.size();
+    }
+
+    public Status getStatus() {
+        EmbeddingPipeline.Progress pipeline = embeddingPipeline.getProgress();
+        return new Status(lagMs, lastDrainAt, processed, coalesced, deferred, pipeline);
+    }
+
+    // lagMs: age of the oldest change not yet handed to the pipeline;
+    // deferredChanges: times a change was left in the outbox because the pipeline was full
+    public record Status(long lagMs, LocalDateTime lastDrainAt, long processedChanges, long coalescedChanges,
+                         long deferredChanges, EmbeddingPipeline.Progress pipeline) {
+    }
+}
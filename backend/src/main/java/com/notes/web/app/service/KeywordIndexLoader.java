@@ -0,0 +1,106 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.search.KeywordIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds users' keyword index partitions in the background.
+ *
+ * A partition is read from (id, title, content) rows rather than Note entities. Logins start
+ * the build, so it is usually done by the first search; a search that still finds it running
+ * waits at most load-wait and is then answered without keyword results, like a search whose
+ * vectors are still loading is answered without semantic ones. Concurrent requests for the
+ * same user share one build.
+ */
+@Component
+public class KeywordIndexLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(KeywordIndexLoader.class);
+
+    private static final int MAX_ATTEMPTS = 3; // a build discarded because a write raced it is retried
+
+    private final NoteRepository noteRepository;
+    private final KeywordIndex keywordIndex;
+    private final Duration loadWait;
+    private final ExecutorService loaders;
+    private final Map<Long, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    public KeywordIndexLoader(NoteRepository noteRepository, KeywordIndex keywordIndex,
+                              @Value("${search.keyword.load-wait:200ms}") Duration loadWait,
+                              @Value("${search.keyword.load-threads:2}") int threads) {
+        this.noteRepository = noteRepository;
+        this.keywordIndex = keywordIndex;
+        this.loadWait = loadWait;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.loaders = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "keyword-loader-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        loaders.shutdownNow();
+    }
+
+    // Starts building the user's partition unless it is loaded or already being built
+    public CompletableFuture<Void> load(long userId) {
+        if (keywordIndex.isLoaded(userId)) return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
+        CompletableFuture<Void> running = inFlight.putIfAbsent(userId, loaded);
+        if (running != null) return running;
+        loaders.execute(() -> {
+            try {
+                build(userId);
+                inFlight.remove(userId, loaded);
+                loaded.complete(null);
+            } catch (RuntimeException e) {
+                inFlight.remove(userId, loaded);
+                loaded.completeExceptionally(e);
+            }
+        });
+        return loaded;
+    }
+
+    // Whether the user's partition is loaded, after waiting at most load-wait for it
+    public boolean awaitLoaded(long userId) {
+        try {
+            load(userId).get(loadWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Keyword index of user {} still loading after {} ms", userId, loadWait.toMillis());
+        } catch (ExecutionException e) {
+            log.warn("Loading the keyword index of user {} failed: {}", userId, e.getCause().toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return keywordIndex.isLoaded(userId);
+    }
+
+    private void build(long userId) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !keywordIndex.isLoaded(userId); attempt++) {
+            long token = keywordIndex.beginLoad(userId);
+            List<KeywordIndex.Document> notes = noteRepository.findKeywordFields(userId).stream()
+                    .map(row -> new KeywordIndex.Document((Long) row[0], (String) row[1], (String) row[2]))
+                    .toList();
+            if (keywordIndex.completeLoad(userId, token, notes)) return;
+        }
+    }
+}
@@ -1,56 +1,231 @@
 package com.notes.web.app.service;
 
+import com.notes.web.app.dto.CursorPage;
+import com.notes.web.app.dto.NoteSummary;
+import com.notes.web.app.dto.SearchHit;
+import com.notes.web.app.dto.SearchPage;
 import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteChange;
+import com.notes.web.app.entity.User;
+import com.notes.web.app.exception.InvalidCursorException;
+import com.notes.web.app.exception.InvalidPageException;
+import com.notes.web.app.repository.NoteChangeRepository;
 import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.repository.UserRepository;
+import com.notes.web.app.search.HybridRanker;
+import com.notes.web.app.search.KeywordIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class NoteService {
 
     private final NoteRepository noteRepository;
+    private final UserRepository userRepository;
+
+    // Outbox drained by IndexingWorker (keeps the vector index in sync)
+    private final NoteChangeRepository noteChangeRepository;
+    // In-memory BM25 index, updated as soon as a write commits; partitions are built by the loader
+    private final KeywordIndex keywordIndex;
+    private final KeywordIndexLoader keywordIndexLoader;
+    // Loading the notes of a search page (the other search phases are timed in AIService)
+    private final Timer loadPhase;
+    private final MeterRegistry meterRegistry;
 
     private final AIService aiService;
+
+    public static final int MAX_PAGE_SIZE = 100;
+    // Deepest ranked search result a page may reach; every page ranks all the results before it
+    public static final int MAX_SEARCH_RESULTS = 10_000;
+
     // Constructor Injection (Better than @Autowired)
-    public NoteService(NoteRepository noteRepository, AIService aiService) {
+    public NoteService(NoteRepository noteRepository, UserRepository userRepository,
+                       NoteChangeRepository noteChangeRepository, KeywordIndex keywordIndex,
+                       KeywordIndexLoader keywordIndexLoader, AIService aiService, MeterRegistry meterRegistry) {
         this.noteRepository = noteRepository;
+        this.userRepository = userRepository;
+        this.noteChangeRepository = noteChangeRepository;
+        this.keywordIndex = keywordIndex;
+        this.keywordIndexLoader = keywordIndexLoader;
         this.aiService = aiService;
+        this.meterRegistry = meterRegistry;
+        this.loadPhase = Timer.builder("search.phase")
+                .description("Time spent in each phase of a search")
+                .tag("phase", "load")
+                .register(meterRegistry);
     }
 
     public List<Note> getAllNotes() {
         return noteRepository.findAll();
     }
 
+    @Transactional
     public Note createNote(Note note) {
         Note saved = noteRepository.save(note);
-        aiService.generateAndStoreEmbedding(saved);
-        return noteRepository.save(note);
+        noteChangeRepository.save(new NoteChange(saved.getId(), NoteChange.Type.UPSERT));
+        indexKeywordsAfterCommit(saved);
+        return saved;
+    }
+
+    // Bulk version of createNote (one transaction, JDBC-batched inserts); the notes must share one user
+    @Transactional
+    public List<Note> createNotes(List<Note> notes) {
+        List<Note> saved = noteRepository.saveAll(notes);
+        noteChangeRepository.saveAll(saved.stream()
+                .map(note -> new NoteChange(note.getId(), NoteChange.Type.UPSERT))
+                .toList());
+        saved.forEach(this::indexKeywordsAfterCommit);
+        return saved;
     }
 
     public Optional<Note> getNoteById(Long id) {
         return noteRepository.findById(id);
     }
 
+    @Transactional
     public Note updateNote(Long id, Note noteDetails) {
         return noteRepository.findById(id).map(note -> {
             note.setTitle(noteDetails.getTitle());
             note.setContent(noteDetails.getContent());
-            return noteRepository.save(note);
+            Note saved = noteRepository.save(note);
+            noteChangeRepository.save(new NoteChange(id, NoteChange.Type.UPSERT));
+            indexKeywordsAfterCommit(saved);
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Note not found with id " + id));
     }
 
+    @Transactional
     public void deleteNote(Long id) {
-        noteRepository.deleteById(id);
+        noteRepository.findById(id).ifPresent(note -> {
+            noteRepository.delete(note);
+            Long userId = note.getUserId();
+            afterCommit(() -> keywordIndex.remove(userId, id));
+        });
+        noteChangeRepository.save(new NoteChange(id, NoteChange.Type.DELETE));
     }
 
+    // Every note in full, from the query cache while no note changes; large accounts should page through
+    // getNoteSummaries instead
     public List<Note> getNotesForUser(String username) {
         return noteRepository.findByUserUsername(username);
     }
 
-    public List<Note> searchNotes(String query, String username) {
-        List<Note> userNotes = noteRepository.findByUserUsername(username);
-        return aiService.searchNotes(query, userNotes);
+    // Newest first, without note content; cursor is null for the first page
+    public CursorPage<NoteSummary> getNoteSummaries(String username, String cursor, int size) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        size = clampPageSize(size);
+        Pageable limit = PageRequest.ofSize(size + 1); // one extra row tells us if there is a next page
+
+        List<NoteSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = noteRepository.findSummaries(user.getId(), limit);
+        } else {
+            Cursor after = Cursor.decode(cursor);
+            rows = noteRepository.findSummariesAfter(user.getId(), after.updatedAt(), after.id(), limit);
+        }
+
+        if (rows.size() <= size) return new CursorPage<>(rows, null);
+        List<NoteSummary> items = rows.subList(0, size);
+        NoteSummary last = items.get(size - 1);
+        return new CursorPage<>(items, new Cursor(last.updatedAt(), last.id()).encode());
+    }
+
+    public SearchPage searchNotes(String query, String username, int page, int size) {
+        page = Math.max(0, page);
+        size = clampPageSize(size);
+        long offset = (long) page * size;
+        if (offset + size > MAX_SEARCH_RESULTS) throw new InvalidPageException(page, size, MAX_SEARCH_RESULTS);
+        User user = searchingUser(username);
+        HybridRanker.Ranking ranking = aiService.rankNotes(query, user.getId(), (int) offset, size);
+        return new SearchPage(loadHits(user, ranking), page, size, ranking.hasMore());
+    }
+
+    // Every keyword match and the best semantic matches, best first (the unpaged /search endpoint)
+    public List<SearchHit> searchAllNotes(String query, String username) {
+        User user = searchingUser(username);
+        return loadHits(user, aiService.rankAllNotes(query, user.getId()));
+    }
+
+    private User searchingUser(String username) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (!keywordIndexLoader.awaitLoaded(user.getId())) {
+            // Built in the background; this search goes without keyword results rather than wait for it
+            meterRegistry.counter("search.semantic_only", "reason", "keyword_index_loading").increment();
+        }
+        return user;
+    }
+
+    // Load only the ranked notes
+    private List<SearchHit> loadHits(User user, HybridRanker.Ranking ranking) {
+        List<Long> ids = ranking.hits().stream().map(HybridRanker.RankedNote::noteId).toList();
+        Map<Long, Note> notesById = new HashMap<>();
+        for (Note note : loadPhase.record(() -> noteRepository.findAllById(ids))) {
+            if (user.getId().equals(note.getUserId())) notesById.put(note.getId(), note);
+        }
+        List<SearchHit> hits = new ArrayList<>(ids.size());
+        for (HybridRanker.RankedNote ranked : ranking.hits()) {
+            Note note = notesById.get(ranked.noteId());
+            if (note != null) { // index may briefly lag a delete
+                hits.add(new SearchHit(note, ranked.score(), ranked.keywordScore(), ranked.similarity()));
+            }
+        }
+        return hits;
+    }
+
+    private static int clampPageSize(int size) {
+        return Math.max(1, Math.min(MAX_PAGE_SIZE, size));
+    }
+
+    // Keyset position: (updatedAt, id) of the last row of the previous page, as an opaque token
+    private record Cursor(LocalDateTime updatedAt, Long id) {
+        String encode() {
+            String raw = updatedAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new InvalidCursorException(token, e);
+            }
+        }
+    }
+
+    // --- Helpers: keep the keyword index in step with committed data only ---
+    private void indexKeywordsAfterCommit(Note note) {
+        Long userId = note.getUserId();
+        Long noteId = note.getId();
+        String title = note.getTitle();
+        String content = note.getContent();
+        afterCommit(() -> keywordIndex.upsert(userId, noteId, title, content));
+    }
+
+    private void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package com.notes.web.app.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.User;
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bulk import and export of a user's notes as NDJSON (one JSON note per line).
+ *
+ * Both directions hold at most one chunk of notes in memory. Import reads the body line by line
+ * and saves every IMPORT_CHUNK_SIZE notes in their own transaction (JDBC-batched, see
+ * NoteService.createNotes); the outbox rows written alongside are embedded in batches by the
+ * IndexingWorker. Export walks a database cursor and detaches each note once written.
+ */
+@Service
+public class NoteTransferService {
+
+    private static final int IMPORT_CHUNK_SIZE = 500;
+    private static final int MAX_TITLE_LENGTH = 255; // notes.title column size
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final int EXPORT_FLUSH_INTERVAL = 500;
+
+    private final NoteService noteService;
+    private final NoteRepository noteRepository;
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public NoteTransferService(NoteService noteService, NoteRepository noteRepository, UserRepository userRepository,
+                               EntityManager entityManager, ObjectMapper objectMapper) {
+        this.noteService = noteService;
+        this.noteRepository = noteRepository;
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    // Lines need a non-blank "title" and may have "content"; other fields (id, timestamps) are ignored.
+    // Invalid lines are skipped and reported; valid ones are imported.
+    public ImportResult importNotes(String username, InputStream body) throws IOException {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        int imported = 0;
+        int rejected = 0;
+        List<String> errors = new ArrayList<>();
+        List<Note> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            try {
+                chunk.add(parse(line, user));
+            } catch (IllegalArgumentException e) {
+                rejected++;
+                if (errors.size() < MAX_REPORTED_ERRORS) errors.add("line " + lineNumber + ": " + e.getMessage());
+                continue;
+            }
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                imported += saveChunk(chunk);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += saveChunk(chunk);
+        }
+        return new ImportResult(imported, rejected, errors);
+    }
+
+    // Writes the user's notes to out, oldest id first, in the same JSON shape as GET /api/notes
+    @Transactional(readOnly = true)
+    public void exportNotes(String username, OutputStream out) throws IOException {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        try (Stream<Note> notes = noteRepository.streamByUserId(user.getId());
+             JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null); // lines are separated by '\n' below, not Jackson's space
+            int written = 0;
+            Iterator<Note> iterator = notes.iterator();
+            while (iterator.hasNext()) {
+                Note note = iterator.next();
+                objectMapper.writeValue(generator, note);
+                generator.writeRaw('\n');
+                entityManager.detach(note); // keep the persistence context from growing with the export
+                if (++written % EXPORT_FLUSH_INTERVAL == 0) generator.flush();
+            }
+        }
+    }
+
+    public record ImportResult(int imported, int rejected, List<String> errors) {
+    }
+
+    private Note parse(String line, User user) {
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("not valid JSON");
+        }
+        if (json == null || !json.isObject()) throw new IllegalArgumentException("expected a JSON object");
+
+        String title = json.path("title").asText("");
+        if (title.isBlank()) throw new IllegalArgumentException("title is required");
+        if (title.length() > MAX_TITLE_LENGTH) {
+            throw new IllegalArgumentException("title is longer than " + MAX_TITLE_LENGTH + " characters");
+        }
+
+        Note note = new Note();
+        note.setTitle(title);
+        note.setContent(json.hasNonNull("content") ? json.get("content").asText() : null);
+        note.setUser(user);
+        return note;
+    }
+
+    private int saveChunk(List<Note> chunk) {
+        int size = noteService.createNotes(chunk).size();
+        chunk.clear();
+        // The request-scoped persistence context (open-in-view) would otherwise keep every imported note
+        entityManager.clear();
+        return size;
+    }
+}
@@ -0,0 +1,91 @@
+package com.notes.web.app.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of search-query embeddings with a time-to-live.
+ *
+ * Keys are normalised (trimmed, lower-cased, whitespace collapsed) so "Breakfast  ideas"
+ * and "breakfast ideas" share one entry; MiniLM is uncased, so the vectors are identical.
+ * Cached arrays are shared between callers and must not be modified.
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public QueryEmbeddingCache(@Value("${search.query-cache.max-size:1000}") int maxSize,
+                               @Value("${search.query-cache.ttl:10m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        // accessOrder = true: iteration order is least-recently-used first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                boolean evict = size() > QueryEmbeddingCache.this.maxSize;
+                if (evict) evictions.incrementAndGet();
+                return evict;
+            }
+        };
+    }
+
+    // Cached vector for the query, or null on a miss (absent or expired)
+    public float[] get(String query) {
+        String key = normalize(query);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+                hits.incrementAndGet();
+                return entry.vector;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String query, float[] vector) {
+        Entry entry = new Entry(vector, System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            entries.put(normalize(query), entry);
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(size, hits.get(), misses.get(), evictions.get());
+    }
+
+    public record Stats(int size, long hits, long misses, long evictions) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+
+    static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private record Entry(float[] vector, long expiresAtNanos) {
+    }
+}
@@ -0,0 +1,60 @@
+package com.notes.web.app.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Issues the signed tokens used when auth.mode=token. A token names the user (sub) and their
+ * roles, and expires after auth.token.ttl; SecurityConfig's JwtDecoder verifies it on every request without any
+ * server-side session, so a login is not tied to one node. Caches and search indexes are still
+ * per node, so this alone does not let several nodes serve the same users.
+ */
+@Service
+public class TokenService {
+
+    public static final String ISSUER = "notes-app";
+    // Role names without the ROLE_ prefix, e.g. ["ADMIN"]
+    public static final String ROLES_CLAIM = "roles";
+    public static final String ROLE_PREFIX = "ROLE_";
+
+    private final JwtEncoder jwtEncoder;
+    private final Duration ttl;
+
+    public TokenService(JwtEncoder jwtEncoder, @Value("${auth.token.ttl:1h}") Duration ttl) {
+        this.jwtEncoder = jwtEncoder;
+        this.ttl = ttl;
+    }
+
+    public String issue(String username, Collection<? extends GrantedAuthority> authorities) {
+        List<String> roles = authorities.stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith(ROLE_PREFIX))
+                .map(authority -> authority.substring(ROLE_PREFIX.length()))
+                .toList();
+        Instant now = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer(ISSUER)
+                .subject(username)
+                .claim(ROLES_CLAIM, roles)
+                .issuedAt(now)
+                .expiresAt(now.plus(ttl))
+                .build();
+        JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
+        return jwtEncoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+}
@@ -1,8 +1,11 @@
 package com.notes.web.app;
 
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
+// Needs the local PostgreSQL: runs with -Pintegration
+@Tag("integration")
 @SpringBootTest
 class NotesApplicationTests {
 
@@ -0,0 +1,48 @@
+package com.notes.web.app.benchmark;
+
+import com.notes.web.app.search.HnswVectorIndex;
+import com.notes.web.app.search.ScoredNote;
+import com.notes.web.app.search.VectorIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Approximate semantic search with the default HNSW settings. No 1M corpus here: building
+// that graph takes tens of minutes, see IndexUpdateBenchmark for insert cost.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HnswSearchBenchmark {
+
+    private static final long USER_ID = 1;
+
+    @Param({"1000", "100000"})
+    public int corpusSize;
+
+    @Param({"64"})
+    public int efSearch;
+
+    private VectorIndex index;
+    private float[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        index = new HnswVectorIndex(SyntheticCorpus.DIMENSION, 16, 200, efSearch);
+        for (long id = 0; id < corpusSize; id++) {
+            index.upsert(USER_ID, id, corpus.vector(id));
+        }
+        queries = new float[64][];
+        for (int i = 0; i < queries.length; i++) queries[i] = corpus.vector(-1 - i);
+    }
+
+    @Benchmark
+    public List<ScoredNote> hnswTopK() {
+        return index.search(USER_ID, queries[next++ & (queries.length - 1)], 50);
+    }
+}
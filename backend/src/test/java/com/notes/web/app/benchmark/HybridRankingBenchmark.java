@@ -0,0 +1,43 @@
+package com.notes.web.app.benchmark;
+
+import com.notes.web.app.search.HybridRanker;
+import com.notes.web.app.search.ScoredNote;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Rank fusion alone: two candidate lists (half of the notes in both) fused into one page
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HybridRankingBenchmark {
+
+    @Param({"50", "1000", "100000"})
+    public int candidates;
+
+    private final HybridRanker ranker = new HybridRanker(60, 1.0, 1.0, 0.2);
+    private List<ScoredNote> keywordHits;
+    private List<ScoredNote> semanticHits;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        keywordHits = new ArrayList<>(candidates);
+        semanticHits = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            keywordHits.add(new ScoredNote(i, 20.0 - 20.0 * i / candidates));
+            semanticHits.add(new ScoredNote(candidates / 2 + random.nextInt(candidates), 0.9 - 0.6 * i / candidates));
+        }
+    }
+
+    @Benchmark
+    public HybridRanker.Ranking firstPage() {
+        return ranker.rank(keywordHits, semanticHits, 0, 20);
+    }
+}
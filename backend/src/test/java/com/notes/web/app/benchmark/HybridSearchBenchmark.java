@@ -0,0 +1,70 @@
+package com.notes.web.app.benchmark;
+
+import com.notes.web.app.embedding.HuggingFaceEmbeddingProvider;
+import com.notes.web.app.embedding.TextChunker;
+import com.notes.web.app.search.HnswVectorIndex;
+import com.notes.web.app.search.HybridRanker;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.KeywordIndex;
+import com.notes.web.app.search.PassageIndex;
+import com.notes.web.app.service.AIService;
+import com.notes.web.app.service.QueryEmbeddingCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end AIService.rankNotes: BM25 + HNSW + fusion. Query embeddings are pre-loaded into
+// the query cache, so no Hugging Face call is made (the API key is blank).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HybridSearchBenchmark {
+
+    private static final long USER_ID = 1;
+
+    @Param({"1000", "100000"})
+    public int corpusSize;
+
+    private AIService aiService;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        PassageIndex passageIndex = new PassageIndex(new HnswVectorIndex(SyntheticCorpus.DIMENSION, 16, 200, 64),
+                PassageIndex.Aggregation.MAX, 1);
+        KeywordIndex keywordIndex = new KeywordIndex(1.2, 0.75);
+        List<KeywordIndex.Document> documents = new ArrayList<>(corpusSize);
+        for (long id = 0; id < corpusSize; id++) {
+            passageIndex.upsert(USER_ID, id, List.of(corpus.vector(id)));
+            documents.add(new KeywordIndex.Document(id, corpus.title(id), corpus.content(id)));
+        }
+        keywordIndex.completeLoad(USER_ID, keywordIndex.beginLoad(USER_ID), documents);
+
+        QueryEmbeddingCache queryCache = new QueryEmbeddingCache(1024, Duration.ofDays(1));
+        SplittableRandom random = new SplittableRandom(7);
+        queries = new String[256];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = corpus.query(random, 2) + " " + i; // unique, so every query has its own vector
+            queryCache.put(queries[i], corpus.vector(-1 - i));
+        }
+
+        aiService = new AIService(new HuggingFaceEmbeddingProvider(WebClient.builder(), "http://localhost:0", ""),
+                passageIndex, new IndexReadiness(), new TextChunker(150, 30), null, null, queryCache, keywordIndex, new HybridRanker(60, 1.0, 1.0, 0.2), Duration.ofMillis(800), new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public HybridRanker.Ranking rankNotes() {
+        return aiService.rankNotes(queries[next++ & (queries.length - 1)], USER_ID, 0, 20);
+    }
+}
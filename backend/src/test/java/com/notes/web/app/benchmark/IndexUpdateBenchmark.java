@@ -0,0 +1,67 @@
+package com.notes.web.app.benchmark;
+
+import com.notes.web.app.search.FlatVectorIndex;
+import com.notes.web.app.search.HnswVectorIndex;
+import com.notes.web.app.search.VectorIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vector index write throughput on a pre-filled account: the work done per note by
+ * ingestion (EmbeddingPipeline -> VectorIndex). Re-upserting an existing note is a delete
+ * plus an insert, so tombstone clean-up is included.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class IndexUpdateBenchmark {
+
+    private static final long USER_ID = 1;
+
+    @Param({"flat", "hnsw"})
+    public String index;
+
+    @Param({"1000", "100000"})
+    public int corpusSize;
+
+    private VectorIndex vectorIndex;
+    private float[][] vectors;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        vectorIndex = index.equals("flat")
+                ? new FlatVectorIndex(SyntheticCorpus.DIMENSION)
+                : new HnswVectorIndex(SyntheticCorpus.DIMENSION, 16, 200, 64);
+        for (long id = 0; id < corpusSize; id++) {
+            vectorIndex.upsert(USER_ID, id, corpus.vector(id));
+        }
+
+        // Replacement vectors, generated up front so the benchmark measures only the index
+        vectors = new float[1024][];
+        for (int i = 0; i < vectors.length; i++) vectors[i] = corpus.vector(corpusSize + i);
+        random = new SplittableRandom(7);
+    }
+
+    // A note was re-embedded (edit): replace its vector
+    @Benchmark
+    public void vectorUpsert() {
+        long id = random.nextInt(corpusSize);
+        vectorIndex.upsert(USER_ID, id, vectors[(int) (id & (vectors.length - 1))]);
+    }
+
+    // A note was deleted and another one created
+    @Benchmark
+    public void vectorRemoveAndInsert() {
+        long id = random.nextInt(corpusSize);
+        vectorIndex.remove(id);
+        vectorIndex.upsert(USER_ID, id, vectors[(int) (id & (vectors.length - 1))]);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.notes.web.app.benchmark;
+
+import com.notes.web.app.search.KeywordIndex;
+import com.notes.web.app.search.ScoredNote;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// BM25 search and incremental updates over one user's notes (a single large account is the worst case)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class KeywordSearchBenchmark {
+
+    private static final long USER_ID = 1;
+
+    @Param({"1000", "100000", "1000000"})
+    public int corpusSize;
+
+    private SyntheticCorpus corpus;
+    private KeywordIndex index;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = new SyntheticCorpus(42);
+        List<KeywordIndex.Document> documents = new ArrayList<>(corpusSize);
+        for (long id = 0; id < corpusSize; id++) {
+            documents.add(new KeywordIndex.Document(id, corpus.title(id), corpus.content(id)));
+        }
+        index = new KeywordIndex(1.2, 0.75);
+        index.completeLoad(USER_ID, index.beginLoad(USER_ID), documents);
+
+        SplittableRandom random = new SplittableRandom(7);
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) queries[i] = corpus.query(random, 2);
+    }
+
+    @Benchmark
+    public List<ScoredNote> search() {
+        return index.search(USER_ID, queries[next++ & (queries.length - 1)], 50);
+    }
+
+    // A note was edited: re-index it with different text
+    @Benchmark
+    public void upsert() {
+        long id = next++ % corpusSize;
+        index.upsert(USER_ID, id, corpus.title(id + 1), corpus.content(id + 1));
+    }
+}
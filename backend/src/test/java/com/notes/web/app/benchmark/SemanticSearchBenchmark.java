@@ -0,0 +1,70 @@
+package com.notes.web.app.benchmark;
+
+import com.notes.web.app.search.FlatVectorIndex;
+import com.notes.web.app.search.Quantization;
+import com.notes.web.app.search.ScoredNote;
+import com.notes.web.app.search.SearchExecutor;
+import com.notes.web.app.search.VectorIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Brute-force semantic scoring: one similarity per stored note. With quantization the scan reads
+// int8/binary codes and re-ranks the best candidates from full-precision vectors kept in a map.
+// threads > 1 splits the scan over a SearchExecutor pool (latency should fall with the core count).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SemanticSearchBenchmark {
+
+    private static final long USER_ID = 1;
+
+    @Param({"1000", "100000", "1000000"})
+    public int corpusSize;
+
+    @Param({"NONE", "INT8", "BINARY"})
+    public Quantization quantization;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private SearchExecutor executor;
+    private VectorIndex index;
+    private float[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        Map<Long, float[]> fullPrecision = new HashMap<>();
+        executor = threads == 1 ? SearchExecutor.SEQUENTIAL : new SearchExecutor(threads, 1, 4096);
+        index = new FlatVectorIndex(SyntheticCorpus.DIMENSION, quantization, quantization.defaultRerankFactor(), noteIds -> {
+            Map<Long, float[]> loaded = new HashMap<>();
+            for (Long id : noteIds) loaded.put(id, fullPrecision.get(id));
+            return loaded;
+        }, executor);
+        for (long id = 0; id < corpusSize; id++) {
+            float[] vector = corpus.vector(id);
+            index.upsert(USER_ID, id, vector);
+            if (quantization != Quantization.NONE) fullPrecision.put(id, vector);
+        }
+        queries = new float[64][];
+        for (int i = 0; i < queries.length; i++) queries[i] = corpus.vector(-1 - i); // not in the corpus
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != SearchExecutor.SEQUENTIAL) executor.close();
+    }
+
+    @Benchmark
+    public List<ScoredNote> flatTopK() {
+        return index.search(USER_ID, queries[next++ & (queries.length - 1)], 50);
+    }
+}
@@ -0,0 +1,50 @@
+package com.notes.web.app.benchmark;
+
+import com.notes.web.app.search.VectorMath;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// The similarity kernel alone: one query against a block of stored (normalised) vectors.
+// "dot" is whatever VectorMath picked (SIMD when the Vector API module is present).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarityBenchmark {
+
+    private static final int VECTORS = 1024; // 1.5 MB of vectors: fits in L2/L3, measures compute
+
+    private final int dimension = SyntheticCorpus.DIMENSION;
+    private float[] query;
+    private float[] slab;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        query = VectorMath.normalize(corpus.vector(-1));
+        slab = new float[VECTORS * dimension];
+        for (int i = 0; i < VECTORS; i++) {
+            VectorMath.normalizeInto(corpus.vector(i), slab, i * dimension);
+        }
+        System.out.println("Similarity kernel: " + VectorMath.describe());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public float dot() {
+        float best = -1;
+        for (int i = 0; i < VECTORS; i++) best = Math.max(best, VectorMath.dot(query, 0, slab, i * dimension, dimension));
+        return best;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public float scalarDot() {
+        float best = -1;
+        for (int i = 0; i < VECTORS; i++) best = Math.max(best, VectorMath.scalarDot(query, 0, slab, i * dimension, dimension));
+        return best;
+    }
+}
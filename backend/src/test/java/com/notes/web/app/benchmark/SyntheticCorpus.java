@@ -0,0 +1,94 @@
+package com.notes.web.app.benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic stand-in for real notes, so the benchmarks run offline and are repeatable.
+ *
+ * Vectors are clustered (like real sentence embeddings, which are far from uniform) and
+ * note text draws words from a Zipf-like distribution (a few very common words, a long tail).
+ * Note i always gets the same vector and text for a given seed, whatever the corpus size.
+ */
+final class SyntheticCorpus {
+
+    static final int DIMENSION = 384;
+    private static final int CLUSTERS = 64;
+    private static final int VOCABULARY = 5_000;
+    private static final int WORDS_PER_NOTE = 12;
+
+    private final long seed;
+    private final float[][] centroids = new float[CLUSTERS][DIMENSION];
+    private final String[] vocabulary = new String[VOCABULARY];
+    private final double[] cumulativeWeights = new double[VOCABULARY];
+
+    SyntheticCorpus(long seed) {
+        this.seed = seed;
+        SplittableRandom random = new SplittableRandom(seed);
+        for (float[] centroid : centroids) {
+            for (int d = 0; d < DIMENSION; d++) centroid[d] = (float) random.nextGaussian();
+        }
+        double total = 0;
+        for (int w = 0; w < VOCABULARY; w++) {
+            vocabulary[w] = word(w);
+            total += 1.0 / (w + 1);
+            cumulativeWeights[w] = total;
+        }
+        for (int w = 0; w < VOCABULARY; w++) cumulativeWeights[w] /= total;
+    }
+
+    float[] vector(long noteId) {
+        SplittableRandom random = new SplittableRandom(seed ^ (noteId * 0x9E3779B97F4A7C15L));
+        float[] centroid = centroids[random.nextInt(CLUSTERS)];
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) vector[d] = centroid[d] + 0.5f * (float) random.nextGaussian();
+        return vector;
+    }
+
+    String title(long noteId) {
+        return words(new SplittableRandom(seed ^ noteId), 3);
+    }
+
+    String content(long noteId) {
+        return words(new SplittableRandom(~seed ^ noteId), WORDS_PER_NOTE);
+    }
+
+    // A query made of corpus words: mostly mid-frequency, like real searches
+    String query(SplittableRandom random, int terms) {
+        StringBuilder query = new StringBuilder();
+        for (int t = 0; t < terms; t++) {
+            if (t > 0) query.append(' ');
+            query.append(vocabulary[10 + random.nextInt(500)]);
+        }
+        return query.toString();
+    }
+
+    private String words(SplittableRandom random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) text.append(' ');
+            text.append(vocabulary[zipfIndex(random.nextDouble())]);
+        }
+        return text.toString();
+    }
+
+    private int zipfIndex(double u) {
+        int index = Arrays.binarySearch(cumulativeWeights, u);
+        return Math.min(VOCABULARY - 1, index >= 0 ? index : -index - 1);
+    }
+
+    // Pronounceable, unique pseudo-word for a vocabulary index
+    private static String word(int index) {
+        String consonants = "bcdfghklmnprstvz";
+        String vowels = "aeiou";
+        StringBuilder word = new StringBuilder();
+        int n = index + 16;
+        while (n > 0) {
+            word.append(consonants.charAt(n % consonants.length()));
+            n /= consonants.length();
+            word.append(vowels.charAt(n % vowels.length()));
+            n /= vowels.length();
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package com.notes.web.app.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextChunkerTest {
+
+    private final TextChunker chunker = new TextChunker(8, 2);
+
+    @Test
+    void shortNotesAreOnePassageOfTheWholeText() {
+        assertEquals(List.of("Groceries milk and eggs"), chunker.passages("Groceries", " milk\n and  eggs "));
+    }
+
+    @Test
+    void longNotesBecomeOverlappingWindowsPrefixedWithTheTitle() {
+        // Title takes 1 of 8 words: 7 content words per window, advancing by 5
+        List<String> passages = chunker.passages("Trip", "a b c d e f g h i j k l");
+        assertEquals(List.of("Trip a b c d e f g", "Trip f g h i j k l"), passages);
+    }
+
+    @Test
+    void longTitlesAreCutToAQuarterOfTheWindow() {
+        List<String> passages = chunker.passages("one two three four", "a b c d e f g h i j");
+        assertTrue(passages.stream().allMatch(p -> p.startsWith("one two ") && !p.contains("three")), passages.toString());
+        assertEquals("one two a b c d e f", passages.get(0));
+    }
+}
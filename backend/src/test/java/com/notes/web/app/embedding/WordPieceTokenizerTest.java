@@ -0,0 +1,46 @@
+package com.notes.web.app.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WordPieceTokenizerTest {
+
+    private static final List<String> VOCAB = List.of(
+            "[PAD]", "[UNK]", "[CLS]", "[SEP]", "play", "##ing", "##s", "cafe", "note", ".", ",", "un", "##believ", "##able");
+
+    private final WordPieceTokenizer tokenizer = new WordPieceTokenizer(vocabulary());
+
+    @Test
+    void lowerCasesStripsAccentsAndSplitsPunctuation() {
+        assertEquals(List.of("cafe", ",", "notes", "."), tokenizer.basicTokens("  Café,\tNOTES. "));
+    }
+
+    @Test
+    void splitsWordsIntoLongestPieces() {
+        // [CLS] play ##ing un ##believ ##able note ##s [SEP]
+        assertArrayEquals(new long[]{2, 4, 5, 11, 12, 13, 8, 6, 3}, tokenizer.encode("Playing unbelievable notes", 64));
+    }
+
+    @Test
+    void unknownWordsBecomeOneUnknownToken() {
+        // "pla" + "x" has no matching pieces, so the whole word is [UNK]
+        assertArrayEquals(new long[]{2, 1, 8, 3}, tokenizer.encode("plax note", 64));
+    }
+
+    @Test
+    void truncatesToTheTokenLimitKeepingSpecialTokens() {
+        assertArrayEquals(new long[]{2, 4, 5, 3}, tokenizer.encode("playing notes cafe", 4));
+    }
+
+    private static Map<String, Integer> vocabulary() {
+        Map<String, Integer> vocabulary = new HashMap<>();
+        for (int i = 0; i < VOCAB.size(); i++) vocabulary.put(VOCAB.get(i), i);
+        return vocabulary;
+    }
+}
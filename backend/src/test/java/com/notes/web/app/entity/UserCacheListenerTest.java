@@ -0,0 +1,31 @@
+package com.notes.web.app.entity;
+
+import com.notes.web.app.config.CacheConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UserCacheListenerTest {
+
+    @Test
+    void savingAUserEvictsOnlyItsCredentials() {
+        CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.USER_DETAILS);
+        DefaultListableBeanFactory beans = new DefaultListableBeanFactory();
+        beans.registerSingleton("cacheManager", cacheManager);
+        Cache cache = cacheManager.getCache(CacheConfig.USER_DETAILS);
+        cache.put("alice", "old password hash");
+        cache.put("bob", "unchanged");
+
+        User alice = new User();
+        alice.setUsername("alice");
+        new UserCacheListener(beans.getBeanProvider(CacheManager.class)).evictCredentials(alice);
+
+        assertNull(cache.get("alice"));
+        assertNotNull(cache.get("bob"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.notes.web.app.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Raw latencies of one load stage, per endpoint. Every sample is kept (a stage is at most a few
+ * hundred thousand requests), so percentiles are exact rather than bucketed: p999 of a few
+ * thousand requests is only meaningful if the slowest few are not averaged away.
+ */
+final class LatencyRecorder {
+
+    static final String ALL = "all";
+
+    private final Map<String, Samples> byEndpoint = new ConcurrentSkipListMap<>();
+    private final Samples all = new Samples();
+
+    void record(String endpoint, long nanos, boolean failed) {
+        byEndpoint.computeIfAbsent(endpoint, e -> new Samples()).add(nanos, failed);
+        all.add(nanos, failed);
+    }
+
+    // One row per endpoint (sorted by name), then the "all" row; throughput is over the stage's measured seconds
+    List<EndpointStats> summarize(double seconds) {
+        List<EndpointStats> rows = new ArrayList<>();
+        byEndpoint.forEach((endpoint, samples) -> rows.add(samples.summarize(endpoint, seconds)));
+        rows.add(all.summarize(ALL, seconds));
+        return rows;
+    }
+
+    record EndpointStats(String endpoint, int requests, int errors, double throughput,
+                         double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+
+        double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+
+        // p50 | p99 | p999 | max, for SLO checks
+        double percentileMillis(String name) {
+            return switch (name) {
+                case "p50" -> p50Millis;
+                case "p99" -> p99Millis;
+                case "p999" -> p999Millis;
+                case "max" -> maxMillis;
+                default -> throw new IllegalArgumentException("Unknown percentile: " + name);
+            };
+        }
+    }
+
+    // Nearest-rank percentile of sorted samples (p in (0, 1])
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private static final class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void add(long latency, boolean failed) {
+            if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = latency;
+            if (failed) errors++;
+        }
+
+        synchronized EndpointStats summarize(String endpoint, double seconds) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return new EndpointStats(endpoint, size, errors, seconds > 0 ? size / seconds : 0,
+                    millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)),
+                    millis(percentile(sorted, 0.999)), millis(size == 0 ? 0 : sorted[size - 1]));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package com.notes.web.app.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notes.web.app.NotesApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end load test: starts a local embedding stub and the whole application (against a
+ * dedicated database on the local PostgreSQL), registers users, seeds their notes, then drives a
+ * weighted mix of /api/notes CRUD and search requests at each concurrency level in turn.
+ * Reports requests, errors, throughput and p50/p99/p999/max latency per endpoint and stage
+ * (console and CSV), and exits 1 if any SLO given with slo=... is missed, or 2 if the run itself
+ * failed (bad options, database or application startup, a failed seed).
+ *
+ * Run through the loadtest Maven profile; options are key=value pairs in loadtest.args (see
+ * {@link Options}), and --spring.property=value arguments are passed on to the application:
+ *
+ *   ./mvnw test -Ploadtest -Dloadtest.args="stages=1,8,32 stub-latency=80ms slo=search.p99=500ms"
+ *
+ * The client runs in the application's JVM, so absolute numbers include its CPU share; compare
+ * runs on the same machine rather than against production.
+ */
+public final class LoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String PASSWORD = "load-test-password";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int PAGE_SIZE = 20;
+
+    // Note text vocabulary; drawn with a skew so some words are common and others rare, as in real notes
+    private static final String[] WORDS = {
+            "meeting", "project", "budget", "review", "design", "deadline", "client", "report", "team", "plan",
+            "idea", "research", "draft", "schedule", "invoice", "travel", "recipe", "book", "garden", "workout",
+            "database", "release", "backlog", "feature", "bug", "deploy", "server", "latency", "migration", "api",
+            "kubernetes", "postgres", "index", "search", "embedding", "vector", "cache", "queue", "metrics", "alert",
+            "birthday", "groceries", "dentist", "flight", "hotel", "passport", "insurance", "mortgage", "tax", "gift",
+            "quarterly", "roadmap", "hiring", "interview", "onboarding", "retrospective", "architecture", "security",
+            "password", "backup", "holiday", "conference", "workshop", "newsletter", "podcast", "article", "summary"
+    };
+
+    private enum Operation {
+        LIST, GET, CREATE, UPDATE, DELETE, SEARCH;
+
+        String endpoint() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        boolean needsNote() {
+            return this == GET || this == UPDATE || this == DELETE;
+        }
+    }
+
+    private final Options options;
+    private final String baseUrl;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final List<Account> accounts = new ArrayList<>();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private LoadTest(Options options, String baseUrl) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.operations = options.mix().keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += options.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = run(Options.parse(args));
+        } catch (Exception e) {
+            // A run that never got to its SLO checks: say why on the summary's last line
+            System.out.println("Load test failed: " + describe(e));
+            exitCode = 2;
+        }
+        System.exit(exitCode); // the application context leaves non-daemon threads behind
+    }
+
+    // The exception and its causes on one line, e.g. "BeanCreationException: ... <- PSQLException: ..."
+    static String describe(Throwable error) {
+        List<String> parts = new ArrayList<>();
+        for (Throwable t = error; t != null && parts.size() < 5; t = t.getCause() == t ? null : t.getCause()) {
+            parts.add(t.getClass().getSimpleName() + (t.getMessage() != null ? ": " + t.getMessage() : ""));
+        }
+        return String.join(" <- ", parts);
+    }
+
+    private static int run(Options options) throws Exception {
+        prepareDatabase(options);
+        try (StubEmbeddingServer stub = new StubEmbeddingServer(options.stubLatency(), options.stubJitter(),
+                options.stubErrorRate(), options.stubThrottleRate());
+             ConfigurableApplicationContext app = startApp(options, stub)) {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            LoadTest test = new LoadTest(options, "http://localhost:" + port);
+
+            long started = System.nanoTime();
+            test.seed();
+            waitForEmbeddings(stub);
+            System.out.printf("Seeded %d users x %d notes in %.1f s%n",
+                    options.users(), options.notesPerUser(), (System.nanoTime() - started) / 1e9);
+
+            if (!options.warmup().isZero()) {
+                System.out.println("Warming up for " + options.warmup().toSeconds() + " s...");
+                test.runStage(options.stages().get(0), options.warmup());
+            }
+            List<StageResult> results = new ArrayList<>();
+            for (int concurrency : options.stages()) {
+                StageResult result = test.runStage(concurrency, options.stageDuration());
+                print(result);
+                results.add(result);
+            }
+
+            StubEmbeddingServer.Stats stubStats = stub.getStats();
+            System.out.printf("Embedding stub: %d requests, %d texts, %d injected errors, %d throttled%n",
+                    stubStats.requests(), stubStats.texts(), stubStats.errors(), stubStats.throttled());
+            System.out.println("Report written to " + writeCsv(results, options.reportDir()));
+
+            List<String> violations = checkSlos(results, options.slos());
+            violations.forEach(v -> System.out.println("SLO violated: " + v));
+            if (!options.slos().isEmpty() && violations.isEmpty()) System.out.println("All SLOs met");
+            return violations.isEmpty() ? 0 : 1;
+        }
+    }
+
+    // --- Setup ---
+
+    // The load test gets its own database so seeded users and notes never mix with development data
+    private static void prepareDatabase(Options options) throws Exception {
+        String url = "jdbc:postgresql://" + options.dbHost() + ":" + options.dbPort() + "/postgres";
+        try (Connection connection = DriverManager.getConnection(url, options.dbUser(), options.dbPassword());
+             Statement statement = connection.createStatement()) {
+            if (options.resetDatabase()) {
+                statement.execute("DROP DATABASE IF EXISTS \"" + options.database() + "\" WITH (FORCE)");
+            }
+            boolean exists;
+            try (PreparedStatement query = connection.prepareStatement("SELECT 1 FROM pg_database WHERE datname = ?")) {
+                query.setString(1, options.database());
+                exists = query.executeQuery().next();
+            }
+            if (!exists) {
+                statement.execute("CREATE DATABASE \"" + options.database() + "\"");
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApp(Options options, StubEmbeddingServer stub) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:postgresql://" + options.dbHost() + ":" + options.dbPort() + "/"
+                        + options.database() + "?reWriteBatchedInserts=true",
+                "--spring.datasource.username=" + options.dbUser(),
+                "--spring.datasource.password=" + options.dbPassword(),
+                "--embedding.provider=huggingface",
+                "--huggingface.api.url=" + stub.url(),
+                "--huggingface.api.key=load-test",
+                "--search.segment.dir=" + options.reportDir().resolve("vector-index"),
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        args.addAll(options.appArgs()); // later arguments win
+        System.setProperty("spring.devtools.restart.enabled", "false"); // devtools is on the test classpath
+        return new SpringApplicationBuilder(NotesApplication.class).run(args.toArray(String[]::new));
+    }
+
+    // Users are registered under a per-run prefix, so reruns against the same database never collide
+    private void seed() throws Exception {
+        String prefix = "lt" + Long.toString(System.currentTimeMillis(), 36);
+        try (ExecutorService seeders = Executors.newFixedThreadPool(4)) {
+            List<Future<Account>> pending = new ArrayList<>();
+            for (int i = 0; i < options.users(); i++) {
+                String username = prefix + "-" + i;
+                Random random = new Random(i);
+                pending.add(seeders.submit(() -> createAccount(username, random)));
+            }
+            for (Future<Account> account : pending) accounts.add(account.get());
+        }
+    }
+
+    private Account createAccount(String username, Random random) throws IOException, InterruptedException {
+        String credentials = MAPPER.writeValueAsString(Map.of("username", username, "password", PASSWORD));
+        expectOk(client.send(json("/api/auth/register", credentials).build(), HttpResponse.BodyHandlers.ofString()));
+        HttpResponse<String> login = expectOk(client.send(json("/api/auth/login", credentials).build(),
+                HttpResponse.BodyHandlers.ofString()));
+        // Session mode sets JSESSIONID, token mode AUTH_TOKEN; either way the cookies authenticate
+        String cookie = login.headers().allValues("Set-Cookie").stream()
+                .map(header -> header.split(";", 2)[0])
+                .collect(Collectors.joining("; "));
+        Account account = new Account(cookie);
+
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < options.notesPerUser(); i++) {
+            ndjson.append(MAPPER.writeValueAsString(Map.of("title", title(random), "content", content(random)))).append('\n');
+        }
+        expectOk(client.send(authorized(account, "/api/notes/import")
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson.toString())).build(), HttpResponse.BodyHandlers.ofString()));
+
+        HttpResponse<String> notes = expectOk(client.send(authorized(account, "/api/notes").GET().build(),
+                HttpResponse.BodyHandlers.ofString()));
+        for (JsonNode note : MAPPER.readTree(notes.body())) account.add(note.get("id").asLong());
+        return account;
+    }
+
+    // Imported notes are embedded in the background; measure only once the stub has gone quiet
+    private static void waitForEmbeddings(StubEmbeddingServer stub) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofMinutes(5).toNanos();
+        long last = -1;
+        while (System.nanoTime() < deadline) {
+            long requests = stub.getStats().requests();
+            if (requests == last) return;
+            last = requests;
+            Thread.sleep(2_000);
+        }
+        System.out.println("Embedding backlog still busy after 5 min; measuring anyway");
+    }
+
+    // --- Load ---
+
+    private StageResult runStage(int concurrency, Duration duration) throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        long started = System.nanoTime();
+        long deadline = started + duration.toNanos();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                Account account = accounts.get(i % accounts.size());
+                users.submit(() -> drive(account, deadline, recorder));
+            }
+        } // waits for the last in-flight requests, which count towards the stage's time
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return new StageResult(concurrency, recorder.summarize(seconds));
+    }
+
+    // One virtual user: back-to-back requests (plus think time) until the stage ends
+    private void drive(Account account, long deadline, LatencyRecorder recorder) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Operation operation = pick(random);
+            Long noteId = null;
+            if (operation.needsNote()) {
+                noteId = operation == Operation.DELETE ? account.take(random) : account.any(random);
+                if (noteId == null) operation = Operation.CREATE; // the account ran out of notes
+            }
+
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = execute(operation, account, noteId, random);
+            } catch (IOException e) {
+                ok = false; // timeouts and refused connections count as errors
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            recorder.record(operation.endpoint(), System.nanoTime() - start, !ok);
+
+            if (!options.thinkTime().isZero()) {
+                try {
+                    Thread.sleep(options.thinkTime());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (roll < cumulativeWeights[i]) return operations[i];
+        }
+        return operations[operations.length - 1];
+    }
+
+    private boolean execute(Operation operation, Account account, Long noteId, Random random)
+            throws IOException, InterruptedException {
+        HttpRequest request = switch (operation) {
+            case LIST -> authorized(account, "/api/notes/summaries?size=" + PAGE_SIZE).GET().build();
+            case GET -> authorized(account, "/api/notes/" + noteId).GET().build();
+            case CREATE -> authorized(account, "/api/notes").header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(noteJson(random))).build();
+            case UPDATE -> authorized(account, "/api/notes/" + noteId).header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(noteJson(random))).build();
+            case DELETE -> authorized(account, "/api/notes/" + noteId).DELETE().build();
+            case SEARCH -> authorized(account, "/api/notes/search/ranked?size=" + PAGE_SIZE + "&query="
+                    + URLEncoder.encode(word(random) + " " + word(random), StandardCharsets.UTF_8)).GET().build();
+        };
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        boolean ok = response.statusCode() < 400;
+        if (ok && operation == Operation.CREATE) account.add(MAPPER.readTree(response.body()).get("id").asLong());
+        return ok;
+    }
+
+    // --- Requests and synthetic content ---
+
+    private HttpRequest.Builder json(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private HttpRequest.Builder authorized(Account account, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).header("Cookie", account.cookie());
+    }
+
+    private static HttpResponse<String> expectOk(HttpResponse<String> response) {
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(response.request().uri().getPath() + " failed with "
+                    + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+
+    private static String noteJson(Random random) throws IOException {
+        return MAPPER.writeValueAsString(Map.of("title", title(random), "content", content(random)));
+    }
+
+    private static String title(Random random) {
+        return word(random) + " " + word(random);
+    }
+
+    // 20-200 words, the bulk of real notes
+    private static String content(Random random) {
+        int words = 20 + random.nextInt(181);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < words; i++) content.append(word(random)).append(i % 12 == 11 ? ".\n" : " ");
+        return content.toString();
+    }
+
+    // Squaring the uniform draw skews picks towards the start of the vocabulary
+    private static String word(Random random) {
+        double u = random.nextDouble();
+        return WORDS[(int) (u * u * WORDS.length)];
+    }
+
+    // --- Reporting ---
+
+    private record StageResult(int concurrency, List<LatencyRecorder.EndpointStats> endpoints) {
+    }
+
+    private static void print(StageResult result) {
+        System.out.printf("%nConcurrency %d%n", result.concurrency());
+        System.out.printf("%-8s %9s %7s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s",
+                "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (LatencyRecorder.EndpointStats row : result.endpoints()) {
+            System.out.printf(Locale.ROOT, "%-8s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", row.endpoint(), row.requests(),
+                    row.errors(), row.throughput(), row.p50Millis(), row.p99Millis(), row.p999Millis(), row.maxMillis());
+        }
+    }
+
+    private static Path writeCsv(List<StageResult> results, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("loadtest-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("concurrency,endpoint,requests,errors,throughput,p50_ms,p99_ms,p999_ms,max_ms");
+            for (StageResult result : results) {
+                for (LatencyRecorder.EndpointStats row : result.endpoints()) {
+                    out.printf(Locale.ROOT, "%d,%s,%d,%d,%.2f,%.3f,%.3f,%.3f,%.3f%n", result.concurrency(), row.endpoint(),
+                            row.requests(), row.errors(), row.throughput(), row.p50Millis(), row.p99Millis(),
+                            row.p999Millis(), row.maxMillis());
+                }
+            }
+        }
+        return file;
+    }
+
+    // Every SLO is checked at every stage; "*" SLOs apply to each endpoint and the "all" row
+    static List<String> checkSlos(List<StageResult> results, List<Slo> slos) {
+        List<String> violations = new ArrayList<>();
+        for (StageResult result : results) {
+            for (LatencyRecorder.EndpointStats row : result.endpoints()) {
+                for (Slo slo : slos) {
+                    if (!slo.endpoint().equals("*") && !slo.endpoint().equals(row.endpoint())) continue;
+                    if (slo.metric().equals("errors")) {
+                        if (row.errorRate() > slo.limit()) {
+                            violations.add(String.format(Locale.ROOT, "concurrency %d, %s: error rate %.2f%% > %.2f%%",
+                                    result.concurrency(), row.endpoint(), row.errorRate() * 100, slo.limit() * 100));
+                        }
+                    } else if (row.percentileMillis(slo.metric()) > slo.limit()) {
+                        violations.add(String.format(Locale.ROOT, "concurrency %d, %s: %s %.2f ms > %.0f ms",
+                                result.concurrency(), row.endpoint(), slo.metric(), row.percentileMillis(slo.metric()), slo.limit()));
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+
+    // Note ids the account owns, as far as this client knows; shared by the virtual users of the account
+    private record Account(String cookie, List<Long> noteIds) {
+
+        Account(String cookie) {
+            this(cookie, new ArrayList<>());
+        }
+
+        synchronized void add(long noteId) {
+            noteIds.add(noteId);
+        }
+
+        synchronized Long any(Random random) {
+            return noteIds.isEmpty() ? null : noteIds.get(random.nextInt(noteIds.size()));
+        }
+
+        // Removed before the DELETE is sent, so no other virtual user picks a note that is about to go
+        synchronized Long take(Random random) {
+            if (noteIds.isEmpty()) return null;
+            int i = random.nextInt(noteIds.size());
+            long noteId = noteIds.get(i);
+            noteIds.set(i, noteIds.get(noteIds.size() - 1));
+            noteIds.remove(noteIds.size() - 1);
+            return noteId;
+        }
+    }
+
+    /** An SLO: metric (p50, p99, p999, max in ms, or errors as a fraction) of one endpoint or "*" */
+    record Slo(String endpoint, String metric, double limit) {
+    }
+
+    /**
+     * Options, as key=value arguments (defaults in brackets):
+     * db-host [DB_HOST or localhost], db-port [DB_PORT or 5432], database [notes_loadtest],
+     * db-user [postgres], db-password [password], reset [false: true drops and recreates the database],
+     * users [16], notes-per-user [250], stages [1,4,16,64: concurrent virtual users per stage],
+     * warmup [10s], stage-duration [30s], think-time [0], mix [list:15,get:20,create:10,update:8,delete:7,search:40],
+     * stub-latency [40ms], stub-jitter [40ms], stub-error-rate [0.01], stub-throttle-rate [0],
+     * slo [none; e.g. search.p99=500ms,*.p999=2s,errors=1%], report-dir [target/loadtest].
+     */
+    record Options(String dbHost, int dbPort, String database, String dbUser, String dbPassword, boolean resetDatabase,
+                   int users, int notesPerUser, List<Integer> stages, Duration warmup, Duration stageDuration,
+                   Duration thinkTime, Map<Operation, Integer> mix, Duration stubLatency, Duration stubJitter,
+                   double stubErrorRate, double stubThrottleRate, List<Slo> slos, Path reportDir, List<String> appArgs) {
+
+        private static final Map<String, String> DEFAULTS = defaults();
+
+        private static Map<String, String> defaults() {
+            Map<String, String> defaults = new LinkedHashMap<>();
+            defaults.put("db-host", System.getenv().getOrDefault("DB_HOST", "localhost"));
+            defaults.put("db-port", System.getenv().getOrDefault("DB_PORT", "5432"));
+            defaults.put("database", "notes_loadtest");
+            defaults.put("db-user", "postgres");
+            defaults.put("db-password", "password");
+            defaults.put("reset", "false");
+            defaults.put("users", "16");
+            defaults.put("notes-per-user", "250");
+            defaults.put("stages", "1,4,16,64");
+            defaults.put("warmup", "10s");
+            defaults.put("stage-duration", "30s");
+            defaults.put("think-time", "0");
+            defaults.put("mix", "list:15,get:20,create:10,update:8,delete:7,search:40");
+            defaults.put("stub-latency", "40ms");
+            defaults.put("stub-jitter", "40ms");
+            defaults.put("stub-error-rate", "0.01");
+            defaults.put("stub-throttle-rate", "0");
+            defaults.put("slo", "");
+            defaults.put("report-dir", "target/loadtest");
+            return defaults;
+        }
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+            List<String> appArgs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--")) {
+                    appArgs.add(arg);
+                    continue;
+                }
+                int equals = arg.indexOf('=');
+                if (equals < 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+                    throw new IllegalArgumentException("Unknown option '" + arg + "'; expected key=value with key one of "
+                            + DEFAULTS.keySet() + ", or --application.property=value");
+                }
+                values.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+
+            String database = values.get("database");
+            if (!database.matches("[a-z][a-z0-9_]*")) {
+                throw new IllegalArgumentException("Database names are limited to lower-case letters, digits and _");
+            }
+            boolean reset = Boolean.parseBoolean(values.get("reset"));
+            if (reset && database.equals("notes_db")) {
+                throw new IllegalArgumentException("Refusing to drop the application's own database notes_db");
+            }
+            List<Integer> stages = Arrays.stream(values.get("stages").split(",")).map(String::trim).map(Integer::parseInt).toList();
+            if (stages.isEmpty() || stages.stream().anyMatch(c -> c < 1)) {
+                throw new IllegalArgumentException("Stages must be positive concurrency levels");
+            }
+            int users = Integer.parseInt(values.get("users"));
+            if (users < 1) throw new IllegalArgumentException("At least one user is needed");
+
+            return new Options(values.get("db-host"), Integer.parseInt(values.get("db-port")), database,
+                    values.get("db-user"), values.get("db-password"), reset, users,
+                    Integer.parseInt(values.get("notes-per-user")), stages, duration(values.get("warmup")),
+                    duration(values.get("stage-duration")), duration(values.get("think-time")), mix(values.get("mix")),
+                    duration(values.get("stub-latency")), duration(values.get("stub-jitter")),
+                    Double.parseDouble(values.get("stub-error-rate")), Double.parseDouble(values.get("stub-throttle-rate")),
+                    slos(values.get("slo")), Path.of(values.get("report-dir")), appArgs);
+        }
+
+        // 250ms, 30s, 2m, or a bare number of milliseconds
+        static Duration duration(String value) {
+            String v = value.trim();
+            if (v.endsWith("ms")) return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+            if (v.endsWith("s")) return Duration.ofMillis(Math.round(Double.parseDouble(v.substring(0, v.length() - 1)) * 1000));
+            if (v.endsWith("m")) return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)) * 60);
+            return Duration.ofMillis(Long.parseLong(v));
+        }
+
+        private static Map<Operation, Integer> mix(String value) {
+            Map<Operation, Integer> mix = new LinkedHashMap<>();
+            for (String entry : value.split(",")) {
+                String[] parts = entry.trim().split(":");
+                int weight = Integer.parseInt(parts[1]);
+                if (weight > 0) mix.put(Operation.valueOf(parts[0].toUpperCase(Locale.ROOT)), weight);
+            }
+            if (mix.isEmpty()) throw new IllegalArgumentException("The mix needs at least one operation with a positive weight");
+            return mix;
+        }
+
+        // endpoint.metric=limit or metric=limit (every endpoint); latency limits take durations, errors a % or fraction
+        static List<Slo> slos(String value) {
+            List<Slo> slos = new ArrayList<>();
+            for (String entry : value.split(",")) {
+                if (entry.isBlank()) continue;
+                String[] parts = entry.trim().split("=", 2);
+                if (parts.length != 2) throw new IllegalArgumentException("SLOs look like search.p99=500ms, not " + entry);
+                int dot = parts[0].lastIndexOf('.');
+                String endpoint = dot < 0 ? "*" : parts[0].substring(0, dot);
+                String metric = parts[0].substring(dot + 1);
+                double limit;
+                if (metric.equals("errors")) {
+                    limit = parts[1].endsWith("%")
+                            ? Double.parseDouble(parts[1].substring(0, parts[1].length() - 1)) / 100
+                            : Double.parseDouble(parts[1]);
+                } else if (List.of("p50", "p99", "p999", "max").contains(metric)) {
+                    limit = duration(parts[1]).toNanos() / 1_000_000.0;
+                } else {
+                    throw new IllegalArgumentException("Unknown SLO metric '" + metric + "' (p50, p99, p999, max or errors)");
+                }
+                slos.add(new Slo(endpoint, metric, limit));
+            }
+            return slos;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.notes.web.app.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Hugging Face feature-extraction endpoint: {"inputs": [...]} in, one
+ * 384-dimension vector per input out. Vectors are hashed bags of words, so notes that share
+ * words are close and semantic search returns sensible hits.
+ *
+ * Every request waits latency plus a uniform random share of jitter, then fails with a 503 with
+ * probability errorRate or a 429 with probability throttleRate, so the app's timeouts, retries
+ * and keyword fallback are exercised the way a slow or flaky provider would.
+ */
+final class StubEmbeddingServer implements AutoCloseable {
+
+    static final int DIMENSION = 384;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Duration latency;
+    private final Duration jitter;
+    private final double errorRate;
+    private final double throttleRate;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong texts = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    StubEmbeddingServer(Duration latency, Duration jitter, double errorRate, double throttleRate) throws IOException {
+        this.latency = latency;
+        this.jitter = jitter;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 256);
+        server.createContext("/", this::handle);
+        server.setExecutor(handlers); // sleeping handlers cost nothing, so latency never queues requests
+        server.start();
+    }
+
+    String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/embed";
+    }
+
+    Stats getStats() {
+        return new Stats(requests.get(), texts.get(), errors.get(), throttled.get());
+    }
+
+    record Stats(long requests, long texts, long errors, long throttled) {
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            JsonNode body = mapper.readTree(exchange.getRequestBody());
+            pause();
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < errorRate) {
+                errors.incrementAndGet();
+                respond(exchange, 503, "{\"error\":\"Model is currently loading\"}");
+                return;
+            }
+            if (roll < errorRate + throttleRate) {
+                throttled.incrementAndGet();
+                respond(exchange, 429, "{\"error\":\"Rate limit reached\"}");
+                return;
+            }
+
+            List<float[]> vectors = new ArrayList<>();
+            JsonNode inputs = body.path("inputs");
+            if (inputs.isArray()) {
+                inputs.forEach(input -> vectors.add(embed(input.asText())));
+            } else {
+                vectors.add(embed(inputs.asText()));
+            }
+            texts.addAndGet(vectors.size());
+            respond(exchange, 200, mapper.writeValueAsString(vectors));
+        }
+    }
+
+    private void pause() {
+        long nanos = latency.toNanos();
+        if (!jitter.isZero()) nanos += ThreadLocalRandom.current().nextLong(jitter.toNanos() + 1);
+        if (nanos <= 0) return;
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Hashed bag of words, normalised (a text without words still gets a non-zero vector)
+    static float[] embed(String text) {
+        float[] vector = new float[DIMENSION];
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            int hash = word.hashCode() * 0x9E3779B1;
+            vector[Math.floorMod(hash, DIMENSION)] += (hash & 0x100) == 0 ? 1 : -1;
+        }
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        if (norm == 0) {
+            vector[0] = 1;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) vector[i] *= scale;
+        return vector;
+    }
+}
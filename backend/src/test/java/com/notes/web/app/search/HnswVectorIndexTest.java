@@ -0,0 +1,123 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recall@10 of the HNSW index against an exact scan (FlatVectorIndex fed the same writes) on
+ * clustered vectors, through updates, deletes (tombstones) and the rebuild that drops them.
+ */
+class HnswVectorIndexTest {
+
+    private static final int DIM = 32;
+    private static final int K = 10;
+    private static final int QUERIES = 50;
+    private static final double MIN_RECALL = 0.95;
+
+    private final Random random = new Random(11);
+    private final float[][] centroids = centroids();
+    private final HnswVectorIndex hnsw = new HnswVectorIndex(DIM, 16, 100, 64);
+    private final FlatVectorIndex exact = new FlatVectorIndex(DIM);
+
+    @Test
+    void recallHoldsThroughUpdatesAndDeletes() {
+        for (long id = 0; id < 2_000; id++) upsert(1, id, vector());
+        assertRecall(1);
+
+        Set<Long> removed = new HashSet<>();
+        for (long id = 0; id < 2_000; id++) {
+            if (id % 4 == 0) upsert(1, id, vector()); // moved somewhere else in the space
+            if (id % 7 == 0) {
+                remove(id);
+                removed.add(id);
+            }
+            if (id % 11 == 0 && !removed.contains(id)) upsert(2, id, vector()); // now another user's note
+        }
+        assertEquals(exact.size(), hnsw.size());
+        assertRecall(1);
+        assertRecall(2);
+
+        // Tombstones still route searches but are never returned
+        for (int q = 0; q < QUERIES; q++) {
+            for (ScoredNote hit : hnsw.search(1, vector(), 100)) {
+                assertFalse(removed.contains(hit.noteId()), "deleted note " + hit.noteId() + " returned");
+                assertFalse(hit.noteId() % 11 == 0, "note " + hit.noteId() + " belongs to user 2 now");
+            }
+        }
+    }
+
+    @Test
+    void deletingMostNotesRebuildsTheGraph() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < 1_000; id++) {
+            upsert(1, id, vector());
+            ids.add(id);
+        }
+        long before = hnsw.memoryBytes();
+
+        // Past half tombstones the graph is rebuilt from the live vectors only
+        for (long id : ids.subList(0, 600)) remove(id);
+        assertEquals(400, hnsw.size());
+        assertTrue(hnsw.memoryBytes() < before / 2, "tombstones should be dropped by the rebuild");
+        assertRecall(1);
+
+        for (long id = 1_000; id < 1_300; id++) upsert(1, id, vector());
+        assertEquals(700, hnsw.size());
+        assertRecall(1);
+
+        for (long id : ids.subList(600, 1_000)) remove(id);
+        for (long id = 1_000; id < 1_300; id++) remove(id);
+        assertTrue(hnsw.isEmpty(1));
+        assertEquals(List.of(), hnsw.search(1, vector(), K));
+    }
+
+    private void upsert(long userId, long noteId, float[] vector) {
+        hnsw.upsert(userId, noteId, vector);
+        exact.upsert(userId, noteId, vector);
+    }
+
+    private void remove(long noteId) {
+        hnsw.remove(noteId);
+        exact.remove(noteId);
+    }
+
+    private void assertRecall(long userId) {
+        int found = 0;
+        int expectedTotal = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = vector();
+            Set<Long> expected = new HashSet<>();
+            exact.search(userId, query, K).forEach(hit -> expected.add(hit.noteId()));
+            expectedTotal += expected.size();
+            for (ScoredNote hit : hnsw.search(userId, query, K)) {
+                if (expected.contains(hit.noteId())) found++;
+            }
+        }
+        double recall = (double) found / expectedTotal;
+        assertTrue(recall >= MIN_RECALL, "recall@" + K + " of user " + userId + ": " + recall);
+    }
+
+    private float[][] centroids() {
+        float[][] centroids = new float[16][DIM];
+        for (float[] centroid : centroids) {
+            for (int d = 0; d < DIM; d++) centroid[d] = (float) random.nextGaussian();
+        }
+        return centroids;
+    }
+
+    private float[] vector() {
+        float[] centroid = centroids[random.nextInt(centroids.length)];
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) vector[d] = centroid[d] + 0.5f * (float) random.nextGaussian();
+        return vector;
+    }
+}
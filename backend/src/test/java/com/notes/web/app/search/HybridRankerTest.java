@@ -0,0 +1,114 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HybridRankerTest {
+
+    private static final int RRF_K = 60;
+
+    private final HybridRanker ranker = new HybridRanker(RRF_K, 1.0, 1.0, 0.2);
+
+    @Test
+    void fusesBothListsByReciprocalRank() {
+        List<ScoredNote> keyword = List.of(hit(1, 9.0), hit(2, 7.5), hit(3, 1.0));
+        List<ScoredNote> semantic = List.of(hit(3, 0.9), hit(1, 0.8), hit(4, 0.7));
+
+        HybridRanker.Ranking ranking = ranker.rank(keyword, semantic, 0, 10);
+
+        // 1: ranks 1 and 2, 3: ranks 3 and 1, 2: keyword rank 2 only, 4: semantic rank 3 only
+        assertEquals(List.of(1L, 3L, 2L, 4L), ids(ranking.hits()));
+        assertEquals(rrf(1) + rrf(2), ranking.hits().get(0).score(), 1e-12);
+        assertEquals(rrf(3) + rrf(1), ranking.hits().get(1).score(), 1e-12);
+        assertEquals(rrf(2), ranking.hits().get(2).score(), 1e-12);
+        assertEquals(rrf(3), ranking.hits().get(3).score(), 1e-12);
+        assertFalse(ranking.hasMore());
+
+        // The original scores ride along; a half that did not find the note leaves a null
+        HybridRanker.RankedNote first = ranking.hits().get(0);
+        assertEquals(9.0, first.keywordScore());
+        assertEquals(0.8, first.similarity());
+        assertNull(ranking.hits().get(2).similarity());
+        assertNull(ranking.hits().get(3).keywordScore());
+    }
+
+    @Test
+    void weightsAndTheSimilarityFloorApply() {
+        HybridRanker semanticHeavy = new HybridRanker(RRF_K, 1.0, 3.0, 0.2);
+        List<ScoredNote> keyword = List.of(hit(1, 5.0), hit(2, 4.0));
+        List<ScoredNote> semantic = List.of(hit(3, 0.5), hit(2, 0.15), hit(5, 0.1)); // 2 and 5 are below the floor
+
+        HybridRanker.Ranking ranking = semanticHeavy.rank(keyword, semantic, 0, 10);
+
+        // 3 at semantic rank 1 (weight 3) beats 1 at keyword rank 1; 2 keeps only its keyword rank
+        assertEquals(List.of(3L, 1L, 2L), ids(ranking.hits()));
+        assertEquals(3.0 / (RRF_K + 1), ranking.hits().get(0).score(), 1e-12);
+        assertEquals(rrf(2), ranking.hits().get(2).score(), 1e-12);
+        assertNull(ranking.hits().get(2).similarity());
+    }
+
+    @Test
+    void tiesGoToTheLowerNoteId() {
+        // 7 and 4 each hold rank 1 of one list
+        HybridRanker.Ranking ranking = ranker.rank(List.of(hit(7, 3.0)), List.of(hit(4, 0.9)), 0, 10);
+        assertEquals(List.of(4L, 7L), ids(ranking.hits()));
+    }
+
+    @Test
+    void pagesSliceOneRankingAndKnowWhetherMoreFollow() {
+        List<ScoredNote> keyword = new ArrayList<>();
+        List<ScoredNote> semantic = new ArrayList<>();
+        for (long id = 0; id < 23; id++) keyword.add(hit(id, 100 - id));
+        for (long id = 30; id > 10; id--) semantic.add(hit(id, 0.3 + id / 100.0));
+        // 31 distinct notes (0..30)
+        List<Long> all = ids(ranker.rank(keyword, semantic, 0, 100).hits());
+        assertEquals(31, all.size());
+
+        List<Long> paged = new ArrayList<>();
+        for (int page = 0; page < 4; page++) {
+            HybridRanker.Ranking ranking = ranker.rank(keyword, semantic, page * 10, 10);
+            paged.addAll(ids(ranking.hits()));
+            assertEquals(page < 3, ranking.hasMore(), "page " + page);
+        }
+        assertEquals(all, paged);
+
+        HybridRanker.Ranking exactlyFull = ranker.rank(keyword, semantic, 21, 10);
+        assertEquals(10, exactlyFull.hits().size());
+        assertFalse(exactlyFull.hasMore());
+        assertTrue(ranker.rank(keyword, semantic, 20, 10).hasMore());
+
+        HybridRanker.Ranking beyond = ranker.rank(keyword, semantic, 40, 10);
+        assertEquals(List.of(), beyond.hits());
+        assertFalse(beyond.hasMore());
+    }
+
+    @Test
+    void offsetsNeverWrapAround() {
+        List<ScoredNote> keyword = List.of(hit(1, 9.0), hit(2, 7.5));
+
+        HybridRanker.Ranking far = ranker.rank(keyword, List.of(), Integer.MAX_VALUE - 5, 10);
+        assertEquals(List.of(), far.hits());
+        assertFalse(far.hasMore());
+        assertThrows(IllegalArgumentException.class, () -> ranker.rank(keyword, List.of(), -10, 10));
+    }
+
+    private static double rrf(int rank) {
+        return 1.0 / (RRF_K + rank);
+    }
+
+    private static ScoredNote hit(long noteId, double score) {
+        return new ScoredNote(noteId, score);
+    }
+
+    private static List<Long> ids(List<HybridRanker.RankedNote> hits) {
+        return hits.stream().map(HybridRanker.RankedNote::noteId).toList();
+    }
+}
@@ -0,0 +1,230 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeywordIndexTest {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final long USER = 1;
+
+    private final KeywordIndex index = new KeywordIndex(K1, B);
+    private final SearchExecutor executor = new SearchExecutor(4, 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void scoresAreOkapiBm25() {
+        load(index, USER, List.of(
+                doc(1, "", "apple banana"),
+                doc(2, "", "apple apple cherry date"),
+                doc(3, "", "cherry")));
+
+        // 3 documents, 7 tokens: average length 7/3
+        double avgLength = 7.0 / 3;
+        double idfApple = Math.log(1 + (3 - 2 + 0.5) / (2 + 0.5));
+        List<ScoredNote> hits = index.search(USER, "apple", 10);
+
+        assertEquals(List.of(2L, 1L), ids(hits));
+        assertEquals(bm25(idfApple, 2, 4, avgLength), hits.get(0).score(), 1e-9);
+        assertEquals(bm25(idfApple, 1, 2, avgLength), hits.get(1).score(), 1e-9);
+
+        // Scores of several terms add up
+        double idfCherry = Math.log(1 + (3 - 2 + 0.5) / (2 + 0.5));
+        double both = index.search(USER, "apple cherry", 10).get(0).score();
+        assertEquals(bm25(idfApple, 2, 4, avgLength) + bm25(idfCherry, 1, 4, avgLength), both, 1e-9);
+    }
+
+    @Test
+    void rarerTermsAndTitleMatchesRankHigher() {
+        load(index, USER, List.of(
+                doc(1, "Weekly groceries", "milk eggs bread"),
+                doc(2, "Breakfast", "milk and cereal"),
+                doc(3, "Shopping", "milk bread groceries"),
+                doc(4, "Trip", "train tickets")));
+
+        // groceries: in the title of 1 (counted twice), in the content of 3
+        assertEquals(List.of(1L, 3L), ids(index.search(USER, "groceries", 10)));
+        // milk is in three notes, cereal only in one
+        assertEquals(2L, index.search(USER, "milk cereal", 10).get(0).noteId());
+        assertEquals(List.of(1L), ids(index.search(USER, "milk groceries", 1)));
+        assertEquals(List.of(), index.search(USER, "paris", 10));
+        assertEquals(List.of(), index.search(USER, " ,.; ", 10));
+        assertEquals(List.of(), index.search(2, "milk", 10)); // other users see nothing
+    }
+
+    @Test
+    void onlyTheLastTermMatchesAsAPrefix() {
+        load(index, USER, List.of(
+                doc(1, "Grocery list", "apples"),
+                doc(2, "Groceries", "pears"),
+                doc(3, "Todo", "call the grocer")));
+
+        assertEquals(List.of(1L, 2L, 3L), ids(index.search(USER, "groc", 10)).stream().sorted().toList());
+        assertEquals(List.of(1L), ids(index.search(USER, "grocery", 10)));
+        // "groc" is not the last term here, so it has to match a whole word
+        assertEquals(List.of(3L), ids(index.search(USER, "groc call", 10)));
+        assertEquals(List.of(1L), ids(index.search(USER, "list app", 10)));
+        assertEquals(List.of(), index.search(USER, "rocery", 10));
+    }
+
+    @Test
+    void updatesAndRemovesReplaceTheOldPostings() {
+        load(index, USER, List.of(doc(1, "Draft", "first version"), doc(2, "Other", "unrelated")));
+
+        index.upsert(USER, 1, "Final", "second version");
+        assertEquals(List.of(), index.search(USER, "first", 10));
+        assertEquals(List.of(), index.search(USER, "draft", 10));
+        assertEquals(List.of(1L), ids(index.search(USER, "second", 10)));
+        assertEquals(2, index.size());
+
+        index.upsert(USER, 3, "New", "second thoughts");
+        assertEquals(List.of(1L, 3L), ids(index.search(USER, "second", 10)).stream().sorted().toList());
+        assertEquals(3, index.size());
+
+        index.remove(USER, 1);
+        index.remove(USER, 1); // unknown notes are ignored
+        assertEquals(List.of(3L), ids(index.search(USER, "second", 10)));
+        assertEquals(List.of(), index.search(USER, "version", 10));
+        assertEquals(2, index.size());
+
+        // The BM25 statistics follow: the remaining notes score as in a fresh index
+        KeywordIndex fresh = new KeywordIndex(K1, B);
+        load(fresh, USER, List.of(doc(2, "Other", "unrelated"), doc(3, "New", "second thoughts")));
+        assertEquals(fresh.search(USER, "second unrelated", 10), index.search(USER, "second unrelated", 10));
+    }
+
+    @Test
+    void shardedPartitionsScoreLikeASingleOne() {
+        KeywordIndex sharded = new KeywordIndex(K1, B, 4, executor);
+        Random random = new Random(5);
+        List<String> vocabulary = new ArrayList<>();
+        for (int i = 0; i < 200; i++) vocabulary.add("term" + i);
+
+        List<KeywordIndex.Document> docs = new ArrayList<>();
+        for (long id = 0; id < 2_000; id++) docs.add(doc(id, words(random, vocabulary, 3), words(random, vocabulary, 30)));
+        load(index, USER, docs);
+        load(sharded, USER, docs);
+        for (long id = 0; id < 2_000; id += 3) {
+            String content = words(random, vocabulary, 20);
+            index.upsert(USER, id, "", content);
+            sharded.upsert(USER, id, "", content);
+        }
+        for (long id = 1; id < 2_000; id += 7) {
+            index.remove(USER, id);
+            sharded.remove(USER, id);
+        }
+
+        for (int q = 0; q < 20; q++) {
+            String query = words(random, vocabulary, 3) + " term1"; // the last term also matches term1x, term1xx
+            List<ScoredNote> expected = index.search(USER, query, 25);
+            List<ScoredNote> actual = sharded.search(USER, query, 25);
+            assertEquals(ids(expected), ids(actual), query);
+            for (int i = 0; i < expected.size(); i++) {
+                // Terms may be summed in another order, so allow for rounding
+                assertEquals(expected.get(i).score(), actual.get(i).score(), 1e-9, query);
+            }
+        }
+        assertEquals(index.size(), sharded.size());
+        assertTrue(executor.getStats().parallel() > 0, "large partitions should be scored in parallel");
+    }
+
+    @Test
+    void aLoadThatRacedAWriteIsDiscarded() {
+        // Writes before a user is loaded are dropped: the load reads them from the database
+        index.upsert(USER, 1, "Early", "before loading");
+        assertFalse(index.isLoaded(USER));
+        assertEquals(0, index.size());
+
+        long token = index.beginLoad(USER);
+        index.upsert(2, 9, "Other user", "does not matter"); // another user's write
+        index.upsert(USER, 2, "Late", "written after the notes were read");
+        assertFalse(index.completeLoad(USER, token, List.of(doc(1, "Early", "before loading"))));
+        assertFalse(index.isLoaded(USER));
+        assertEquals(List.of(), index.search(USER, "early", 10));
+
+        token = index.beginLoad(USER);
+        long otherToken = index.beginLoad(2);
+        index.remove(2, 9);
+        assertTrue(index.completeLoad(USER, token, List.of(
+                doc(1, "Early", "before loading"), doc(2, "Late", "written after the notes were read"))));
+        assertFalse(index.completeLoad(2, otherToken, List.of(doc(9, "Other user", "does not matter"))));
+        assertTrue(index.isLoaded(USER));
+        assertEquals(List.of(2L), ids(index.search(USER, "late", 10)));
+
+        // A second load never replaces the installed partition, which later writes keep current
+        index.upsert(USER, 3, "Kept", "up to date");
+        assertTrue(index.completeLoad(USER, index.beginLoad(USER), List.of(doc(1, "Stale", "copy"))));
+        assertEquals(List.of(3L), ids(index.search(USER, "kept", 10)));
+        assertEquals(List.of(), index.search(USER, "stale", 10));
+    }
+
+    @Test
+    void leastRecentlySearchedUsersAreDroppedPastTheNoteBudget() {
+        KeywordIndex bounded = new KeywordIndex(K1, B, 1, SearchExecutor.SEQUENTIAL, 4);
+        load(bounded, 1, List.of(doc(1, "One", "apple"), doc(2, "Two", "apple")));
+        load(bounded, 2, List.of(doc(3, "Three", "apple")));
+        assertEquals(3, bounded.size());
+
+        // User 1 searched last, so loading user 3 drops user 2
+        assertEquals(2, bounded.search(1, "apple", 10).size());
+        load(bounded, 3, List.of(doc(4, "Four", "apple"), doc(5, "Five", "apple")));
+        assertTrue(bounded.isLoaded(1));
+        assertFalse(bounded.isLoaded(2));
+        assertEquals(4, bounded.size());
+        assertEquals(2, bounded.loadedUsers());
+        assertEquals(1, bounded.evictions());
+
+        // Growing past the budget through writes drops the other user, never the one written to
+        bounded.upsert(3, 6, "Six", "apple");
+        assertFalse(bounded.isLoaded(1));
+        assertTrue(bounded.isLoaded(3));
+        assertEquals(3, bounded.size());
+        bounded.remove(1, 1); // a dropped user's writes are ignored until the next load
+        assertEquals(3, bounded.size());
+
+        // A dropped user is rebuilt on the next search, as on their first
+        assertEquals(List.of(), bounded.search(2, "apple", 10));
+        load(bounded, 2, List.of(doc(3, "Three", "apple")));
+        assertEquals(List.of(3L), ids(bounded.search(2, "apple", 10)));
+        assertEquals(4, bounded.size());
+    }
+
+    private static double bm25(double idf, int tf, int length, double avgLength) {
+        return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+    }
+
+    private static void load(KeywordIndex index, long userId, List<KeywordIndex.Document> docs) {
+        assertTrue(index.completeLoad(userId, index.beginLoad(userId), docs));
+    }
+
+    private static KeywordIndex.Document doc(long id, String title, String content) {
+        return new KeywordIndex.Document(id, title, content);
+    }
+
+    private static List<Long> ids(List<ScoredNote> hits) {
+        return hits.stream().map(ScoredNote::noteId).toList();
+    }
+
+    private static String words(Random random, List<String> vocabulary, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            // Skewed towards the first terms, like real text
+            int rank = (int) Math.min(vocabulary.size() - 1, Math.abs(random.nextGaussian()) * vocabulary.size() / 4);
+            text.append(vocabulary.get(rank)).append(' ');
+        }
+        return text.toString();
+    }
+}
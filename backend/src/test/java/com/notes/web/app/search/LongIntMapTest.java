@@ -0,0 +1,73 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongIntMapTest {
+
+    @Test
+    void randomPutsAndRemovesMatchAHashMap() {
+        for (int seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            long[] universe = new long[64];
+            for (int i = 0; i < universe.length; i++) universe[i] = random.nextLong() >> random.nextInt(60);
+            universe[0] = Long.MAX_VALUE;
+            universe[1] = 0;
+
+            LongIntMap map = new LongIntMap(4); // small, so it grows and probe runs collide
+            Map<Long, Integer> expected = new HashMap<>();
+            for (int op = 0; op < 2_000; op++) {
+                long key = universe[random.nextInt(universe.length)];
+                if (random.nextInt(10) < 6) {
+                    int value = random.nextInt(1_000);
+                    map.put(key, value);
+                    expected.put(key, value);
+                } else {
+                    assertEquals(expected.getOrDefault(key, -1).intValue(), map.remove(key), "seed " + seed);
+                    expected.remove(key);
+                }
+                assertEquals(expected.size(), map.size(), "seed " + seed);
+            }
+            for (long key : universe) {
+                assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key), "seed " + seed + ", key " + key);
+            }
+        }
+    }
+
+    @Test
+    void removalShiftsAProbeRunThatWrapsAroundTheTable() {
+        LongIntMap map = new LongIntMap(8); // 16 slots, no rehash below 10 entries
+        List<Long> endKeys = keysWithHome(map, 15, 3);
+        long startKey = keysWithHome(map, 0, 1).get(0);
+
+        // Run: slot 15, 0, 1 hold keys homed at 15; the key homed at 0 is pushed to slot 2
+        for (int i = 0; i < endKeys.size(); i++) map.put(endKeys.get(i), i);
+        map.put(startKey, 100);
+
+        assertEquals(0, map.remove(endKeys.get(0)));
+        assertEquals(-1, map.get(endKeys.get(0)));
+        assertEquals(1, map.get(endKeys.get(1)));
+        assertEquals(2, map.get(endKeys.get(2)));
+        assertEquals(100, map.get(startKey));
+
+        assertEquals(1, map.remove(endKeys.get(1)));
+        assertEquals(100, map.remove(startKey));
+        assertEquals(2, map.get(endKeys.get(2)));
+        assertEquals(1, map.size());
+    }
+
+    private static List<Long> keysWithHome(LongIntMap map, int home, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < count; key++) {
+            if (map.index(key) == home) keys.add(key);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,77 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PassageIndexTest {
+
+    private static final int DIM = 4;
+    private static final long USER_ID = 1;
+    private static final float[] QUERY = {1, 0, 0, 0};
+
+    @Test
+    void maxScoresANoteByItsBestPassage() {
+        PassageIndex index = index(PassageIndex.Aggregation.MAX);
+
+        List<ScoredNote> hits = index.search(USER_ID, QUERY, 2);
+        assertEquals(List.of(1L, 2L), hits.stream().map(ScoredNote::noteId).toList());
+        assertEquals(1.0, hits.get(0).score(), 1e-6);
+    }
+
+    @Test
+    void topKMeanFavoursNotesThatMatchInSeveralPlaces() {
+        PassageIndex index = index(PassageIndex.Aggregation.TOP_K_MEAN);
+
+        List<ScoredNote> hits = index.search(USER_ID, QUERY, 2);
+        assertEquals(List.of(2L, 1L), hits.stream().map(ScoredNote::noteId).toList());
+        assertEquals(0.9, hits.get(0).score(), 1e-6);
+        assertEquals(0.8, hits.get(1).score(), 1e-6);
+    }
+
+    @Test
+    void reindexingDropsPassagesTheNoteNoLongerHas() {
+        PassageIndex index = index(PassageIndex.Aggregation.MAX);
+        assertEquals(4, index.passageCount());
+
+        index.upsert(USER_ID, 1, List.of(new float[]{0, 0, 0, 1}));
+        assertEquals(3, index.passageCount());
+        index.remove(2);
+        assertEquals(1, index.passageCount());
+        assertEquals(1, index.size());
+        assertEquals(1L, index.search(USER_ID, QUERY, 5).get(0).noteId());
+    }
+
+    @Test
+    void hugeRequestsDoNotOverflowTheFetchSize() {
+        PassageIndex index = index(PassageIndex.Aggregation.MAX);
+
+        // k * oversample and the doubling used to wrap around to a fetch size of 0 and loop forever
+        for (int k : new int[]{1 << 29, 3 << 28, Integer.MAX_VALUE}) {
+            List<ScoredNote> hits = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> index.search(USER_ID, QUERY, k), "k = " + k);
+            assertEquals(List.of(1L, 2L), hits.stream().map(ScoredNote::noteId).toList());
+        }
+    }
+
+    @Test
+    void passageKeysRoundTrip() {
+        long key = PassageIndex.passageKey(123_456_789L, 1023);
+        assertEquals(123_456_789L, PassageIndex.noteId(key));
+        assertEquals(1023, PassageIndex.passage(key));
+    }
+
+    // Note 1: one exact match and one weak passage (cosine 1.0 and 0.6);
+    // note 2: two good passages (0.9 each)
+    private static PassageIndex index(PassageIndex.Aggregation aggregation) {
+        PassageIndex index = new PassageIndex(new FlatVectorIndex(DIM), aggregation, 2);
+        index.upsert(USER_ID, 1, List.of(new float[]{1, 0, 0, 0}, new float[]{0.6f, 0.8f, 0, 0}));
+        float[] good = {0.9f, 0, (float) Math.sqrt(0.19), 0};
+        index.upsert(USER_ID, 2, List.of(good, good.clone()));
+        return index;
+    }
+}
@@ -0,0 +1,102 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures what quantization costs in recall: recall@10 of QuantizedStore against the exact
+ * EmbeddingStore on clustered synthetic embeddings, with and without full-precision re-ranking.
+ */
+class QuantizedStoreRecallTest {
+
+    private static final int DIMENSION = 384;
+    private static final int NOTES = 20_000;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    private static final Map<Long, float[]> vectors = new HashMap<>();
+    private static final float[][] queries = new float[QUERIES][];
+    private static final EmbeddingStore exact = new EmbeddingStore(DIMENSION);
+
+    @BeforeAll
+    static void createCorpus() {
+        Random random = new Random(42);
+        float[][] centroids = new float[64][DIMENSION];
+        for (float[] centroid : centroids) {
+            for (int d = 0; d < DIMENSION; d++) centroid[d] = (float) random.nextGaussian();
+        }
+        for (long id = 0; id < NOTES; id++) {
+            float[] vector = nearCentroid(centroids[random.nextInt(centroids.length)], random);
+            vectors.put(id, vector);
+            exact.put(id, vector);
+        }
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = nearCentroid(centroids[random.nextInt(centroids.length)], random);
+        }
+    }
+
+    @Test
+    void int8KeepsRecallWithAQuarterOfTheMemory() {
+        double approximate = recall(new QuantizedStore(DIMENSION, Quantization.INT8, 1, null));
+        double reranked = recall(reranking(Quantization.INT8));
+        String summary = summary(Quantization.INT8, approximate, reranked);
+        assertTrue(approximate >= 0.90, summary);
+        assertTrue(reranked >= 0.99, summary);
+    }
+
+    @Test
+    void binaryNeedsReranking() {
+        double approximate = recall(new QuantizedStore(DIMENSION, Quantization.BINARY, 1, null));
+        double reranked = recall(reranking(Quantization.BINARY));
+        String summary = summary(Quantization.BINARY, approximate, reranked);
+        assertTrue(reranked >= 0.90, summary);
+        assertTrue(reranked > approximate, "re-ranking should improve binary recall; " + summary);
+    }
+
+    private static QuantizedStore reranking(Quantization quantization) {
+        return new QuantizedStore(DIMENSION, quantization, quantization.defaultRerankFactor(), QuantizedStoreRecallTest::load);
+    }
+
+    private static double recall(QuantizedStore store) {
+        vectors.forEach(store::put);
+        int found = 0;
+        for (float[] query : queries) {
+            Set<Long> expected = new HashSet<>();
+            exact.topK(query, K).forEach(hit -> expected.add(hit.noteId()));
+            List<ScoredNote> results = store.topK(query, K);
+            for (ScoredNote hit : results) {
+                if (expected.contains(hit.noteId())) found++;
+            }
+        }
+        return (double) found / (QUERIES * K);
+    }
+
+    // Assertion message; the figures worth comparing over time are in SemanticSearchBenchmark
+    private static String summary(Quantization quantization, double approximate, double reranked) {
+        int bytes = new QuantizedStore(DIMENSION, quantization, 1, null).bytesPerVector();
+        return String.format("%s: %d bytes/vector (float32: %d), recall@%d %.3f approximate, %.3f re-ranked x%d",
+                quantization, bytes, DIMENSION * Float.BYTES, K, approximate, reranked,
+                quantization.defaultRerankFactor());
+    }
+
+    private static Map<Long, float[]> load(Iterable<Long> noteIds) {
+        Map<Long, float[]> loaded = new HashMap<>();
+        for (Long id : noteIds) loaded.put(id, vectors.get(id));
+        return loaded;
+    }
+
+    private static float[] nearCentroid(float[] centroid, Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) vector[d] = centroid[d] + 0.5f * (float) random.nextGaussian();
+        return vector;
+    }
+}
@@ -0,0 +1,108 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchExecutorTest {
+
+    private static final int DIM = 16;
+
+    private final SearchExecutor executor = new SearchExecutor(4, 1, 100);
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void parallelScanReturnsTheSequentialResult() {
+        Random random = new Random(3);
+        EmbeddingStore sequential = new EmbeddingStore(DIM);
+        EmbeddingStore parallel = new EmbeddingStore(DIM, executor);
+        for (long id = 0; id < 5_000; id++) {
+            float[] vector = vector(random);
+            sequential.put(id, vector);
+            parallel.put(id, vector);
+        }
+
+        float[] query = vector(random);
+        assertEquals(sequential.topK(query, 50), parallel.topK(query, 50));
+        assertEquals(1, executor.getStats().parallel());
+    }
+
+    @Test
+    void shardedKeywordIndexScoresLikeASingleShard() {
+        Random random = new Random(5);
+        String[] words = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+        List<KeywordIndex.Document> documents = new ArrayList<>();
+        for (long id = 0; id < 2_000; id++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 5 + random.nextInt(20); i++) content.append(words[random.nextInt(words.length)]).append(' ');
+            documents.add(new KeywordIndex.Document(id, words[random.nextInt(words.length)], content.toString()));
+        }
+        KeywordIndex single = new KeywordIndex(1.2, 0.75);
+        KeywordIndex sharded = new KeywordIndex(1.2, 0.75, 8, executor);
+        single.completeLoad(1, single.beginLoad(1), documents);
+        sharded.completeLoad(1, sharded.beginLoad(1), documents);
+
+        for (String query : List.of("alpha gamma", "the", "delta e")) {
+            List<ScoredNote> expected = single.search(1, query, 20);
+            List<ScoredNote> actual = sharded.search(1, query, 20);
+            assertEquals(expected.stream().map(ScoredNote::noteId).toList(), actual.stream().map(ScoredNote::noteId).toList(), query);
+            for (int i = 0; i < expected.size(); i++) assertEquals(expected.get(i).score(), actual.get(i).score(), 1e-9);
+        }
+        assertTrue(executor.getStats().parallel() > 0);
+    }
+
+    @Test
+    void searchesBeyondTheAdmissionLimitRunOnTheirOwnThread() throws Exception {
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<ScoredNote>> first = CompletableFuture.supplyAsync(() -> executor.topK(1_000, 1, (from, to, best) -> {
+            if (from == 0) {
+                holding.countDown();
+                await(release);
+            }
+            best.offer(from, 1);
+        }));
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        // The only admission slot is taken: this search is scored entirely on the calling thread
+        Thread caller = Thread.currentThread();
+        List<ScoredNote> second = executor.topK(1_000, 1, (from, to, best) -> {
+            assertEquals(caller, Thread.currentThread());
+            assertEquals(0, from);
+            assertEquals(1_000, to);
+            best.offer(7, 1);
+        });
+        release.countDown();
+
+        assertEquals(7L, second.get(0).noteId());
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).size());
+        assertEquals(1, executor.getStats().shed());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static float[] vector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) vector[i] = (float) random.nextGaussian();
+        return vector;
+    }
+}
@@ -0,0 +1,118 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedVectorIndexTest {
+
+    private static final int DIM = 8;
+    private static final int FLUSH_ROWS = 50;
+    private static final int MAX_SEGMENTS = 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopensWithTheSameContentFromSegmentsAndLog() throws Exception {
+        Random random = new Random(7);
+        FlatVectorIndex expected = new FlatVectorIndex(DIM);
+        try (SegmentedVectorIndex index = open()) {
+            // 230 writes: four flushed segments plus a log tail, with updates and deletes across them
+            for (int i = 0; i < 230; i++) {
+                long noteId = random.nextInt(120);
+                if (i % 7 == 0) {
+                    index.remove(noteId);
+                    expected.remove(noteId);
+                } else {
+                    float[] vector = vector(random);
+                    index.upsert(noteId % 3, noteId, vector);
+                    expected.upsert(noteId % 3, noteId, vector);
+                }
+            }
+            assertTrue(index.segmentCount() > 1);
+        }
+
+        try (SegmentedVectorIndex reopened = open()) {
+            assertEquals(expected.size(), reopened.size());
+            assertSameResults(expected, reopened, random);
+
+            reopened.mergeIfNeeded();
+            assertEquals(1, reopened.segmentCount());
+            assertEquals(expected.size(), reopened.size());
+            assertSameResults(expected, reopened, random);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(3, files.count(), "merged segment, log and manifest only"); // old segments deleted
+        }
+    }
+
+    @Test
+    void aTornLogRecordIsDroppedOnReplay() throws Exception {
+        try (SegmentedVectorIndex index = open()) {
+            index.upsert(1, 1, new float[]{1, 0, 0, 0, 0, 0, 0, 0});
+            index.upsert(1, 2, new float[]{0, 1, 0, 0, 0, 0, 0, 0});
+        }
+        Path log;
+        try (Stream<Path> files = Files.list(directory)) {
+            log = files.filter(f -> f.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+        }
+        Files.write(log, new byte[]{WriteAheadLog.UPSERT, 1, 2, 3}, StandardOpenOption.APPEND); // a crash mid-write
+
+        try (SegmentedVectorIndex reopened = open()) {
+            assertEquals(2, reopened.size());
+            reopened.upsert(1, 3, new float[]{0, 0, 1, 0, 0, 0, 0, 0});
+        }
+        try (SegmentedVectorIndex reopened = open()) {
+            assertEquals(3, reopened.size());
+            assertEquals(3L, reopened.search(1, new float[]{0, 0, 1, 0, 0, 0, 0, 0}, 1).get(0).noteId());
+        }
+    }
+
+    @Test
+    void passageCountsAreRecoveredFromTheReopenedIndex() throws IOException {
+        try (SegmentedVectorIndex index = open()) {
+            PassageIndex passages = new PassageIndex(index, PassageIndex.Aggregation.MAX, 1);
+            passages.upsert(1, 10, List.of(vector(new Random(1)), vector(new Random(2)), vector(new Random(3))));
+            passages.upsert(1, 11, List.of(vector(new Random(4))));
+        }
+        try (SegmentedVectorIndex index = open()) {
+            PassageIndex passages = new PassageIndex(index, PassageIndex.Aggregation.MAX, 1);
+            assertEquals(2, passages.size());
+            assertEquals(3, passages.passageCount(10));
+
+            passages.upsert(1, 10, List.of(vector(new Random(5))));
+            assertEquals(2, passages.passageCount()); // the two extra passages were removed
+        }
+    }
+
+    private SegmentedVectorIndex open() {
+        return new SegmentedVectorIndex(directory, DIM, FLUSH_ROWS, MAX_SEGMENTS, Duration.ofHours(1), false);
+    }
+
+    private static void assertSameResults(VectorIndex expected, VectorIndex actual, Random random) {
+        for (long userId = 0; userId < 3; userId++) {
+            float[] query = vector(random);
+            List<ScoredNote> want = expected.search(userId, query, 200);
+            List<ScoredNote> got = actual.search(userId, query, 200);
+            assertEquals(want.stream().map(ScoredNote::noteId).toList(), got.stream().map(ScoredNote::noteId).toList());
+        }
+    }
+
+    private static float[] vector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) vector[i] = (float) random.nextGaussian();
+        return vector;
+    }
+}
@@ -0,0 +1,91 @@
+package com.notes.web.app.search;
+
+import jdk.incubator.vector.VectorShape;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The SIMD kernel against a plain loop, for every length up to a few vector steps past the
+ * unrolled loop and at non-zero offsets. The arrays end exactly where the compared range does,
+ * so a read past the end fails with an out-of-bounds exception instead of going unnoticed.
+ *
+ * Runs on the preferred shape and on the 128- and 64-bit ones, as on NEON or SSE-only CPUs,
+ * where int8 codes take more than one widening step per load.
+ */
+class SimdDotKernelTest {
+
+    private final Random random = new Random(17);
+
+    static Stream<VectorShape> shapes() {
+        return Stream.of(VectorShape.preferredShape(), VectorShape.S_128_BIT, VectorShape.S_64_BIT).distinct();
+    }
+
+    @ParameterizedTest
+    @MethodSource("shapes")
+    void floatDotMatchesAScalarLoop(VectorShape shape) {
+        SimdDotKernel kernel = new SimdDotKernel(shape);
+        int step = shape.vectorBitSize() / Float.SIZE;
+        for (int length = 0; length <= 5 * step + 3; length++) {
+            for (int offset : new int[]{0, 1, step + 3}) {
+                float[] a = floats(offset + length);
+                float[] b = floats(offset + length + 1); // b offset by one more
+                double expected = 0;
+                for (int i = 0; i < length; i++) expected += (double) a[offset + i] * b[offset + 1 + i];
+
+                float actual = kernel.dot(a, offset, b, offset + 1, length);
+                assertEquals(expected, actual, 1e-4 * Math.max(1, length), "length " + length + ", offset " + offset);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("shapes")
+    void oddNumbersOfStepsStayInBounds(VectorShape shape) {
+        SimdDotKernel kernel = new SimdDotKernel(shape);
+        int step = shape.vectorBitSize() / Float.SIZE;
+        // 1, 3 and 5 steps: one step is left over after the two-accumulator loop
+        for (int steps = 1; steps <= 5; steps += 2) {
+            int length = steps * step;
+            float[] a = new float[length];
+            float[] b = new float[length];
+            Arrays.fill(a, 1);
+            Arrays.fill(b, 2);
+            assertEquals(2f * length, kernel.dot(a, 0, b, 0, length), "steps " + steps);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("shapes")
+    void int8DotMatchesAScalarLoopExactly(VectorShape shape) {
+        SimdDotKernel kernel = new SimdDotKernel(shape);
+        int step = Math.max(8, shape.vectorBitSize() / Integer.SIZE); // bytes per load
+        for (int length = 0; length <= 5 * step + 3; length++) {
+            for (int offset : new int[]{0, 1, step + 3}) {
+                byte[] a = bytes(offset + length);
+                byte[] b = bytes(offset + length);
+                int expected = 0;
+                for (int i = 0; i < length; i++) expected += a[offset + i] * b[offset + i];
+
+                assertEquals(expected, kernel.int8Dot(a, offset, b, offset, length), "length " + length + ", offset " + offset);
+            }
+        }
+    }
+
+    private float[] floats(int size) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) values[i] = (float) random.nextGaussian();
+        return values;
+    }
+
+    private byte[] bytes(int size) {
+        byte[] values = new byte[size];
+        random.nextBytes(values);
+        return values;
+    }
+}
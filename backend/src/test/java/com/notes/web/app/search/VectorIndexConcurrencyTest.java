@@ -0,0 +1,152 @@
+package com.notes.web.app.search;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Parallel create / search / delete against every index implementation
+class VectorIndexConcurrencyTest {
+
+    private static final int DIM = 32;
+    private static final int USERS = 4;
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int NOTES_PER_WRITER = 400;
+    private static final long RUN_MILLIS = 2_000;
+
+    static Stream<Arguments> indexes() {
+        return Stream.of(
+                Arguments.of("flat", (Supplier<VectorIndex>) () -> new FlatVectorIndex(DIM)),
+                Arguments.of("hnsw", (Supplier<VectorIndex>) () -> new HnswVectorIndex(DIM, 8, 32, 32)),
+                // Small flushes and frequent merges, so both race the writers and readers
+                Arguments.of("segment", (Supplier<VectorIndex>) () -> new SegmentedVectorIndex(tempDirectory(), DIM, 200, 2,
+                        Duration.ofMillis(50), false)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("indexes")
+    void survivesParallelCreateSearchDelete(String name, Supplier<VectorIndex> factory) throws Exception {
+        VectorIndex index = factory.get();
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong searches = new AtomicLong();
+        Map<Long, Long> expectedOwner = new ConcurrentHashMap<>();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            futures.add(pool.submit(() -> {
+                // Each writer owns a disjoint id range and tracks what should survive
+                Random random = new Random(writer);
+                long firstId = (long) writer * NOTES_PER_WRITER;
+                Set<Long> live = new HashSet<>();
+                start.await();
+                while (!stop.get()) {
+                    long noteId = firstId + random.nextInt(NOTES_PER_WRITER);
+                    if (random.nextInt(4) == 0) {
+                        index.remove(noteId);
+                        live.remove(noteId);
+                    } else {
+                        index.upsert(ownerOf(noteId), noteId, randomVector(random));
+                        live.add(noteId);
+                    }
+                }
+                live.forEach(id -> expectedOwner.put(id, ownerOf(id)));
+                return null;
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            int reader = r;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(100 + reader);
+                start.await();
+                while (!stop.get()) {
+                    long userId = random.nextInt(USERS);
+                    List<ScoredNote> results = index.search(userId, randomVector(random), 10);
+                    assertConsistent(userId, results, 10);
+                    searches.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        Thread.sleep(RUN_MILLIS);
+        stop.set(true);
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS); // rethrows any assertion failure from the workers
+        }
+        pool.shutdown();
+
+        assertTrue(searches.get() > 0, name + ": no searches completed");
+        assertEquals(expectedOwner.size(), index.size(), name + ": index size after the run");
+        for (long userId = 0; userId < USERS; userId++) {
+            long expected = expectedOwner.values().stream().filter(Long.valueOf(userId)::equals).count();
+            List<ScoredNote> all = index.search(userId, randomVector(new Random(userId)), WRITERS * NOTES_PER_WRITER);
+            assertConsistent(userId, all, WRITERS * NOTES_PER_WRITER);
+            if (index instanceof FlatVectorIndex || index instanceof SegmentedVectorIndex) {
+                assertEquals(expected, all.size(), name + ": exact index must return every live note of user " + userId);
+            }
+            all.forEach(hit -> assertTrue(expectedOwner.containsKey(hit.noteId()), name + ": deleted note returned: " + hit.noteId()));
+        }
+    }
+
+    private static Path tempDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("vector-index");
+            directory.toFile().deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long ownerOf(long noteId) {
+        return noteId % USERS;
+    }
+
+    private static void assertConsistent(long userId, List<ScoredNote> results, int k) {
+        if (results.size() > k) fail("more than k results: " + results.size());
+        Set<Long> seen = new HashSet<>();
+        double previous = Double.POSITIVE_INFINITY;
+        for (ScoredNote hit : results) {
+            if (ownerOf(hit.noteId()) != userId) fail("note " + hit.noteId() + " leaked into user " + userId);
+            if (!seen.add(hit.noteId())) fail("duplicate note " + hit.noteId());
+            if (!Double.isFinite(hit.score()) || hit.score() > previous + 1e-6) fail("bad ordering at " + hit);
+            previous = hit.score();
+        }
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) vector[i] = (float) random.nextGaussian();
+        return vector;
+    }
+}
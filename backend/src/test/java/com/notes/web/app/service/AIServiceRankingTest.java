@@ -0,0 +1,60 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.embedding.EmbeddingProvider;
+import com.notes.web.app.embedding.TextChunker;
+import com.notes.web.app.search.FlatVectorIndex;
+import com.notes.web.app.search.HybridRanker;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.KeywordIndex;
+import com.notes.web.app.search.PassageIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AIServiceRankingTest {
+
+    private static final long USER_ID = 1L;
+    private static final int NOTES = 300; // far more matches than a page or the semantic candidates
+
+    @Test
+    void unpagedRankingKeepsEveryKeywordMatch() {
+        EmbeddingProvider disabled = new EmbeddingProvider() {
+            @Override
+            public Mono<List<float[]>> embed(List<String> texts) {
+                return Mono.just(List.of());
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+        };
+        KeywordIndex keywordIndex = new KeywordIndex(1.2, 0.75);
+        List<KeywordIndex.Document> docs = new ArrayList<>();
+        for (long id = 1; id <= NOTES; id++) docs.add(new KeywordIndex.Document(id, "Note " + id, "milk"));
+        docs.add(new KeywordIndex.Document(NOTES + 1, "Other", "eggs"));
+        keywordIndex.completeLoad(USER_ID, keywordIndex.beginLoad(USER_ID), docs);
+
+        AIService aiService = new AIService(disabled,
+                new PassageIndex(new FlatVectorIndex(AIService.EMBEDDING_DIM), PassageIndex.Aggregation.MAX, 1),
+                new IndexReadiness(), new TextChunker(150, 30), null, null, new QueryEmbeddingCache(10, Duration.ofMinutes(1)),
+                keywordIndex, new HybridRanker(60, 1.0, 1.0, 0.2), Duration.ofMillis(100), new SimpleMeterRegistry());
+
+        HybridRanker.Ranking all = aiService.rankAllNotes("milk", USER_ID);
+        assertEquals(NOTES, all.hits().size());
+        assertFalse(all.hasMore());
+
+        HybridRanker.Ranking page = aiService.rankNotes("milk", USER_ID, 0, 20);
+        assertEquals(20, page.hits().size());
+        assertTrue(page.hasMore());
+        assertEquals(all.hits().subList(0, 20), page.hits());
+    }
+}
@@ -0,0 +1,78 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.embedding.EmbeddingProvider;
+import com.notes.web.app.embedding.TextChunker;
+import com.notes.web.app.search.FlatVectorIndex;
+import com.notes.web.app.search.HybridRanker;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.KeywordIndex;
+import com.notes.web.app.search.PassageIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AIServiceTimeoutTest {
+
+    private static final long USER_ID = 1L;
+
+    @Test
+    void slowEmbeddingFallsBackToKeywordsWithinBudget() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicInteger calls = new AtomicInteger();
+        EmbeddingProvider hanging = new EmbeddingProvider() {
+            @Override
+            public Mono<List<float[]>> embed(List<String> texts) {
+                calls.incrementAndGet();
+                return Mono.<List<float[]>>never().doOnCancel(() -> cancelled.set(true));
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return true;
+            }
+        };
+
+        KeywordIndex keywordIndex = new KeywordIndex(1.2, 0.75);
+        keywordIndex.completeLoad(USER_ID, keywordIndex.beginLoad(USER_ID), List.of(
+                new KeywordIndex.Document(1, "Groceries", "milk and eggs"),
+                new KeywordIndex.Document(2, "Trip", "pack the tent")));
+        PassageIndex passageIndex = new PassageIndex(new FlatVectorIndex(AIService.EMBEDDING_DIM), PassageIndex.Aggregation.MAX, 1);
+        float[] vector = new float[AIService.EMBEDDING_DIM];
+        vector[0] = 1;
+        passageIndex.upsert(USER_ID, 2L, List.of(vector));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AIService aiService = new AIService(hanging, passageIndex, new IndexReadiness(), new TextChunker(150, 30), null, null, new QueryEmbeddingCache(10, Duration.ofMinutes(1)),
+                keywordIndex, new HybridRanker(60, 1.0, 1.0, 0.2), Duration.ofMillis(100), registry);
+
+        long start = System.nanoTime();
+        HybridRanker.Ranking ranking = aiService.rankNotes("milk", USER_ID, 0, 10);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 2_000, "search should give up on the embedding, took " + elapsedMs + " ms");
+        assertTrue(cancelled.get(), "the embedding request should be cancelled");
+        assertEquals(1, ranking.hits().size());
+        assertFalse(ranking.hasMore());
+        assertEquals(1L, ranking.hits().get(0).noteId());
+        assertNull(ranking.hits().get(0).similarity());
+
+        // Timeouts are not cached: the next search asks the provider again
+        aiService.rankNotes("milk", USER_ID, 0, 10);
+        assertEquals(2, calls.get());
+
+        // Both show up as cancelled embedding calls and keyword-only searches
+        assertEquals(2, registry.get("embedding.requests").tag("outcome", "cancelled").timer().count());
+        assertEquals(2, registry.get("search.keyword_only").counter().count());
+        assertEquals(2, registry.get("search.phase").tag("phase", "keyword").timer().count());
+    }
+}
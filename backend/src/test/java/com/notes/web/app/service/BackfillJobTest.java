@@ -0,0 +1,267 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.entity.BackfillCheckpoint;
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.User;
+import com.notes.web.app.repository.BackfillCheckpointRepository;
+import com.notes.web.app.repository.NoteEmbeddingRepository;
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.search.FlatVectorIndex;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.PassageIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BackfillJobTest {
+
+    private static final int NOTES = 1000;
+    private static final int PAGE_SIZE = 50;
+
+    private final AtomicReference<BackfillCheckpoint> saved = new AtomicReference<>();
+    private final IndexReadiness indexReadiness = new IndexReadiness();
+    private NoteRepository noteRepository;
+    private BackfillCheckpointRepository checkpointRepository;
+    private AIService aiService;
+    private EmbeddingPipeline embeddingPipeline;
+    private PassageIndex passageIndex;
+    private BackfillJob job;
+
+    @BeforeEach
+    void setUp() {
+        // Notes 1..NOTES; user 1 owns ids <= 100, user 2 the rest
+        noteRepository = mock(NoteRepository.class);
+        when(noteRepository.findMaxId()).thenReturn((long) NOTES);
+        when(noteRepository.findLastNoteIdPerUser(0)).thenReturn(List.of(new Object[]{1L, 100L}, new Object[]{2L, (long) NOTES}));
+        when(noteRepository.findPageAfter(anyLong(), anyLong(), any())).thenAnswer(call -> {
+            long after = call.getArgument(0);
+            long max = call.getArgument(1);
+            Pageable limit = call.getArgument(2);
+            return LongStream.rangeClosed(after + 1, Math.min(max, after + limit.getPageSize())).mapToObj(this::note).toList();
+        });
+        NoteEmbeddingRepository noteEmbeddingRepository = mock(NoteEmbeddingRepository.class);
+        when(noteEmbeddingRepository.findAllById(any())).thenReturn(List.of());
+
+        checkpointRepository = mock(BackfillCheckpointRepository.class);
+        when(checkpointRepository.findById(BackfillJob.NAME)).thenAnswer(call -> Optional.ofNullable(saved.get()));
+        when(checkpointRepository.save(any())).thenAnswer(call -> {
+            saved.set(call.getArgument(0));
+            return call.getArgument(0);
+        });
+
+        // Even notes have a current stored embedding, odd ones need embedding
+        aiService = mock(AIService.class);
+        when(aiService.restoreEmbedding(any(), any())).thenAnswer(call -> call.<Note>getArgument(0).getId() % 2 == 0);
+        embeddingPipeline = pipeline();
+
+        passageIndex = new PassageIndex(new FlatVectorIndex(4), PassageIndex.Aggregation.MAX, 1);
+        job = new BackfillJob(noteRepository, noteEmbeddingRepository, checkpointRepository, aiService, embeddingPipeline,
+                passageIndex, indexReadiness, PAGE_SIZE, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.stop();
+    }
+
+    @Test
+    void loadsEveryNoteOnceAndCheckpointsToTheEnd() throws Exception {
+        job.startOnBoot();
+        BackfillJob.Status status = awaitState(BackfillCheckpoint.State.COMPLETED);
+
+        assertEquals(NOTES, status.lastNoteId());
+        assertEquals(NOTES / PAGE_SIZE, status.pagesCompleted());
+        assertEquals(NOTES / 2, status.restored());
+        assertEquals(NOTES / 2, status.queued());
+        verify(aiService, times(NOTES)).restoreEmbedding(any(), any());
+        verify(embeddingPipeline, times(NOTES / 2)).submit(any());
+        assertTrue(indexReadiness.isReady(1L) && indexReadiness.isReady(2L));
+        assertEquals(BackfillCheckpoint.State.COMPLETED, saved.get().getState());
+    }
+
+    @Test
+    void notesTheIndexAlreadyHoldsAreNotLoadedAgain() throws Exception {
+        // Notes up to 500 survived the restart in their current version (segment index)
+        when(aiService.isIndexed(any(), any())).thenAnswer(call -> call.<Note>getArgument(0).getId() <= 500);
+
+        job.startOnBoot();
+        BackfillJob.Status status = awaitState(BackfillCheckpoint.State.COMPLETED);
+
+        assertEquals(500 + 250, status.restored());
+        assertEquals(250, status.queued());
+        verify(aiService, times(500)).restoreEmbedding(any(), any());
+    }
+
+    @Test
+    void aPausedJobStaysPausedAcrossRestartsUntilResumed() throws Exception {
+        BackfillCheckpoint paused = new BackfillCheckpoint(BackfillJob.NAME);
+        paused.setState(BackfillCheckpoint.State.PAUSED, null);
+        saved.set(paused);
+
+        job.startOnBoot();
+        Thread.sleep(200);
+        assertEquals(BackfillCheckpoint.State.PAUSED, job.getStatus().state());
+        verify(aiService, never()).restoreEmbedding(any(), any());
+        // Nothing loaded yet: both users stay on keyword-only search
+        assertFalse(indexReadiness.isReady(1L));
+        assertFalse(indexReadiness.isReady(2L));
+
+        job.resume();
+        BackfillJob.Status status = awaitState(BackfillCheckpoint.State.COMPLETED);
+        assertEquals(NOTES, status.restored() + status.queued());
+        assertTrue(indexReadiness.isReady(2L));
+    }
+
+    @Test
+    void aReopenedIndexContinuesAnInterruptedRunFromItsCheckpoint() throws Exception {
+        BackfillCheckpoint interrupted = new BackfillCheckpoint(BackfillJob.NAME);
+        interrupted.start(0, NOTES);
+        interrupted.advance(600, 300, 300);
+        saved.set(interrupted);
+        passageIndex.upsert(1L, 1L, List.of(new float[]{1, 0, 0, 0})); // survived the restart (segment index)
+
+        job.startOnBoot();
+        BackfillJob.Status status = awaitState(BackfillCheckpoint.State.COMPLETED);
+
+        assertEquals(NOTES, status.lastNoteId());
+        assertEquals(NOTES - 600, status.restored() + status.queued());
+        verify(aiService, never()).restoreEmbedding(argThat(note -> note.getId() <= 600), any());
+        assertTrue(indexReadiness.isReady(2L));
+
+        // A finished run is not resumed: the next start verifies every note again
+        job.stop();
+        job = new BackfillJob(noteRepository, mock(NoteEmbeddingRepository.class), checkpointRepository, aiService,
+                embeddingPipeline, passageIndex, indexReadiness, PAGE_SIZE, 4);
+        job.startOnBoot();
+        BackfillJob.Status next = awaitState(BackfillCheckpoint.State.COMPLETED);
+        assertEquals(NOTES, next.restored() + next.queued());
+    }
+
+    @Test
+    void notesStillQueuedAtARestartAreQueuedAgain() throws Exception {
+        // Note 301 never leaves the pipeline's queue before the process dies
+        CompletableFuture<Boolean> neverStored = new CompletableFuture<>();
+        when(embeddingPipeline.submit(argThat(note -> note != null && note.getId() == 301))).thenReturn(neverStored);
+        passageIndex.upsert(1L, 1L, List.of(new float[]{1, 0, 0, 0})); // the index survives (segment index)
+
+        job.startOnBoot();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (job.getStatus().pagesCompleted() < NOTES / PAGE_SIZE - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Every other page is done, but the checkpoint stops before the page holding note 301
+        assertEquals(NOTES / PAGE_SIZE - 1, job.getStatus().pagesCompleted());
+        assertEquals(300, saved.get().getLastNoteId());
+        assertEquals(BackfillCheckpoint.State.RUNNING, saved.get().getState());
+        job.stop();
+
+        EmbeddingPipeline restarted = pipeline();
+        job = new BackfillJob(noteRepository, mock(NoteEmbeddingRepository.class), checkpointRepository, aiService,
+                restarted, passageIndex, indexReadiness, PAGE_SIZE, 4);
+        job.startOnBoot();
+        awaitState(BackfillCheckpoint.State.COMPLETED);
+
+        verify(restarted).submit(argThat(note -> note.getId() == 301));
+        verify(restarted, never()).submit(argThat(note -> note.getId() <= 300));
+    }
+
+    @Test
+    void aNoteThePipelineGivesUpOnFailsTheRun() throws Exception {
+        when(embeddingPipeline.submit(argThat(note -> note != null && note.getId() == 501)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Gave up on embedding note 501")));
+
+        job.startOnBoot();
+        BackfillJob.Status status = awaitState(BackfillCheckpoint.State.FAILED);
+
+        assertEquals("Gave up on embedding note 501", status.error());
+        assertTrue(status.lastNoteId() <= 500, "checkpoint must not pass the failed note: " + status.lastNoteId());
+    }
+
+    @Test
+    void anEmptyIndexStartsFromTheFirstNoteWhateverTheCheckpoint() throws Exception {
+        BackfillCheckpoint interrupted = new BackfillCheckpoint(BackfillJob.NAME);
+        interrupted.start(0, NOTES);
+        interrupted.advance(600, 300, 300);
+        saved.set(interrupted);
+
+        job.startOnBoot();
+        BackfillJob.Status status = awaitState(BackfillCheckpoint.State.COMPLETED);
+
+        // The in-memory index lost the vectors the interrupted run had loaded
+        assertEquals(NOTES, status.restored() + status.queued());
+        verify(aiService, times(NOTES)).restoreEmbedding(any(), any());
+    }
+
+    @Test
+    void aFailedPageStopsTheRunAndResumeContinuesFromTheCheckpoint() throws Exception {
+        // The page containing note 501 fails once
+        AtomicBoolean failed = new AtomicBoolean();
+        doAnswer(call -> {
+            long id = call.<Note>getArgument(0).getId();
+            if (id == 501 && failed.compareAndSet(false, true)) throw new IllegalStateException("database went away");
+            return id % 2 == 0;
+        }).when(aiService).restoreEmbedding(any(), any());
+
+        job.startOnBoot();
+        BackfillJob.Status failedStatus = awaitState(BackfillCheckpoint.State.FAILED);
+        assertEquals("database went away", failedStatus.error());
+        assertTrue(failedStatus.lastNoteId() <= 500, "checkpoint must not pass the failed page: " + failedStatus.lastNoteId());
+        assertTrue(indexReadiness.isReady(1L)); // user 1's notes were all before the failure
+        assertFalse(indexReadiness.isReady(2L));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (job.resume().state() == BackfillCheckpoint.State.FAILED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20); // the failed run's last pages are still draining
+        }
+        awaitState(BackfillCheckpoint.State.COMPLETED);
+        assertTrue(indexReadiness.isReady(2L));
+    }
+
+    // Every queued note is stored at once
+    private static EmbeddingPipeline pipeline() {
+        EmbeddingPipeline pipeline = mock(EmbeddingPipeline.class);
+        when(pipeline.submit(any())).thenReturn(CompletableFuture.completedFuture(true));
+        return pipeline;
+    }
+
+    private BackfillJob.Status awaitState(BackfillCheckpoint.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (job.getStatus().state() != state && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, job.getStatus().state());
+        return job.getStatus();
+    }
+
+    private Note note(long id) {
+        User user = new User();
+        user.setId(id <= 100 ? 1L : 2L);
+        Note note = new Note();
+        note.setId(id);
+        note.setUser(user);
+        note.setTitle("Note " + id);
+        note.setContent("content " + id);
+        return note;
+    }
+}
@@ -0,0 +1,81 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteEmbedding;
+import com.notes.web.app.entity.User;
+import com.notes.web.app.repository.CachedEmbeddingRepository;
+import com.notes.web.app.repository.NoteEmbeddingRepository;
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The embedding_cache purge against the real database (like NoteServicePagingTest); every test
+ * runs in a transaction that is rolled back. Runs with -Pintegration.
+ */
+@Tag("integration")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class EmbeddingCachePurgeTest {
+
+    @Autowired
+    private CachedEmbeddingRepository cacheRepository;
+    @Autowired
+    private NoteEmbeddingRepository noteEmbeddingRepository;
+    @Autowired
+    private NoteRepository noteRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void passagesOfStoredEmbeddingsSurviveThePurge() {
+        String first = cached("first passage");
+        String second = cached("second passage");
+        String orphan = cached("passage of an older version");
+        String legacy = cached("short note stored before passage hashes");
+        String wholeNote = NoteEmbedding.hash("long note text");
+
+        long longNote = note();
+        noteEmbeddingRepository.upsert(longNote, wholeNote, first + "," + second, NoteEmbedding.encode(new float[8]));
+        // A row written before passage_hashes existed: its whole-note hash is its only passage
+        long shortNote = note();
+        noteEmbeddingRepository.upsert(shortNote, legacy, null, NoteEmbedding.encode(new float[4]));
+
+        // A cutoff in the future: every entry counts as unused
+        cacheRepository.deleteUnusedBefore(LocalDateTime.now().plusDays(1));
+
+        assertTrue(cacheRepository.existsById(first));
+        assertTrue(cacheRepository.existsById(second));
+        assertTrue(cacheRepository.existsById(legacy));
+        assertFalse(cacheRepository.existsById(orphan));
+    }
+
+    private String cached(String text) {
+        String hash = NoteEmbedding.hash(text + " " + UUID.randomUUID());
+        cacheRepository.insertIfAbsent(hash, NoteEmbedding.encode(new float[4]));
+        return hash;
+    }
+
+    private long note() {
+        User user = new User();
+        user.setUsername("purge-" + UUID.randomUUID());
+        user.setPassword("unused");
+        user.setRole("USER");
+        userRepository.save(user);
+        Note note = new Note();
+        note.setTitle("Note");
+        note.setContent("content");
+        note.setUser(user);
+        return noteRepository.saveAndFlush(note).getId();
+    }
+}
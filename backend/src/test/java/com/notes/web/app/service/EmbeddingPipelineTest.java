@@ -0,0 +1,341 @@
+package com.notes.web.app.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notes.web.app.embedding.HuggingFaceEmbeddingProvider;
+import com.notes.web.app.embedding.TextChunker;
+import com.notes.web.app.entity.CachedEmbedding;
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteEmbedding;
+import com.notes.web.app.entity.User;
+import com.notes.web.app.repository.CachedEmbeddingRepository;
+import com.notes.web.app.repository.NoteEmbeddingRepository;
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.search.FlatVectorIndex;
+import com.notes.web.app.search.HybridRanker;
+import com.notes.web.app.search.IndexReadiness;
+import com.notes.web.app.search.KeywordIndex;
+import com.notes.web.app.search.PassageIndex;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingPipelineTest {
+
+    private static final int NOTES = 100;
+    private static final int BATCH_SIZE = 16;
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final AtomicInteger embeddedTexts = new AtomicInteger();
+    private final AtomicInteger maxTextsPerRequest = new AtomicInteger();
+    private final Map<String, CachedEmbedding> cachedEmbeddings = new ConcurrentHashMap<>();
+    private final Map<Long, Note> notesTable = new ConcurrentHashMap<>(); // what findByIdForShare sees
+
+    private HttpServer stub;
+    private EmbeddingPipeline pipeline;
+    private PassageIndex passageIndex;
+    private NoteEmbeddingRepository noteEmbeddingRepository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Stub feature-extraction endpoint: throttles the first call, then returns one vector per input
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/", exchange -> {
+            int inFlight = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(inFlight, Math::max);
+            try {
+                JsonNode inputs = objectMapper.readTree(exchange.getRequestBody()).get("inputs");
+                if (requests.incrementAndGet() == 1) {
+                    exchange.getResponseHeaders().add("Retry-After", "0");
+                    exchange.sendResponseHeaders(429, -1);
+                    return;
+                }
+                Thread.sleep(20);
+                embeddedTexts.addAndGet(inputs.size());
+                maxTextsPerRequest.accumulateAndGet(inputs.size(), Math::max);
+                float[][] vectors = new float[inputs.size()][AIService.EMBEDDING_DIM];
+                for (int i = 0; i < vectors.length; i++) vectors[i][i % AIService.EMBEDDING_DIM] = 1;
+                byte[] body = objectMapper.writeValueAsString(vectors).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+                exchange.close();
+            }
+        });
+        stub.start();
+
+        passageIndex = new PassageIndex(new FlatVectorIndex(AIService.EMBEDDING_DIM), PassageIndex.Aggregation.MAX, 1);
+        noteEmbeddingRepository = mock(NoteEmbeddingRepository.class);
+        NoteRepository noteRepository = mock(NoteRepository.class);
+        when(noteRepository.findByIdForShare(anyLong())).thenAnswer(call -> Optional.ofNullable(notesTable.get(call.<Long>getArgument(0))));
+
+        // In-memory stand-in for the embedding_cache table
+        CachedEmbeddingRepository cacheRepository = mock(CachedEmbeddingRepository.class);
+        when(cacheRepository.findAllById(any())).thenAnswer(call -> {
+            Collection<String> hashes = call.getArgument(0);
+            return hashes.stream().distinct().map(cachedEmbeddings::get).filter(e -> e != null).toList();
+        });
+        doAnswer(call -> cachedEmbeddings.putIfAbsent(call.getArgument(0),
+                new CachedEmbedding(call.getArgument(0), NoteEmbedding.decode(call.getArgument(1)))))
+                .when(cacheRepository).insertIfAbsent(anyString(), any());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        String url = "http://localhost:" + stub.getAddress().getPort() + "/embed";
+        AIService aiService = new AIService(new HuggingFaceEmbeddingProvider(WebClient.builder(), url, "test-key"),
+                passageIndex, new IndexReadiness(), new TextChunker(16, 4), noteEmbeddingRepository, noteRepository, new QueryEmbeddingCache(10, Duration.ofMinutes(1)),
+                new KeywordIndex(1.2, 0.75), new HybridRanker(60, 1.0, 1.0, 0.2), Duration.ofMillis(800), new SimpleMeterRegistry());
+        pipeline = new EmbeddingPipeline(aiService, new EmbeddingCache(cacheRepository, Duration.ofDays(30), meterRegistry),
+                BATCH_SIZE, MAX_IN_FLIGHT, 1000, Duration.ofSeconds(5));
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.stop();
+        stub.stop(0);
+    }
+
+    // Saves the note (as the notes table holds it now) and queues it
+    private CompletableFuture<Boolean> submit(Note note) {
+        notesTable.put(note.getId(), note);
+        return pipeline.submit(note);
+    }
+
+    private Note note(long id, String title, String content) {
+        User user = new User();
+        user.setId(id % 3 + 1); // spread over several users: the cache is shared by all of them
+        Note note = new Note();
+        note.setId(id);
+        note.setUser(user);
+        note.setTitle(title);
+        note.setContent(content);
+        return note;
+    }
+
+    @Test
+    void batchesNotesAndRecoversFromThrottling() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        for (long id = 1; id <= NOTES; id++) {
+            Note note = new Note();
+            note.setId(id);
+            note.setUser(user);
+            note.setTitle("Note " + id);
+            note.setContent("content " + id);
+            submit(note);
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pipeline.getProgress().completed() < NOTES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        EmbeddingPipeline.Progress progress = pipeline.getProgress();
+        assertEquals(NOTES, progress.completed());
+        assertEquals(0, progress.failed());
+        assertTrue(progress.throttled() >= 1, "429 should have been counted");
+        assertEquals(NOTES, passageIndex.size());
+        assertFalse(passageIndex.isEmpty(1L));
+        verify(noteEmbeddingRepository, times(NOTES)).upsert(anyLong(), anyString(), anyString(), any());
+
+        // Multi-input requests: far fewer calls than notes, never more than MAX_IN_FLIGHT at once
+        assertTrue(requests.get() <= NOTES / BATCH_SIZE + 1 + MAX_IN_FLIGHT * 2, "requests: " + requests.get());
+        assertTrue(maxConcurrent.get() <= MAX_IN_FLIGHT, "max concurrent: " + maxConcurrent.get());
+    }
+
+    @Test
+    void embedsEachDistinctTextOnlyOnce() throws Exception {
+        int distinctTexts = 4;
+        for (long id = 1; id <= NOTES; id++) {
+            // Same text modulo whitespace, in notes of different users
+            submit(note(id, "Shared  note " + id % distinctTexts, " same body\n"));
+        }
+        awaitCompleted(NOTES);
+
+        // At most once per concurrent worker (two batches may miss the cache at the same time)
+        assertTrue(embeddedTexts.get() <= distinctTexts * MAX_IN_FLIGHT, "embedded texts: " + embeddedTexts.get());
+        assertEquals(distinctTexts, cachedEmbeddings.size());
+        assertEquals(NOTES, passageIndex.size());
+
+        // Re-saving unchanged notes (or a restart re-embedding them) costs no API call at all
+        int before = embeddedTexts.get();
+        for (long id = 1; id <= NOTES; id++) {
+            submit(note(id, "Shared note " + id % distinctTexts, "same body"));
+        }
+        awaitCompleted(2 * NOTES);
+        assertEquals(before, embeddedTexts.get());
+        assertTrue(pipeline.getProgress().reusedPassages() >= 2 * NOTES - distinctTexts * MAX_IN_FLIGHT);
+    }
+
+    @Test
+    void embedsLongNotesPassageByPassage() throws Exception {
+        // 16-word passages (title + 15 content words) every 11 words: 200 content words -> 18 passages
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) content.append("word").append(i).append(' ');
+        submit(note(1, "Long", content.toString()));
+        submit(note(2, "Short", "just a few words"));
+        awaitCompleted(2);
+
+        assertEquals(2, passageIndex.size());
+        assertEquals(19, passageIndex.passageCount());
+        assertEquals(19, pipeline.getProgress().embeddedPassages());
+        assertEquals(19, embeddedTexts.get());
+        // More passages than BATCH_SIZE: split over several requests
+        assertEquals(BATCH_SIZE, maxTextsPerRequest.get());
+        // The stored row names the cache entry of each passage, so the cache purge keeps them
+        verify(noteEmbeddingRepository).upsert(eq(1L), anyString(), argThat(hashes -> hashes.split(",").length == 18
+                && cachedEmbeddings.keySet().containsAll(List.of(hashes.split(",")))), any());
+    }
+
+    @Test
+    void dropsResultsForNotesDeletedOrEditedSinceTheyWereQueued() throws Exception {
+        // Never (or no longer) in the table
+        CompletableFuture<Boolean> deleted = pipeline.submit(note(1, "Deleted", "before its embedding came back"));
+        notesTable.put(2L, note(2, "Edited", "new text"));
+        pipeline.submit(note(2, "Edited", "old text")); // an older task finishing after the newer one
+        CompletableFuture<Boolean> current = submit(note(3, "Current", "unchanged"));
+        awaitCompleted(3);
+
+        assertFalse(deleted.get(1, TimeUnit.SECONDS));
+        assertTrue(current.get(1, TimeUnit.SECONDS));
+        assertEquals(2, pipeline.getProgress().discarded());
+        assertEquals(1, passageIndex.size());
+        assertTrue(passageIndex.passageCount(3) > 0);
+        verify(noteEmbeddingRepository, never()).upsert(eq(1L), anyString(), anyString(), any());
+        verify(noteEmbeddingRepository, never()).upsert(eq(2L), anyString(), anyString(), any());
+    }
+
+    @Test
+    void aFailedWriteLeavesNothingInTheIndex() throws Exception {
+        doThrow(new IllegalStateException("connection reset")).when(noteEmbeddingRepository).upsert(eq(1L), anyString(), anyString(), any());
+        CompletableFuture<Boolean> unlucky = submit(note(1, "Unlucky", "never persisted"));
+        submit(note(2, "Lucky", "persisted"));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        // Both notes have to finish: the stub's initial 429 can hold note 2 back past note 1's retries
+        while (pipeline.getProgress().failed() + pipeline.getProgress().completed() < 2
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, pipeline.getProgress().failed()); // after its retries
+        assertEquals(1, pipeline.getProgress().completed());
+        assertEquals(1, passageIndex.size());
+        assertEquals(0, passageIndex.passageCount(1));
+        verify(noteEmbeddingRepository, times(3)).upsert(eq(1L), anyString(), anyString(), any());
+        // A backfill waiting on it learns that it was given up
+        assertThrows(ExecutionException.class, () -> unlucky.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void nothingIsQueuedWhenTheProviderIsDisabled() throws Exception {
+        // No API key: every note would fail storeEmbedding after its retries
+        AIService disabled = mock(AIService.class);
+        when(disabled.isEnabled()).thenReturn(false);
+        EmbeddingPipeline off = new EmbeddingPipeline(disabled, mock(EmbeddingCache.class), BATCH_SIZE, MAX_IN_FLIGHT, 1,
+                Duration.ofSeconds(5));
+        off.start();
+        try {
+            assertFalse(off.submit(note(1, "Backfilled", "not embedded")).get(1, TimeUnit.SECONDS));
+            assertTrue(off.offer(note(2, "Edited", "not embedded"))); // the outbox row counts as handled
+            assertTrue(off.offer(note(3, "Edited", "past the queue capacity")));
+            Thread.sleep(100);
+
+            EmbeddingPipeline.Progress progress = off.getProgress();
+            assertEquals(0, progress.submitted());
+            assertEquals(0, progress.failed());
+            verify(disabled, never()).storeEmbedding(any(), any(), any(), any(), any());
+        } finally {
+            off.stop();
+        }
+    }
+
+    @Test
+    void aHungProviderCallIsCancelledAndRetried() throws Exception {
+        // The first call never answers; with a single worker and room for one note, nothing else could move
+        AIService hanging = mock(AIService.class);
+        when(hanging.isEnabled()).thenReturn(true);
+        when(hanging.passages(any())).thenAnswer(call -> List.of(AIService.embeddingText(call.getArgument(0))));
+        AtomicInteger calls = new AtomicInteger();
+        when(hanging.fetchEmbeddings(any())).thenAnswer(call -> calls.incrementAndGet() == 1
+                ? Mono.never()
+                : Mono.just(List.of(new float[AIService.EMBEDDING_DIM])));
+        when(hanging.storeEmbedding(any(), any(), any(), any(), any())).thenReturn(true);
+        EmbeddingCache cache = mock(EmbeddingCache.class);
+        when(cache.getAll(any())).thenAnswer(call -> new HashMap<>());
+        EmbeddingPipeline stuck = new EmbeddingPipeline(hanging, cache, BATCH_SIZE, 1, 1, Duration.ofMillis(100));
+        stuck.start();
+        try {
+            CompletableFuture<Boolean> settled = stuck.submit(note(1, "Patient", "waits out the hung call"));
+            assertTrue(settled.get(10, TimeUnit.SECONDS));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (stuck.getProgress().completed() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20); // the note settles just before the batch is counted
+            }
+
+            EmbeddingPipeline.Progress progress = stuck.getProgress();
+            assertEquals(1, progress.completed());
+            assertEquals(0, progress.failed()); // a timeout is retried like a 429, not counted against the note
+            assertEquals(1, progress.throttled());
+            assertEquals(2, calls.get());
+            assertTrue(stuck.offer(note(2, "Next", "fits again"))); // its permit was given back
+        } finally {
+            stuck.stop();
+        }
+    }
+
+    private void awaitCompleted(long notes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pipeline.getProgress().completed() < notes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(notes, pipeline.getProgress().completed());
+    }
+}
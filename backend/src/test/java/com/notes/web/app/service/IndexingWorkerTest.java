@@ -0,0 +1,176 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.NoteChange;
+import com.notes.web.app.repository.NoteChangeRepository;
+import com.notes.web.app.repository.NoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IndexingWorkerTest {
+
+    private final List<NoteChange> outbox = new ArrayList<>(); // ordered by id, like the query
+    private final Map<Long, Note> notesTable = new HashMap<>();
+    private final NoteChangeRepository noteChangeRepository = mock(NoteChangeRepository.class);
+    private final NoteRepository noteRepository = mock(NoteRepository.class);
+    private final AIService aiService = mock(AIService.class);
+    private final EmbeddingPipeline embeddingPipeline = mock(EmbeddingPipeline.class);
+    private final IndexingWorker worker = new IndexingWorker(noteChangeRepository, noteRepository, aiService, embeddingPipeline, 0);
+    private long nextChangeId = 1;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // As the query: every change of the notes whose newest change is before the cutoff
+        when(noteChangeRepository.findQuietChanges(any(), any())).thenAnswer(inv -> {
+            LocalDateTime cutoff = inv.getArgument(0);
+            Map<Long, LocalDateTime> newest = new HashMap<>();
+            outbox.forEach(change -> newest.merge(change.getNoteId(), change.getCreatedAt(), (a, b) -> a.isAfter(b) ? a : b));
+            return outbox.stream().filter(change -> newest.get(change.getNoteId()).isBefore(cutoff)).toList();
+        });
+        when(noteChangeRepository.findFirstByOrderByIdAsc()).thenAnswer(inv -> outbox.stream().findFirst());
+        doAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            outbox.removeIf(change -> ids.contains(change.getId()));
+            return null;
+        }).when(noteChangeRepository).deleteAllByIdInBatch(any());
+        when(noteRepository.findAllById(any())).thenAnswer(inv -> {
+            List<Note> found = new ArrayList<>();
+            for (Long id : (Iterable<Long>) inv.getArgument(0)) {
+                Optional.ofNullable(notesTable.get(id)).ifPresent(found::add);
+            }
+            return found;
+        });
+        when(embeddingPipeline.offer(any())).thenReturn(true);
+    }
+
+    @Test
+    void severalChangesToANoteAreEmbeddedOnce() {
+        Note first = note(1);
+        Note second = note(2);
+        change(1, NoteChange.Type.UPSERT);
+        change(2, NoteChange.Type.UPSERT);
+        change(1, NoteChange.Type.UPSERT);
+        change(1, NoteChange.Type.UPSERT);
+
+        worker.drain();
+
+        verify(embeddingPipeline, times(1)).offer(first);
+        verify(embeddingPipeline, times(1)).offer(second);
+        assertEquals(List.of(), outbox);
+        IndexingWorker.Status status = worker.getStatus();
+        assertEquals(4, status.processedChanges());
+        assertEquals(2, status.coalescedChanges());
+        assertEquals(0, status.lagMs());
+    }
+
+    @Test
+    void theLatestChangeOfANoteWins() {
+        note(1);
+        note(3); // still there: the delete has not committed yet when the worker reads it
+        change(1, NoteChange.Type.UPSERT);
+        change(1, NoteChange.Type.DELETE);
+        change(2, NoteChange.Type.UPSERT); // deleted after the change was recorded
+        change(3, NoteChange.Type.UPSERT);
+        change(3, NoteChange.Type.DELETE);
+
+        worker.drain();
+
+        verify(embeddingPipeline, never()).offer(any());
+        verify(aiService).removeEmbedding(1L);
+        verify(aiService).removeEmbedding(2L);
+        verify(aiService).removeEmbedding(3L);
+        assertEquals(List.of(), outbox);
+    }
+
+    @Test
+    void aFullPipelineLeavesTheRestForTheNextDrain() {
+        Note first = note(1);
+        Note second = note(2);
+        Note third = note(3);
+        change(1, NoteChange.Type.UPSERT);
+        change(2, NoteChange.Type.UPSERT);
+        change(3, NoteChange.Type.UPSERT);
+        change(2, NoteChange.Type.UPSERT);
+        change(4, NoteChange.Type.DELETE);
+        when(embeddingPipeline.offer(any())).thenReturn(true, false);
+
+        worker.drain(); // returns instead of waiting for room
+
+        verify(embeddingPipeline).offer(first);
+        verify(embeddingPipeline).offer(second);
+        verify(embeddingPipeline, never()).offer(third); // nor behind note 2's back
+        verify(aiService).removeEmbedding(4L);
+        assertEquals(List.of(2L, 3L, 2L), outbox.stream().map(NoteChange::getNoteId).toList());
+        assertEquals(3, worker.getStatus().deferredChanges());
+
+        when(embeddingPipeline.offer(any())).thenReturn(true);
+        worker.drain();
+
+        verify(embeddingPipeline, times(2)).offer(second);
+        verify(embeddingPipeline).offer(third);
+        verify(aiService, times(1)).removeEmbedding(anyLong());
+        assertEquals(List.of(), outbox);
+        assertEquals(5, worker.getStatus().processedChanges());
+    }
+
+    @Test
+    void aNoteIsOnlyReEmbeddedOnceItsEditsStop() {
+        IndexingWorker windowed = new IndexingWorker(noteChangeRepository, noteRepository, aiService, embeddingPipeline, 2_000);
+        Note busy = note(1);
+        Note quiet = note(2);
+        change(1, NoteChange.Type.UPSERT, LocalDateTime.now().minusMinutes(5));
+        change(2, NoteChange.Type.UPSERT, LocalDateTime.now().minusMinutes(1));
+        change(1, NoteChange.Type.UPSERT, LocalDateTime.now()); // still being edited
+
+        windowed.drain();
+
+        verify(embeddingPipeline).offer(quiet);
+        verify(embeddingPipeline, never()).offer(busy); // not even for its old change
+        assertEquals(List.of(1L, 1L), outbox.stream().map(NoteChange::getNoteId).toList());
+
+        // Once the last edit is older than the window, both rows go with one re-embed
+        outbox.forEach(change -> ReflectionTestUtils.setField(change, "createdAt", LocalDateTime.now().minusSeconds(3)));
+        windowed.drain();
+
+        verify(embeddingPipeline, times(1)).offer(busy);
+        assertEquals(List.of(), outbox);
+    }
+
+    private Note note(long id) {
+        Note note = new Note();
+        note.setId(id);
+        notesTable.put(id, note);
+        return note;
+    }
+
+    private void change(long noteId, NoteChange.Type type) {
+        change(noteId, type, LocalDateTime.now().minusMinutes(1));
+    }
+
+    private void change(long noteId, NoteChange.Type type, LocalDateTime createdAt) {
+        NoteChange change = new NoteChange(noteId, type);
+        ReflectionTestUtils.setField(change, "id", nextChangeId++);
+        ReflectionTestUtils.setField(change, "createdAt", createdAt);
+        outbox.add(change);
+    }
+}
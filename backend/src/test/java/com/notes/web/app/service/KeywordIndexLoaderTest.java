@@ -0,0 +1,79 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.search.KeywordIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeywordIndexLoaderTest {
+
+    private static final long USER = 1;
+
+    private final NoteRepository noteRepository = mock(NoteRepository.class);
+    private final KeywordIndex keywordIndex = new KeywordIndex(1.2, 0.75);
+    private final KeywordIndexLoader loader = new KeywordIndexLoader(noteRepository, keywordIndex, Duration.ofMillis(100), 2);
+
+    @AfterEach
+    void tearDown() {
+        loader.stop();
+    }
+
+    @Test
+    void buildsThePartitionFromProjectedRows() {
+        when(noteRepository.findKeywordFields(USER)).thenReturn(List.of(
+                new Object[]{1L, "Groceries", "milk eggs"},
+                new Object[]{2L, "Trip", "train tickets"}));
+
+        assertTrue(loader.awaitLoaded(USER));
+        assertEquals(1L, keywordIndex.search(USER, "milk", 10).get(0).noteId());
+        assertTrue(loader.awaitLoaded(USER)); // loaded: nothing is read again
+        verify(noteRepository, times(1)).findKeywordFields(USER);
+    }
+
+    @Test
+    void aSearchDoesNotWaitForASlowBuild() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(noteRepository.findKeywordFields(USER)).thenAnswer(call -> {
+            release.await(10, TimeUnit.SECONDS);
+            return List.<Object[]>of(new Object[]{1L, "Large", "account"});
+        });
+
+        // A login starts the build; searches meanwhile share it and give up after the wait
+        var build = loader.load(USER);
+        assertSame(build, loader.load(USER));
+        long start = System.nanoTime();
+        assertFalse(loader.awaitLoaded(USER));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        release.countDown();
+        build.get(10, TimeUnit.SECONDS);
+        assertTrue(keywordIndex.isLoaded(USER));
+        verify(noteRepository, times(1)).findKeywordFields(USER);
+    }
+
+    @Test
+    void aBuildRacedByAWriteIsRetried() {
+        // The first read misses a note saved while it ran; the second one sees it
+        when(noteRepository.findKeywordFields(USER)).thenAnswer(call -> {
+            keywordIndex.upsert(USER, 2, "Saved", "while reading");
+            return List.<Object[]>of(new Object[]{1L, "First", "note"});
+        }).thenReturn(List.of(new Object[]{1L, "First", "note"}, new Object[]{2L, "Saved", "while reading"}));
+
+        assertTrue(loader.awaitLoaded(USER));
+        assertEquals(2L, keywordIndex.search(USER, "saved", 10).get(0).noteId());
+    }
+}
@@ -0,0 +1,153 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.dto.CursorPage;
+import com.notes.web.app.dto.NoteSummary;
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.User;
+import com.notes.web.app.exception.InvalidCursorException;
+import com.notes.web.app.exception.InvalidPageException;
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.repository.UserRepository;
+import com.notes.web.app.search.KeywordIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Keyset pagination of note summaries against the real database (like NotesApplicationTests);
+ * every test runs in a transaction that is rolled back. Runs with -Pintegration.
+ */
+@Tag("integration")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class NoteServicePagingTest {
+
+    @Autowired
+    private NoteRepository noteRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    private NoteService noteService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        noteService = new NoteService(noteRepository, userRepository, null, new KeywordIndex(1.2, 0.75), null,
+                null, new SimpleMeterRegistry());
+        user = new User();
+        user.setUsername("paging-" + UUID.randomUUID());
+        user.setPassword("unused");
+        user.setRole("USER");
+        userRepository.save(user);
+    }
+
+    @Test
+    void everyNoteAppearsOnceWhenUpdatedAtTies() {
+        // 25 notes on 5 timestamps: most page boundaries fall inside a group of equal updatedAt
+        LocalDateTime base = LocalDateTime.of(2024, 3, 1, 12, 0);
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 25; i++) notes.add(note("Note " + i, base.plusMinutes(i % 5)));
+
+        List<Long> expected = notes.stream()
+                .sorted(Comparator.comparing(Note::getUpdatedAt).thenComparing(Note::getId).reversed())
+                .map(Note::getId)
+                .toList();
+        List<Long> seen = collect(4);
+
+        assertEquals(expected, seen);
+        assertEquals(seen.size(), new HashSet<>(seen).size());
+    }
+
+    @Test
+    void theLastPageHasNoCursor() {
+        LocalDateTime base = LocalDateTime.of(2024, 3, 1, 12, 0);
+        for (int i = 0; i < 8; i++) note("Note " + i, base.plusSeconds(i));
+
+        CursorPage<NoteSummary> first = noteService.getNoteSummaries(user.getUsername(), null, 4);
+        assertEquals(4, first.items().size());
+        assertNotNull(first.nextCursor());
+
+        // Exactly full: the extra row the query asks for is not there, so no cursor
+        CursorPage<NoteSummary> second = noteService.getNoteSummaries(user.getUsername(), first.nextCursor(), 4);
+        assertEquals(4, second.items().size());
+        assertNull(second.nextCursor());
+
+        note("One more", base.minusDays(1)); // oldest, so it lands after the second page
+        CursorPage<NoteSummary> again = noteService.getNoteSummaries(user.getUsername(), first.nextCursor(), 4);
+        assertNotNull(again.nextCursor());
+        CursorPage<NoteSummary> last = noteService.getNoteSummaries(user.getUsername(), again.nextCursor(), 4);
+        assertEquals(List.of("One more"), last.items().stream().map(NoteSummary::title).toList());
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        note("Only", LocalDateTime.of(2024, 3, 1, 12, 0));
+        for (String cursor : List.of("not a cursor!", encode("no separator"), encode("2024-03-01T12:00|twelve"),
+                encode("yesterday|12"), encode("|"))) {
+            assertThrows(InvalidCursorException.class,
+                    () -> noteService.getNoteSummaries(user.getUsername(), cursor, 4), cursor);
+        }
+    }
+
+    @Test
+    void searchPagesPastTheRankingDepthAreRejected() {
+        // page * size used to overflow int into a negative offset, or ask the vector index for 2^29 notes
+        for (int[] pageAndSize : new int[][] {{30_000_000, 100}, {536_870_910, 1}, {Integer.MAX_VALUE, 100}, {100, 100}}) {
+            assertThrows(InvalidPageException.class,
+                    () -> noteService.searchNotes("anything", user.getUsername(), pageAndSize[0], pageAndSize[1]),
+                    pageAndSize[0] + " x " + pageAndSize[1]);
+        }
+    }
+
+    private List<Long> collect(int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<NoteSummary> page = noteService.getNoteSummaries(user.getUsername(), cursor, pageSize);
+            page.items().forEach(summary -> ids.add(summary.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    // Saves a note, then pins its updatedAt (the entity stamps the current time on insert)
+    private Note note(String title, LocalDateTime updatedAt) {
+        Note note = new Note();
+        note.setTitle(title);
+        note.setContent(title + " content");
+        note.setUser(user);
+        noteRepository.saveAndFlush(note);
+        entityManager.createQuery("update Note n set n.updatedAt = :updatedAt where n.id = :id")
+                .setParameter("updatedAt", updatedAt)
+                .setParameter("id", note.getId())
+                .executeUpdate();
+        entityManager.clear();
+        return noteRepository.findById(note.getId()).orElseThrow();
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,172 @@
+package com.notes.web.app.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.notes.web.app.entity.Note;
+import com.notes.web.app.entity.User;
+import com.notes.web.app.repository.NoteRepository;
+import com.notes.web.app.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NoteTransferServiceTest {
+
+    // ISO dates, as Spring Boot configures the application's mapper
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final NoteService noteService = mock(NoteService.class);
+    private final NoteRepository noteRepository = mock(NoteRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final NoteTransferService transferService =
+            new NoteTransferService(noteService, noteRepository, userRepository, entityManager, objectMapper);
+
+    private final List<Integer> chunkSizes = new ArrayList<>(); // size of each createNotes call, in order
+    private final List<Note> saved = new ArrayList<>();
+    private final User alice = user(1, "alice");
+    private final User bob = user(2, "bob");
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(bob));
+        // The service reuses its chunk list, so record it as it is when saved
+        when(noteService.createNotes(anyList())).thenAnswer(call -> {
+            List<Note> chunk = call.getArgument(0);
+            chunkSizes.add(chunk.size());
+            saved.addAll(chunk);
+            return List.copyOf(chunk);
+        });
+    }
+
+    @Test
+    void invalidLinesAreReportedAndTheRestImported() throws Exception {
+        String body = String.join("\n",
+                "{\"title\":\"Groceries\",\"content\":\"milk\"}",
+                "",
+                "not json",
+                "[1, 2]",
+                "{\"title\":\"  \",\"content\":\"blank title\"}",
+                "{\"content\":\"no title\"}",
+                "{\"title\":\"" + "x".repeat(256) + "\"}",
+                "{\"id\":99,\"title\":\"Moved\",\"content\":null,\"createdAt\":\"2020-01-01T00:00:00\",\"userId\":7}");
+
+        NoteTransferService.ImportResult result = transferService.importNotes("alice", stream(body));
+
+        assertEquals(2, result.imported());
+        assertEquals(5, result.rejected());
+        assertEquals(List.of(
+                "line 3: not valid JSON",
+                "line 4: expected a JSON object",
+                "line 5: title is required",
+                "line 6: title is required",
+                "line 7: title is longer than 255 characters"), result.errors());
+
+        assertEquals(List.of("Groceries", "Moved"), saved.stream().map(Note::getTitle).toList());
+        Note moved = saved.get(1);
+        assertNull(moved.getId()); // ids, timestamps and owners in the file are ignored
+        assertNull(moved.getContent());
+        assertSame(alice, moved.getUser());
+    }
+
+    @Test
+    void onlyTheFirstErrorsAreListed() throws Exception {
+        String body = "oops\n".repeat(30) + "{\"title\":\"Fine\"}\n";
+
+        NoteTransferService.ImportResult result = transferService.importNotes("alice", stream(body));
+
+        assertEquals(1, result.imported());
+        assertEquals(30, result.rejected());
+        assertEquals(20, result.errors().size());
+        assertEquals("line 20: not valid JSON", result.errors().get(19));
+    }
+
+    @Test
+    void largeImportsAreSavedInChunks() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1_201; i++) body.append("{\"title\":\"Note ").append(i).append("\"}\n");
+        body.append("broken\n");
+
+        NoteTransferService.ImportResult result = transferService.importNotes("alice", stream(body.toString()));
+
+        assertEquals(1_201, result.imported());
+        assertEquals(1, result.rejected());
+        assertEquals(List.of(500, 500, 201), chunkSizes);
+        verify(entityManager, times(3)).clear(); // nothing piles up in the persistence context
+        assertEquals("Note 1200", saved.get(1_200).getTitle());
+    }
+
+    @Test
+    void exportedNotesImportAsTheSameNotes() throws Exception {
+        List<Note> notes = List.of(
+                note(10, "Plain", "text"),
+                note(11, "Multi-line", "first line\nsecond line\n\n\"quoted\""),
+                note(12, "Unicode ✓", "naïve café — 日本語"),
+                note(13, "No content", null));
+        when(noteRepository.streamByUserId(1L)).thenReturn(notes.stream());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transferService.exportNotes("alice", out);
+        String exported = out.toString(StandardCharsets.UTF_8);
+
+        // One JSON object per line, oldest id first, each detached once written
+        String[] lines = exported.split("\n");
+        assertEquals(notes.size(), lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(10, first.get("id").asLong());
+        assertEquals("2024-03-01T12:00:00", first.get("createdAt").asText());
+        notes.forEach(note -> verify(entityManager).detach(note));
+
+        NoteTransferService.ImportResult result = transferService.importNotes("bob", stream(exported));
+
+        assertEquals(notes.size(), result.imported());
+        assertEquals(0, result.rejected());
+        assertEquals(notes.stream().map(Note::getTitle).toList(), saved.stream().map(Note::getTitle).toList());
+        assertEquals(notes.stream().map(Note::getContent).toList(), saved.stream().map(Note::getContent).toList());
+        saved.forEach(note -> assertSame(bob, note.getUser()));
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static User user(long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+
+    private Note note(long id, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle(title);
+        note.setContent(content);
+        note.setUser(alice);
+        ReflectionTestUtils.setField(note, "createdAt", LocalDateTime.of(2024, 3, 1, 12, 0));
+        ReflectionTestUtils.setField(note, "updatedAt", LocalDateTime.of(2024, 3, 2, 12, 0));
+        return note;
+    }
+}
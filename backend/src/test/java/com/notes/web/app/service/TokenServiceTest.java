@@ -0,0 +1,60 @@
+package com.notes.web.app.service;
+
+import com.notes.web.app.config.SecurityConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenServiceTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private final SecurityConfig securityConfig = new SecurityConfig();
+
+    @Test
+    void tokensVerifyOnAnyNodeWithTheSameSecret() {
+        TokenService issuer = new TokenService(securityConfig.jwtEncoder(key(SECRET)), Duration.ofMinutes(5));
+        JwtDecoder otherNode = securityConfig.jwtDecoder(key(SECRET));
+
+        Jwt jwt = otherNode.decode(issuer.issue("alice", List.of()));
+        assertEquals("alice", jwt.getSubject());
+        assertEquals(TokenService.ISSUER, jwt.getClaimAsString("iss"));
+    }
+
+    @Test
+    void rejectsTokensSignedWithAnotherKey() {
+        TokenService issuer = new TokenService(securityConfig.jwtEncoder(key(SECRET)), Duration.ofMinutes(5));
+        JwtDecoder otherKey = securityConfig.jwtDecoder(key(SECRET.toUpperCase()));
+        assertThrows(JwtException.class, () -> otherKey.decode(issuer.issue("alice", List.of())));
+    }
+
+    @Test
+    void rolesTravelInTheTokenAndBecomeAuthorities() {
+        TokenService issuer = new TokenService(securityConfig.jwtEncoder(key(SECRET)), Duration.ofMinutes(5));
+        Jwt jwt = securityConfig.jwtDecoder(key(SECRET)).decode(
+                issuer.issue("alice", AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+
+        assertEquals(List.of("ADMIN"), jwt.getClaimAsStringList(TokenService.ROLES_CLAIM));
+        assertEquals(Set.of("ROLE_ADMIN"), AuthorityUtils.authorityListToSet(
+                securityConfig.jwtAuthenticationConverter().convert(jwt).getAuthorities()));
+    }
+
+    @Test
+    void shortSecretsAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> securityConfig.tokenSigningKey("too-short", "token"));
+    }
+
+    private SecretKey key(String secret) {
+        return securityConfig.tokenSigningKey(secret, "token");
+    }
+}